@@ -0,0 +1,6 @@
+package enums;
+
+public enum ChangeType {
+  HOUSINGS_ADDED, MONKEY_ADDED, MONKEY_PLACED, MONKEY_UNPLACED, MONKEY_RETIRED,
+  HEALTH_STATUS_UPDATED, SIZE_UPDATED, WEIGHT_UPDATED, AGE_UPDATED, MONKEYS_MOVED;
+}
@@ -0,0 +1,5 @@
+package enums;
+
+public enum IntakeStage {
+  WAITING, QUARANTINED, ENCLOSED, REJECTED, LEFT;
+}
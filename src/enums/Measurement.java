@@ -0,0 +1,5 @@
+package enums;
+
+public enum Measurement {
+  WEIGHT, AGE, SIZE, HEALTH_STATUS;
+}
@@ -0,0 +1,217 @@
+package federation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import enums.FavoriteFood;
+import enums.Species;
+import sanctuary.Primate;
+import sanctuary.Sanctuary;
+
+/**
+ * A {@link Shard} backed by a {@link Sanctuary} in this JVM.
+ *
+ * <p>A prepared transfer holds its isolation cage or leaving monkey on a lease. A transfer that
+ * is neither committed nor aborted within the lease, as when its coordinator fails between the
+ * two phases, is dropped by the next prepare or commit, and committing it then fails as if it
+ * had never been prepared.
+ */
+public class LocalShard implements Shard {
+
+  /**
+   * Lease of a prepared transfer unless another is given, in milliseconds.
+   */
+  public static final long DEFAULT_LEASE_MILLIS = 60_000;
+
+  private static final int MAX_RECENT_ARRIVALS = 1024;
+
+  private final Sanctuary sanctuary;
+  private final long leaseNanos;
+  private final Map<String, Long> reservedCages;
+  private final Map<String, Departure> leavingMonkeys;
+  private final Map<String, String> recentArrivals;
+
+  /**
+   * Constructs a shard for {@code sanctuary} whose prepared transfers are held for
+   * {@value #DEFAULT_LEASE_MILLIS} milliseconds. All changes to the sanctuary must go through the
+   * shard so that reserved isolation cages are respected.
+   *
+   * @param sanctuary the sanctuary of the site
+   */
+  public LocalShard(Sanctuary sanctuary) {
+    this(sanctuary, DEFAULT_LEASE_MILLIS);
+  }
+
+  /**
+   * Constructs a shard for {@code sanctuary} whose prepared transfers are held for
+   * {@code leaseMillis}.
+   *
+   * @param sanctuary   the sanctuary of the site
+   * @param leaseMillis how long a prepared transfer holds its cage or monkey, in milliseconds
+   * @throws IllegalArgumentException if {@code sanctuary} is {@code null} or the lease is not
+   *                                  positive.
+   */
+  public LocalShard(Sanctuary sanctuary, long leaseMillis) {
+    if (sanctuary == null) {
+      throw new IllegalArgumentException("Sanctuary cannot be null.");
+    }
+    if (leaseMillis <= 0) {
+      throw new IllegalArgumentException("Lease must be positive. Lease: " + leaseMillis);
+    }
+    this.sanctuary = sanctuary;
+    this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+    this.reservedCages = new LinkedHashMap<>();
+    this.leavingMonkeys = new LinkedHashMap<>();
+    this.recentArrivals = new LinkedHashMap<String, String>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return this.size() > MAX_RECENT_ARRIVALS;
+      }
+    };
+  }
+
+  public Sanctuary getSanctuary() {
+    return this.sanctuary;
+  }
+
+  @Override
+  public synchronized String addMonkey(MonkeyRecord monkey) {
+    this.expireLeases();
+    if (this.getNumOfFreeIsolationCages() <= this.reservedCages.size()) {
+      throw new IllegalStateException("No more isolation cages available. New monkey cannot " +
+              "be added to the sanctuary");
+    }
+    return this.house(monkey);
+  }
+
+  @Override
+  public synchronized Map<Species, List<String>> getSpeciesWithLocations() {
+    return this.sanctuary.getSpeciesWithLocations();
+  }
+
+  @Override
+  public synchronized Map<FavoriteFood, Integer> getFavFoodShoppingList() {
+    return this.sanctuary.getFavFoodShoppingList();
+  }
+
+  @Override
+  public synchronized boolean prepareTransferIn(String transferId) {
+    this.expireLeases();
+    if (this.reservedCages.containsKey(transferId)) {
+      return true;
+    }
+    if (this.getNumOfFreeIsolationCages() <= this.reservedCages.size()) {
+      return false;
+    }
+    this.reservedCages.put(transferId, System.nanoTime() + this.leaseNanos);
+    return true;
+  }
+
+  @Override
+  public synchronized MonkeyRecord prepareTransferOut(String transferId, String monkeyId) {
+    this.expireLeases();
+    Primate monkey = this.sanctuary.getMonkey(monkeyId);
+    if (monkey == null) {
+      throw new IllegalArgumentException("Monkey " + monkeyId + " does not exist in sanctuary.");
+    }
+    for (Map.Entry<String, Departure> leaving : this.leavingMonkeys.entrySet()) {
+      if (leaving.getValue().monkey.getId().equals(monkeyId)
+              && !leaving.getKey().equals(transferId)) {
+        throw new IllegalStateException("Monkey " + monkey.getName() + "(" + monkeyId +
+                ") is already being transferred.");
+      }
+    }
+    if (!this.leavingMonkeys.containsKey(transferId)) {
+      this.leavingMonkeys.put(transferId,
+              new Departure(monkey, System.nanoTime() + this.leaseNanos));
+    }
+    return new MonkeyRecord(monkey);
+  }
+
+  @Override
+  public synchronized String commitTransferIn(String transferId, MonkeyRecord monkey) {
+    this.expireLeases();
+    if (this.reservedCages.remove(transferId) == null) {
+      throw new IllegalStateException("Transfer " + transferId + " was not prepared.");
+    }
+    String monkeyId = this.house(monkey);
+    this.recentArrivals.put(transferId, monkeyId);
+    return monkeyId;
+  }
+
+  @Override
+  public synchronized void commitTransferOut(String transferId) {
+    this.expireLeases();
+    Departure departure = this.leavingMonkeys.remove(transferId);
+    if (departure == null) {
+      throw new IllegalStateException("Transfer " + transferId + " was not prepared.");
+    }
+    this.sanctuary.removeMonkey(departure.monkey);
+  }
+
+  @Override
+  public synchronized void revertTransferIn(String transferId) {
+    String monkeyId = this.recentArrivals.remove(transferId);
+    Primate monkey = monkeyId == null ? null : this.sanctuary.getMonkey(monkeyId);
+    if (monkey == null) {
+      throw new IllegalStateException("Transfer " + transferId + " has no arrival to revert.");
+    }
+    this.sanctuary.removeMonkey(monkey);
+  }
+
+  @Override
+  public synchronized void abortTransfer(String transferId) {
+    this.reservedCages.remove(transferId);
+    this.leavingMonkeys.remove(transferId);
+  }
+
+  private String house(MonkeyRecord monkey) {
+    return this.sanctuary.addMonkey(monkey.getName(), monkey.getSize(),
+            (float) monkey.getWeight(), monkey.getAge(), monkey.getSpecies(), monkey.getSex(),
+            monkey.getFavoriteFood(), monkey.getHealthStatus(), null);
+  }
+
+  private int getNumOfFreeIsolationCages() {
+    return this.sanctuary.getNumOfFreeIsolationCages();
+  }
+
+  /**
+   * Drops the prepared transfers whose lease has run out. Every lease is as long, so the maps
+   * hold them in the order they run out.
+   */
+  private void expireLeases() {
+    long now = System.nanoTime();
+    for (Iterator<Long> expiries = this.reservedCages.values().iterator(); expiries.hasNext(); ) {
+      if (expiries.next() - now > 0) {
+        break;
+      }
+      expiries.remove();
+    }
+    for (Iterator<Departure> departures = this.leavingMonkeys.values().iterator();
+         departures.hasNext(); ) {
+      if (departures.next().expiresAt - now > 0) {
+        break;
+      }
+      departures.remove();
+    }
+  }
+
+  /**
+   * A monkey prepared to leave and when its lease runs out.
+   */
+  private static class Departure {
+
+    private final Primate monkey;
+    private final long expiresAt;
+
+    Departure(Primate monkey, long expiresAt) {
+      this.monkey = monkey;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
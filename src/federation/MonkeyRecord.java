@@ -0,0 +1,90 @@
+package federation;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import sanctuary.Primate;
+
+/**
+ * The attributes of a monkey that travel with it when it is transferred between sites.
+ */
+public class MonkeyRecord {
+
+  private final String name;
+  private final MonkeySize size;
+  private final double weight;
+  private final int age;
+  private final Species species;
+  private final Sex sex;
+  private final FavoriteFood favoriteFood;
+  private final HealthStatus healthStatus;
+
+  /**
+   * Constructs a monkey record.
+   *
+   * @param name         the name of the monkey.
+   * @param size         the size of the monkey.
+   * @param weight       the weight of the monkey.
+   * @param age          the age of the monkey.
+   * @param species      the species of the monkey.
+   * @param sex          the sex of the monkey.
+   * @param favoriteFood the favorite food of the monkey.
+   * @param healthStatus the health status of the monkey.
+   */
+  public MonkeyRecord(String name, MonkeySize size, double weight, int age, Species species,
+                      Sex sex, FavoriteFood favoriteFood, HealthStatus healthStatus) {
+    this.name = name;
+    this.size = size;
+    this.weight = weight;
+    this.age = age;
+    this.species = species;
+    this.sex = sex;
+    this.favoriteFood = favoriteFood;
+    this.healthStatus = healthStatus;
+  }
+
+  /**
+   * Constructs a record holding the current attributes of {@code monkey}.
+   *
+   * @param monkey the monkey
+   */
+  public MonkeyRecord(Primate monkey) {
+    this(monkey.getName(), monkey.getSize(), monkey.getWeight(), monkey.getAge(),
+            monkey.getSpecies(), monkey.getSex(), monkey.getFavoriteFood(),
+            monkey.getHealthStatus());
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public MonkeySize getSize() {
+    return this.size;
+  }
+
+  public double getWeight() {
+    return this.weight;
+  }
+
+  public int getAge() {
+    return this.age;
+  }
+
+  public Species getSpecies() {
+    return this.species;
+  }
+
+  public Sex getSex() {
+    return this.sex;
+  }
+
+  public FavoriteFood getFavoriteFood() {
+    return this.favoriteFood;
+  }
+
+  public HealthStatus getHealthStatus() {
+    return this.healthStatus;
+  }
+}
@@ -0,0 +1,166 @@
+package federation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+
+import enums.FavoriteFood;
+import enums.Species;
+
+/**
+ * A {@link Shard} served by a {@link ShardServer} in another JVM on this machine. Requests are
+ * sent over one connection and are serialized by the client.
+ */
+public class RemoteShard implements Shard, Closeable {
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  /**
+   * Connects to the shard server listening on {@code port} of the loopback interface.
+   *
+   * @param port the port of the shard server
+   * @throws IOException if the connection cannot be made.
+   */
+  public RemoteShard(int port) throws IOException {
+    this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    this.socket.setTcpNoDelay(true);
+    this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+    this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+  }
+
+  @Override
+  public synchronized String addMonkey(MonkeyRecord monkey) {
+    try {
+      this.out.writeByte(ShardProtocol.ADD_MONKEY);
+      ShardProtocol.writeMonkey(this.out, monkey);
+      this.send();
+      return this.in.readUTF();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized Map<Species, List<String>> getSpeciesWithLocations() {
+    try {
+      this.out.writeByte(ShardProtocol.SPECIES_WITH_LOCATIONS);
+      this.send();
+      return ShardProtocol.readSpeciesWithLocations(this.in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized Map<FavoriteFood, Integer> getFavFoodShoppingList() {
+    try {
+      this.out.writeByte(ShardProtocol.FAV_FOOD_SHOPPING_LIST);
+      this.send();
+      return ShardProtocol.readShoppingList(this.in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized boolean prepareTransferIn(String transferId) {
+    try {
+      this.out.writeByte(ShardProtocol.PREPARE_TRANSFER_IN);
+      this.out.writeUTF(transferId);
+      this.send();
+      return this.in.readBoolean();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized MonkeyRecord prepareTransferOut(String transferId, String monkeyId) {
+    try {
+      this.out.writeByte(ShardProtocol.PREPARE_TRANSFER_OUT);
+      this.out.writeUTF(transferId);
+      this.out.writeUTF(monkeyId);
+      this.send();
+      return ShardProtocol.readMonkey(this.in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized String commitTransferIn(String transferId, MonkeyRecord monkey) {
+    try {
+      this.out.writeByte(ShardProtocol.COMMIT_TRANSFER_IN);
+      this.out.writeUTF(transferId);
+      ShardProtocol.writeMonkey(this.out, monkey);
+      this.send();
+      return this.in.readUTF();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void commitTransferOut(String transferId) {
+    try {
+      this.out.writeByte(ShardProtocol.COMMIT_TRANSFER_OUT);
+      this.out.writeUTF(transferId);
+      this.send();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void revertTransferIn(String transferId) {
+    try {
+      this.out.writeByte(ShardProtocol.REVERT_TRANSFER_IN);
+      this.out.writeUTF(transferId);
+      this.send();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void abortTransfer(String transferId) {
+    try {
+      this.out.writeByte(ShardProtocol.ABORT_TRANSFER);
+      this.out.writeUTF(transferId);
+      this.send();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    this.socket.close();
+  }
+
+  /**
+   * Flushes the request and reads the status of the response, rethrowing a failure of the
+   * server as the matching exception.
+   */
+  private void send() throws IOException {
+    this.out.flush();
+    byte status = this.in.readByte();
+    if (status == ShardProtocol.ILLEGAL_ARGUMENT) {
+      throw new IllegalArgumentException(this.in.readUTF());
+    } else if (status == ShardProtocol.ILLEGAL_STATE) {
+      throw new IllegalStateException(this.in.readUTF());
+    } else if (status != ShardProtocol.OK) {
+      throw new IllegalStateException("Shard failed: " + this.in.readUTF());
+    }
+  }
+}
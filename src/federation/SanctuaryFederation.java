@@ -0,0 +1,196 @@
+package federation;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import enums.FavoriteFood;
+import enums.Species;
+
+/**
+ * Spreads the animals of several sites over one {@link Shard} per site. Queries are sent to every
+ * shard at the same time and their results are merged. Locations in merged results are prefixed
+ * with the site they belong to, for example {@code "north/ENC1"}.
+ */
+public class SanctuaryFederation implements Closeable {
+
+  private final Map<String, Shard> shards;
+  private final ExecutorService executor;
+
+  public SanctuaryFederation() {
+    this.shards = Collections.synchronizedMap(new LinkedHashMap<>());
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "federation-query");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Adds the shard housing the animals of {@code site}.
+   *
+   * @param site  the name of the site
+   * @param shard the shard of the site
+   * @throws IllegalArgumentException if either is {@code null} or the site already exists.
+   */
+  public void addShard(String site, Shard shard) {
+    if (site == null || site.isEmpty() || shard == null) {
+      throw new IllegalArgumentException("Site and shard cannot be null or empty.");
+    }
+    if (this.shards.putIfAbsent(site, shard) != null) {
+      throw new IllegalArgumentException(site + ": Site already exists.");
+    }
+  }
+
+  public List<String> getSites() {
+    synchronized (this.shards) {
+      return new ArrayList<>(this.shards.keySet());
+    }
+  }
+
+  /**
+   * Adds a new monkey to an isolation cage at {@code site}.
+   *
+   * @param site   the site to house the monkey at
+   * @param monkey the monkey to add
+   * @return the id of the new monkey at the site
+   */
+  public String addMonkey(String site, MonkeyRecord monkey) {
+    return this.getShard(site).addMonkey(monkey);
+  }
+
+  /**
+   * Returns the site-prefixed locations of every species across all sites.
+   *
+   * @return locations by species
+   */
+  public Map<Species, List<String>> getSpeciesWithLocations() {
+    Map<Species, List<String>> speciesWithLocations = new TreeMap<>();
+    for (Species species : Species.values()) {
+      speciesWithLocations.put(species, new ArrayList<>());
+    }
+    this.queryAll(Shard::getSpeciesWithLocations).forEach((site, shardLocations) ->
+            shardLocations.forEach((species, locations) -> {
+              for (String location : locations) {
+                speciesWithLocations.get(species).add(site + "/" + location);
+              }
+            }));
+    return speciesWithLocations;
+  }
+
+  public List<String> getLocationsForSpecies(Species species) {
+    return this.getSpeciesWithLocations().get(species);
+  }
+
+  /**
+   * Returns the food needed by the animals of all sites.
+   *
+   * @return grams of every favorite food
+   */
+  public Map<FavoriteFood, Integer> getFavFoodShoppingList() {
+    Map<FavoriteFood, Integer> favFoodShoppingList = new EnumMap<>(FavoriteFood.class);
+    this.queryAll(Shard::getFavFoodShoppingList).values().forEach(shoppingList ->
+            shoppingList.forEach((food, amount) -> favFoodShoppingList.merge(food, amount,
+                    Integer::sum)));
+    return favFoodShoppingList;
+  }
+
+  /**
+   * Moves a monkey from one site to an isolation cage at another. The destination first
+   * reserves a cage and the source marks the monkey as leaving. Only when both succeed is the
+   * monkey housed at the destination and released by the source. If any step fails, the
+   * prepared steps are aborted and the monkey stays where it was. If the source cannot release
+   * the monkey after the destination has housed it, the arrival is reverted at the destination,
+   * so the monkey is never housed at both sites.
+   *
+   * @param fromSite the site the monkey is at
+   * @param monkeyId the id of the monkey at {@code fromSite}
+   * @param toSite   the site to move the monkey to
+   * @return the id of the monkey at {@code toSite}
+   * @throws IllegalArgumentException if a site or the monkey does not exist.
+   * @throws IllegalStateException if {@code toSite} has no free isolation cage.
+   */
+  public String transferMonkey(String fromSite, String monkeyId, String toSite) {
+    Shard source = this.getShard(fromSite);
+    Shard destination = this.getShard(toSite);
+    if (source == destination) {
+      throw new IllegalArgumentException("Monkey " + monkeyId + " is already at " + toSite + ".");
+    }
+    String transferId = UUID.randomUUID().toString();
+    if (!destination.prepareTransferIn(transferId)) {
+      throw new IllegalStateException("No more Isolation cages left at " + toSite + ". Cannot " +
+              "transfer monkey " + monkeyId + ".");
+    }
+    MonkeyRecord monkey;
+    String newMonkeyId;
+    try {
+      monkey = source.prepareTransferOut(transferId, monkeyId);
+      newMonkeyId = destination.commitTransferIn(transferId, monkey);
+    } catch (RuntimeException e) {
+      source.abortTransfer(transferId);
+      destination.abortTransfer(transferId);
+      throw e;
+    }
+    try {
+      source.commitTransferOut(transferId);
+    } catch (RuntimeException e) {
+      try {
+        destination.revertTransferIn(transferId);
+      } catch (RuntimeException revertFailure) {
+        e.addSuppressed(revertFailure);
+      }
+      try {
+        source.abortTransfer(transferId);
+      } catch (RuntimeException abortFailure) {
+        e.addSuppressed(abortFailure);
+      }
+      throw e;
+    }
+    return newMonkeyId;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
+
+  private Shard getShard(String site) {
+    Shard shard = this.shards.get(site);
+    if (shard == null) {
+      throw new IllegalArgumentException(site + ": Site does not exist.");
+    }
+    return shard;
+  }
+
+  /**
+   * Runs {@code query} on every shard concurrently and returns the results by site.
+   */
+  private <T> Map<String, T> queryAll(Function<Shard, T> query) {
+    Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+    synchronized (this.shards) {
+      this.shards.forEach((site, shard) -> pending.put(site,
+              CompletableFuture.supplyAsync(() -> query.apply(shard), this.executor)));
+    }
+    Map<String, T> results = new LinkedHashMap<>();
+    try {
+      pending.forEach((site, result) -> results.put(site, result.join()));
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    return results;
+  }
+}
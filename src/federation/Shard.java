@@ -0,0 +1,82 @@
+package federation;
+
+import java.util.List;
+import java.util.Map;
+
+import enums.FavoriteFood;
+import enums.Species;
+
+/**
+ * One site of a {@link SanctuaryFederation}. A shard owns the animals housed at its site and
+ * takes part in transfers between sites through a two-phase protocol: both sides prepare the
+ * transfer first and only then is it committed, so an animal is never lost or housed twice.
+ */
+public interface Shard {
+
+  /**
+   * Adds a new monkey to an isolation cage of this site.
+   *
+   * @param monkey the monkey to add
+   * @return the id of the new monkey at this site
+   * @throws IllegalStateException if no isolation cage is free.
+   */
+  String addMonkey(MonkeyRecord monkey);
+
+  Map<Species, List<String>> getSpeciesWithLocations();
+
+  Map<FavoriteFood, Integer> getFavFoodShoppingList();
+
+  /**
+   * Reserves an isolation cage for a monkey arriving with transfer {@code transferId}.
+   *
+   * @param transferId the id of the transfer
+   * @return {@code true} if a cage was reserved, {@code false} if none is free
+   */
+  boolean prepareTransferIn(String transferId);
+
+  /**
+   * Marks monkey {@code monkeyId} as leaving with transfer {@code transferId}.
+   *
+   * @param transferId the id of the transfer
+   * @param monkeyId   the id of the leaving monkey at this site
+   * @return the attributes of the leaving monkey
+   * @throws IllegalArgumentException if the monkey does not exist at this site.
+   * @throws IllegalStateException if the monkey is already part of another transfer.
+   */
+  MonkeyRecord prepareTransferOut(String transferId, String monkeyId);
+
+  /**
+   * Houses the arriving monkey of a prepared transfer in its reserved isolation cage.
+   *
+   * @param transferId the id of the transfer
+   * @param monkey     the attributes of the arriving monkey
+   * @return the id of the monkey at this site
+   * @throws IllegalStateException if the transfer was not prepared.
+   */
+  String commitTransferIn(String transferId, MonkeyRecord monkey);
+
+  /**
+   * Releases the leaving monkey of a prepared transfer. It becomes an alumni of this site.
+   *
+   * @param transferId the id of the transfer
+   * @throws IllegalStateException if the transfer was not prepared.
+   */
+  void commitTransferOut(String transferId);
+
+  /**
+   * Releases the monkey that arrived with a committed transfer whose departure could not be
+   * committed at the source, so that the animal stays housed at the source only. It becomes an
+   * alumni of this site. Only recent arrivals can be reverted.
+   *
+   * @param transferId the id of the transfer
+   * @throws IllegalStateException if no recent arrival was committed with {@code transferId}.
+   */
+  void revertTransferIn(String transferId);
+
+  /**
+   * Drops any reservation or pending departure held for {@code transferId}.
+   *
+   * @param transferId the id of the transfer
+   */
+  void abortTransfer(String transferId);
+}
@@ -0,0 +1,117 @@
+package federation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+
+/**
+ * Wire format shared by {@link ShardServer} and {@link RemoteShard}. Every request is an operation
+ * byte followed by its arguments. Every response is a status byte followed by either the result
+ * or an error message.
+ */
+final class ShardProtocol {
+
+  static final byte ADD_MONKEY = 1;
+  static final byte SPECIES_WITH_LOCATIONS = 2;
+  static final byte FAV_FOOD_SHOPPING_LIST = 3;
+  static final byte PREPARE_TRANSFER_IN = 4;
+  static final byte PREPARE_TRANSFER_OUT = 5;
+  static final byte COMMIT_TRANSFER_IN = 6;
+  static final byte COMMIT_TRANSFER_OUT = 7;
+  static final byte ABORT_TRANSFER = 8;
+  static final byte REVERT_TRANSFER_IN = 9;
+
+  static final byte OK = 0;
+  static final byte ILLEGAL_ARGUMENT = 1;
+  static final byte ILLEGAL_STATE = 2;
+  static final byte FAILURE = 3;
+
+  private ShardProtocol() {
+  }
+
+  static void writeMonkey(DataOutputStream out, MonkeyRecord monkey) throws IOException {
+    out.writeUTF(monkey.getName());
+    out.writeByte(monkey.getSize().ordinal());
+    out.writeDouble(monkey.getWeight());
+    out.writeInt(monkey.getAge());
+    out.writeByte(monkey.getSpecies().ordinal());
+    out.writeByte(monkey.getSex().ordinal());
+    out.writeByte(monkey.getFavoriteFood().ordinal());
+    out.writeByte(monkey.getHealthStatus().ordinal());
+  }
+
+  static MonkeyRecord readMonkey(DataInputStream in) throws IOException {
+    return new MonkeyRecord(in.readUTF(), readEnum(in, MonkeySize.values()), in.readDouble(),
+            in.readInt(), readEnum(in, Species.values()), readEnum(in, Sex.values()),
+            readEnum(in, FavoriteFood.values()), readEnum(in, HealthStatus.values()));
+  }
+
+  static void writeSpeciesWithLocations(DataOutputStream out,
+                                        Map<Species, List<String>> speciesWithLocations)
+          throws IOException {
+    out.writeInt(speciesWithLocations.size());
+    for (Map.Entry<Species, List<String>> species : speciesWithLocations.entrySet()) {
+      out.writeByte(species.getKey().ordinal());
+      out.writeInt(species.getValue().size());
+      for (String location : species.getValue()) {
+        out.writeUTF(location);
+      }
+    }
+  }
+
+  static Map<Species, List<String>> readSpeciesWithLocations(DataInputStream in)
+          throws IOException {
+    Map<Species, List<String>> speciesWithLocations = new TreeMap<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      Species species = readEnum(in, Species.values());
+      List<String> locations = new ArrayList<>();
+      for (int j = in.readInt(); j > 0; j--) {
+        locations.add(in.readUTF());
+      }
+      speciesWithLocations.put(species, locations);
+    }
+    return speciesWithLocations;
+  }
+
+  static void writeShoppingList(DataOutputStream out, Map<FavoriteFood, Integer> shoppingList)
+          throws IOException {
+    out.writeInt(shoppingList.size());
+    for (Map.Entry<FavoriteFood, Integer> food : shoppingList.entrySet()) {
+      out.writeByte(food.getKey().ordinal());
+      out.writeInt(food.getValue());
+    }
+  }
+
+  static Map<FavoriteFood, Integer> readShoppingList(DataInputStream in) throws IOException {
+    Map<FavoriteFood, Integer> shoppingList = new EnumMap<>(FavoriteFood.class);
+    for (int i = in.readInt(); i > 0; i--) {
+      shoppingList.put(readEnum(in, FavoriteFood.values()), in.readInt());
+    }
+    return shoppingList;
+  }
+
+  /**
+   * Reads the ordinal of one of {@code values}. A bad ordinal means the stream cannot be trusted
+   * any further, so it fails the connection rather than the request.
+   */
+  private static <E extends Enum<E>> E readEnum(DataInputStream in, E[] values)
+          throws IOException {
+    int ordinal = in.readByte();
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new IOException("Invalid " + values[0].getDeclaringClass().getSimpleName() +
+              " ordinal " + ordinal);
+    }
+    return values[ordinal];
+  }
+}
@@ -0,0 +1,175 @@
+package federation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+
+import sanctuary.JungleFriendsSanctuary;
+
+/**
+ * Serves a {@link LocalShard} over a socket on the loopback interface so that a site can run in
+ * its own JVM. Each connection is handled on its own thread and requests on a connection are
+ * answered in order.
+ */
+public class ShardServer implements Closeable {
+
+  private final LocalShard shard;
+  private final ServerSocket serverSocket;
+  private final Thread acceptor;
+
+  /**
+   * Starts serving {@code shard} on {@code port} of the loopback interface.
+   *
+   * @param shard the shard to serve
+   * @param port  the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound.
+   */
+  public ShardServer(LocalShard shard, int port) throws IOException {
+    if (shard == null) {
+      throw new IllegalArgumentException("Shard cannot be null.");
+    }
+    this.shard = shard;
+    this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.acceptor = new Thread(this::acceptConnections, "shard-server-" + this.getPort());
+    this.acceptor.setDaemon(true);
+    this.acceptor.start();
+  }
+
+  public int getPort() {
+    return this.serverSocket.getLocalPort();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.serverSocket.close();
+  }
+
+  private void acceptConnections() {
+    while (!this.serverSocket.isClosed()) {
+      try {
+        Socket socket = this.serverSocket.accept();
+        Thread handler = new Thread(() -> this.serve(socket), "shard-connection");
+        handler.setDaemon(true);
+        handler.start();
+      } catch (IOException e) {
+        if (!this.serverSocket.isClosed()) {
+          System.err.println("Shard server could not accept connection: " + e);
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (Socket connection = socket;
+         DataInputStream in = new DataInputStream(new BufferedInputStream(
+                 connection.getInputStream()));
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                 connection.getOutputStream()))) {
+      connection.setTcpNoDelay(true);
+      while (true) {
+        byte operation = in.readByte();
+        this.handle(operation, in, out);
+        out.flush();
+      }
+    } catch (EOFException | SocketException e) {
+      // client closed the connection
+    } catch (IOException e) {
+      System.err.println("Shard server connection failed: " + e);
+    }
+  }
+
+  private void handle(byte operation, DataInputStream in, DataOutputStream out)
+          throws IOException {
+    try {
+      switch (operation) {
+        case ShardProtocol.ADD_MONKEY: {
+          String monkeyId = this.shard.addMonkey(ShardProtocol.readMonkey(in));
+          out.writeByte(ShardProtocol.OK);
+          out.writeUTF(monkeyId);
+          break;
+        }
+        case ShardProtocol.SPECIES_WITH_LOCATIONS:
+          out.writeByte(ShardProtocol.OK);
+          ShardProtocol.writeSpeciesWithLocations(out, this.shard.getSpeciesWithLocations());
+          break;
+        case ShardProtocol.FAV_FOOD_SHOPPING_LIST:
+          out.writeByte(ShardProtocol.OK);
+          ShardProtocol.writeShoppingList(out, this.shard.getFavFoodShoppingList());
+          break;
+        case ShardProtocol.PREPARE_TRANSFER_IN: {
+          boolean reserved = this.shard.prepareTransferIn(in.readUTF());
+          out.writeByte(ShardProtocol.OK);
+          out.writeBoolean(reserved);
+          break;
+        }
+        case ShardProtocol.PREPARE_TRANSFER_OUT: {
+          String transferId = in.readUTF();
+          MonkeyRecord monkey = this.shard.prepareTransferOut(transferId, in.readUTF());
+          out.writeByte(ShardProtocol.OK);
+          ShardProtocol.writeMonkey(out, monkey);
+          break;
+        }
+        case ShardProtocol.COMMIT_TRANSFER_IN: {
+          String transferId = in.readUTF();
+          String monkeyId = this.shard.commitTransferIn(transferId, ShardProtocol.readMonkey(in));
+          out.writeByte(ShardProtocol.OK);
+          out.writeUTF(monkeyId);
+          break;
+        }
+        case ShardProtocol.COMMIT_TRANSFER_OUT:
+          this.shard.commitTransferOut(in.readUTF());
+          out.writeByte(ShardProtocol.OK);
+          break;
+        case ShardProtocol.REVERT_TRANSFER_IN:
+          this.shard.revertTransferIn(in.readUTF());
+          out.writeByte(ShardProtocol.OK);
+          break;
+        case ShardProtocol.ABORT_TRANSFER:
+          this.shard.abortTransfer(in.readUTF());
+          out.writeByte(ShardProtocol.OK);
+          break;
+        default:
+          throw new IOException("Unknown shard operation " + operation);
+      }
+    } catch (IllegalArgumentException e) {
+      out.writeByte(ShardProtocol.ILLEGAL_ARGUMENT);
+      out.writeUTF(String.valueOf(e.getMessage()));
+    } catch (IllegalStateException e) {
+      out.writeByte(ShardProtocol.ILLEGAL_STATE);
+      out.writeUTF(String.valueOf(e.getMessage()));
+    } catch (RuntimeException e) {
+      out.writeByte(ShardProtocol.FAILURE);
+      out.writeUTF(e.toString());
+    }
+  }
+
+  /**
+   * Runs a site in its own JVM.
+   * Usage: {@code ShardServer <port> <isolationCages> [enclosureSize ...]}
+   *
+   * @param args port, number of isolation cages and the size of every enclosure
+   * @throws IOException if the port cannot be bound.
+   * @throws InterruptedException if interrupted while serving.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      System.err.println("Usage: ShardServer <port> <isolationCages> [enclosureSize ...]");
+      return;
+    }
+    int[] sizeOfEnclosures = Arrays.stream(args).skip(2).mapToInt(Integer::parseInt).toArray();
+    JungleFriendsSanctuary sanctuary = new JungleFriendsSanctuary(Integer.parseInt(args[1]),
+            sizeOfEnclosures.length, sizeOfEnclosures);
+    ShardServer server = new ShardServer(new LocalShard(sanctuary), Integer.parseInt(args[0]));
+    System.out.println("Shard listening on port " + server.getPort());
+    server.acceptor.join();
+  }
+}
@@ -0,0 +1,187 @@
+package federation;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import sanctuary.JungleFriendsSanctuary;
+import sanctuary.Primate;
+import sanctuary.Sanctuary;
+
+/**
+ * Checks the two-phase transfer of monkeys between the sites of a {@link SanctuaryFederation}: a
+ * transfer that commits, transfers refused by either side, a departure that cannot be committed
+ * after the arrival was, and prepared transfers whose lease runs out. After every transfer the
+ * monkey must be housed at exactly one site and no cage may stay reserved. Throws
+ * {@link AssertionError} at the first difference.
+ */
+public final class TransferCheck {
+
+  private static final long LEASE_MILLIS = 50;
+  private static final MonkeyRecord MONKEY = new MonkeyRecord("Kiki", MonkeySize.MEDIUM, 14, 5,
+          Species.HOWLER, Sex.FEMALE, FavoriteFood.FRUITS, HealthStatus.HEALTHY);
+
+  private TransferCheck() {
+  }
+
+  /**
+   * Runs the checks.
+   * Usage: {@code TransferCheck}
+   *
+   * @param args not used
+   * @throws InterruptedException if interrupted while waiting for a lease to run out.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    checkCommit();
+    checkFullDestination();
+    checkMissingMonkey();
+    checkDepartureFailure();
+    checkLeases();
+    System.out.println("Transfer checks passed.");
+  }
+
+  private static void checkCommit() {
+    LocalShard north = newShard(2);
+    LocalShard south = newShard(2);
+    try (SanctuaryFederation federation = newFederation(north, south)) {
+      String monkeyId = federation.addMonkey("north", MONKEY);
+      String arrivedId = federation.transferMonkey("north", monkeyId, "south");
+      check(north.getSanctuary().getMonkeys().isEmpty()
+              && north.getSanctuary().getAlumniMonkeys().size() == 1,
+              "a transferred monkey becomes an alumni of its source");
+      Primate arrived = south.getSanctuary().getMonkey(arrivedId);
+      check(arrived != null && arrived.getName().equals(MONKEY.getName())
+              && arrived.getWeight() == MONKEY.getWeight()
+              && arrived.getSpecies() == MONKEY.getSpecies(),
+              "a transferred monkey arrives with its attributes");
+      checkFreeCages(north, 2);
+      checkFreeCages(south, 1);
+    }
+  }
+
+  private static void checkFullDestination() {
+    LocalShard north = newShard(1);
+    LocalShard south = newShard(1);
+    try (SanctuaryFederation federation = newFederation(north, south)) {
+      String monkeyId = federation.addMonkey("north", MONKEY);
+      federation.addMonkey("south", MONKEY);
+      try {
+        federation.transferMonkey("north", monkeyId, "south");
+        throw new AssertionError("Expected a transfer to a full site to fail.");
+      } catch (IllegalStateException e) {
+        // the destination has no free isolation cage
+      }
+      checkHousedOnce(north, monkeyId);
+      check(south.getSanctuary().getMonkeys().size() == 1, "a full site takes no monkey");
+    }
+  }
+
+  private static void checkMissingMonkey() {
+    LocalShard north = newShard(1);
+    LocalShard south = newShard(1);
+    try (SanctuaryFederation federation = newFederation(north, south)) {
+      try {
+        federation.transferMonkey("north", "MON404", "south");
+        throw new AssertionError("Expected a transfer of a missing monkey to fail.");
+      } catch (IllegalArgumentException e) {
+        // the source has no such monkey
+      }
+      checkFreeCages(south, 1);
+      south.addMonkey(MONKEY);
+    }
+  }
+
+  private static void checkDepartureFailure() {
+    LocalShard north = new LocalShard(newSanctuary(2)) {
+      @Override
+      public synchronized void commitTransferOut(String transferId) {
+        throw new IllegalStateException("Source went away before releasing " + transferId + ".");
+      }
+    };
+    LocalShard south = newShard(2);
+    try (SanctuaryFederation federation = newFederation(north, south)) {
+      String monkeyId = federation.addMonkey("north", MONKEY);
+      try {
+        federation.transferMonkey("north", monkeyId, "south");
+        throw new AssertionError("Expected a transfer whose departure fails to fail.");
+      } catch (IllegalStateException e) {
+        check(e.getSuppressed().length == 0, "reverting the arrival and aborting succeed");
+      }
+      checkHousedOnce(north, monkeyId);
+      check(south.getSanctuary().getMonkeys().isEmpty()
+              && south.getSanctuary().getAlumniMonkeys().size() == 1,
+              "the arrival of a failed departure is reverted at the destination");
+      checkFreeCages(south, 2);
+      check(south.prepareTransferIn("retry") && south.prepareTransferIn("again"),
+              "a failed transfer leaves no cage reserved");
+      north.prepareTransferOut("retry", monkeyId);
+    }
+  }
+
+  private static void checkLeases() throws InterruptedException {
+    LocalShard north = new LocalShard(newSanctuary(1), LEASE_MILLIS);
+    LocalShard south = new LocalShard(newSanctuary(1), LEASE_MILLIS);
+    String monkeyId = north.addMonkey(MONKEY);
+    check(south.prepareTransferIn("lost"), "a free cage can be reserved");
+    check(!south.prepareTransferIn("other"), "a reserved cage is not reserved twice");
+    north.prepareTransferOut("lost", monkeyId);
+    try {
+      north.prepareTransferOut("other", monkeyId);
+      throw new AssertionError("Expected a leaving monkey not to leave twice.");
+    } catch (IllegalStateException e) {
+      // the monkey is held by the first transfer
+    }
+    Thread.sleep(2 * LEASE_MILLIS);
+    try {
+      south.commitTransferIn("lost", MONKEY);
+      throw new AssertionError("Expected a transfer to fail to commit after its lease ran out.");
+    } catch (IllegalStateException e) {
+      // the reservation was dropped
+    }
+    check(south.prepareTransferIn("other"), "a cage whose lease ran out can be reserved again");
+    north.prepareTransferOut("other", monkeyId);
+    try {
+      north.commitTransferOut("lost");
+      throw new AssertionError("Expected a departure to fail to commit after its lease ran out.");
+    } catch (IllegalStateException e) {
+      // the departure was dropped
+    }
+    north.commitTransferOut("other");
+    check(north.getSanctuary().getMonkey(monkeyId) == null,
+            "a departure prepared again after a lease ran out commits");
+  }
+
+  private static Sanctuary newSanctuary(int isolationCages) {
+    return new JungleFriendsSanctuary(isolationCages, 1, new int[] {10});
+  }
+
+  private static LocalShard newShard(int isolationCages) {
+    return new LocalShard(newSanctuary(isolationCages));
+  }
+
+  private static SanctuaryFederation newFederation(Shard north, Shard south) {
+    SanctuaryFederation federation = new SanctuaryFederation();
+    federation.addShard("north", north);
+    federation.addShard("south", south);
+    return federation;
+  }
+
+  private static void checkHousedOnce(LocalShard shard, String monkeyId) {
+    check(shard.getSanctuary().getMonkey(monkeyId) != null
+            && shard.getSanctuary().getAlumniMonkeys().isEmpty(),
+            "a monkey whose transfer failed stays at its source");
+  }
+
+  private static void checkFreeCages(LocalShard shard, int freeCages) {
+    check(shard.getSanctuary().getNumOfFreeIsolationCages() == freeCages,
+            freeCages + " isolation cages are free, found "
+                    + shard.getSanctuary().getNumOfFreeIsolationCages());
+  }
+
+  private static void check(boolean condition, String expectation) {
+    if (!condition) {
+      throw new AssertionError("Expected that " + expectation + ".");
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package replication;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import sanctuary.JungleFriendsSanctuary;
+import sanctuary.SanctuaryForkCheck;
+
+/**
+ * Checks that standbys catch up with a {@link ReplicationPrimary} whose log has been trimmed. A
+ * standby that joins while the changes it needs are still logged must catch up from the log, and
+ * one that joins after they were dropped must be sent a snapshot and then follow the log. Every
+ * standby must end up looking like the primary. Throws {@link AssertionError} at the first
+ * difference.
+ */
+public final class ReplicationCatchUpCheck {
+
+  private static final int MAX_LOG_SIZE = 64;
+  private static final long CATCH_UP_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  private ReplicationCatchUpCheck() {
+  }
+
+  /**
+   * Runs the checks.
+   * Usage: {@code ReplicationCatchUpCheck [seed]}
+   *
+   * @param args the seed the changes of the primary are drawn with
+   * @throws IOException if a standby cannot reach the primary.
+   * @throws InterruptedException if interrupted while waiting for a standby.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 37);
+    JungleFriendsSanctuary sanctuary = SanctuaryForkCheck.newSanctuary(300);
+    try (ReplicationPrimary primary = new ReplicationPrimary(sanctuary, 0, 16, MAX_LOG_SIZE)) {
+      change(sanctuary, random, MAX_LOG_SIZE / 2);
+      try (ReplicationStandby standby = new ReplicationStandby(primary.getPort())) {
+        awaitCatchUp(sanctuary, primary, standby,
+                "a standby joining before the log is trimmed");
+        check(primary.getSnapshotsShipped() == 0, "the log is enough to catch up");
+      }
+      change(sanctuary, random, 10 * MAX_LOG_SIZE);
+      check(primary.getRetainedChanges() <= MAX_LOG_SIZE, "the log is trimmed to its size");
+      ReplicationStandby standby = new ReplicationStandby(primary.getPort());
+      try {
+        awaitCatchUp(sanctuary, primary, standby,
+                "a standby joining after the log is trimmed");
+        check(primary.getSnapshotsShipped() == 1, "a snapshot is shipped for trimmed changes");
+        for (int burst = 0; burst < 20; burst++) {
+          change(sanctuary, random, MAX_LOG_SIZE / 2);
+          awaitCatchUp(sanctuary, primary, standby,
+                  "a standby following the log after a snapshot");
+        }
+        check(primary.getSnapshotsShipped() == 1, "the log is followed after the snapshot");
+      } finally {
+        standby.close();
+      }
+      change(sanctuary, random, 10 * MAX_LOG_SIZE);
+      try (ReplicationStandby replacement = new ReplicationStandby(primary.getPort())) {
+        awaitCatchUp(sanctuary, primary, replacement, "a standby replacing one that went away");
+        check(primary.getSnapshotsShipped() == 2, "the replacement is sent a snapshot");
+      }
+    }
+    System.out.println("Replication catch-up checks passed.");
+  }
+
+  /**
+   * Makes {@code count} random changes to {@code sanctuary} while holding its monitor, as the
+   * primary requires.
+   */
+  private static void change(JungleFriendsSanctuary sanctuary, Random random, int count) {
+    for (int i = 0; i < count; i++) {
+      synchronized (sanctuary) {
+        SanctuaryForkCheck.changeRandomly(sanctuary, random);
+      }
+    }
+  }
+
+  /**
+   * Waits until {@code standby} has applied every change logged by {@code primary} and checks
+   * that it then looks like {@code sanctuary}, the sanctuary of the primary.
+   */
+  private static void awaitCatchUp(JungleFriendsSanctuary sanctuary, ReplicationPrimary primary,
+                                   ReplicationStandby standby, String situation)
+          throws InterruptedException {
+    long deadline = System.currentTimeMillis() + CATCH_UP_MILLIS;
+    while (standby.getAppliedSequence() < primary.getLoggedSequence()
+            && standby.isReplicating() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    check(standby.getAppliedSequence() == primary.getLoggedSequence(),
+            situation + " applies every change, failure: " + standby.getFailure());
+    check(SanctuaryForkCheck.describe(standby.getSanctuary()).equals(
+            SanctuaryForkCheck.describe(sanctuary)),
+            situation + " looks like the primary");
+  }
+
+  private static void check(boolean condition, String expectation) {
+    if (!condition) {
+      throw new AssertionError("Expected that " + expectation + ".");
+    }
+  }
+}
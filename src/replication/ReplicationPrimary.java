@@ -0,0 +1,443 @@
+package replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import sanctuary.JungleFriendsSanctuary;
+import sanctuary.Primate;
+import sanctuary.SanctuaryChange;
+
+/**
+ * Ships the changes of a sanctuary to a {@link ReplicationStandby} over a socket on the loopback
+ * interface. Changes are logged as they are made and shipped in batches of whatever has been
+ * logged since the last batch was written. Batches are not held back waiting for the standby to
+ * acknowledge earlier ones. The log keeps at most a fixed number of changes and drops the ones
+ * the standby has acknowledged, so it does not grow while the standby is away. A standby that
+ * connects, or connects again, is sent the changes after the last one it applied while the log
+ * still holds them, and a new standby that the log cannot bring up to date is sent a snapshot of
+ * the sanctuary first.
+ */
+public class ReplicationPrimary implements Closeable {
+
+  private static final int DEFAULT_MAX_LOG_SIZE = 1 << 16;
+
+  private final JungleFriendsSanctuary sanctuary;
+  private final int maxBatchSize;
+  private final SanctuaryChange[] log;
+  private final Consumer<SanctuaryChange> listener;
+  private final ServerSocket serverSocket;
+  private final Thread shipper;
+  private final AtomicLong loggedSequence;
+  private final AtomicLong shippedSequence;
+  private final AtomicLong acknowledgedSequence;
+  private final AtomicLong batchesShipped;
+  private final AtomicLong snapshotsShipped;
+  private long firstRetainedSequence;
+  private volatile long lastAcknowledgedMillis;
+  private volatile Socket connection;
+
+  /**
+   * Starts logging the changes of {@code sanctuary} with a log of the default size. See
+   * {@link #ReplicationPrimary(JungleFriendsSanctuary, int, int, int)}.
+   *
+   * @param sanctuary    the sanctuary to replicate
+   * @param port         the port to listen on, or 0 for any free port
+   * @param maxBatchSize largest number of changes shipped in one batch
+   * @throws IOException if the port cannot be bound.
+   * @throws IllegalArgumentException if {@code sanctuary} is {@code null} or
+   *                                  {@code maxBatchSize} is not positive.
+   */
+  public ReplicationPrimary(JungleFriendsSanctuary sanctuary, int port, int maxBatchSize)
+          throws IOException {
+    this(sanctuary, port, maxBatchSize, DEFAULT_MAX_LOG_SIZE);
+  }
+
+  /**
+   * Starts logging the changes of {@code sanctuary}, beginning with the changes that build its
+   * current state, and waits on {@code port} of the loopback interface for standbys to ship them
+   * to, one at a time. Construct while no other thread is changing the sanctuary. Snapshots are
+   * taken while holding the sanctuary's monitor, so threads changing the sanctuary must hold it
+   * too.
+   *
+   * @param sanctuary    the sanctuary to replicate
+   * @param port         the port to listen on, or 0 for any free port
+   * @param maxBatchSize largest number of changes shipped in one batch
+   * @param maxLogSize   most changes kept for a standby that is behind or away
+   * @throws IOException if the port cannot be bound.
+   * @throws IllegalArgumentException if {@code sanctuary} is {@code null} or
+   *                                  {@code maxBatchSize} or {@code maxLogSize} is not positive.
+   */
+  public ReplicationPrimary(JungleFriendsSanctuary sanctuary, int port, int maxBatchSize,
+                            int maxLogSize) throws IOException {
+    if (sanctuary == null) {
+      throw new IllegalArgumentException("Sanctuary cannot be null.");
+    }
+    if (maxBatchSize <= 0 || maxLogSize <= 0) {
+      throw new IllegalArgumentException("Batch size and log size must be positive. Batch " +
+              "size: " + maxBatchSize + ", Log size: " + maxLogSize);
+    }
+    this.sanctuary = sanctuary;
+    this.maxBatchSize = maxBatchSize;
+    this.log = new SanctuaryChange[maxLogSize];
+    this.firstRetainedSequence = 1;
+    this.loggedSequence = new AtomicLong();
+    this.shippedSequence = new AtomicLong();
+    this.acknowledgedSequence = new AtomicLong();
+    this.batchesShipped = new AtomicLong();
+    this.snapshotsShipped = new AtomicLong();
+    this.serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+    this.listener = this::logChange;
+    this.sanctuary.addChangeListener(this.listener);
+    this.shipper = new Thread(this::ship, "replication-primary-" + this.getPort());
+    this.shipper.setDaemon(true);
+    this.shipper.start();
+  }
+
+  public int getPort() {
+    return this.serverSocket.getLocalPort();
+  }
+
+  public boolean isConnected() {
+    return this.connection != null;
+  }
+
+  /**
+   * Returns the sequence number of the last change logged. Changes are numbered from 1.
+   *
+   * @return last logged sequence number
+   */
+  public long getLoggedSequence() {
+    return this.loggedSequence.get();
+  }
+
+  public long getShippedSequence() {
+    return this.shippedSequence.get();
+  }
+
+  public long getAcknowledgedSequence() {
+    return this.acknowledgedSequence.get();
+  }
+
+  /**
+   * Returns the number of logged changes not yet written to the standby.
+   *
+   * @return changes waiting to be shipped
+   */
+  public long getPendingChanges() {
+    return this.loggedSequence.get() - this.shippedSequence.get();
+  }
+
+  /**
+   * Returns the number of logged changes the standby has not acknowledged applying.
+   *
+   * @return replication lag in changes
+   */
+  public long getLag() {
+    return this.loggedSequence.get() - this.acknowledgedSequence.get();
+  }
+
+  /**
+   * Returns the number of changes the log holds for the standby.
+   *
+   * @return retained changes
+   */
+  public long getRetainedChanges() {
+    synchronized (this.log) {
+      return this.loggedSequence.get() - this.firstRetainedSequence + 1;
+    }
+  }
+
+  public long getBatchesShipped() {
+    return this.batchesShipped.get();
+  }
+
+  public long getSnapshotsShipped() {
+    return this.snapshotsShipped.get();
+  }
+
+  /**
+   * Returns the time of the last acknowledgement from the standby, or 0 if there has been none.
+   *
+   * @return time in milliseconds since the epoch
+   */
+  public long getLastAcknowledgedMillis() {
+    return this.lastAcknowledgedMillis;
+  }
+
+  /**
+   * Stops logging and shipping changes.
+   */
+  @Override
+  public void close() throws IOException {
+    this.sanctuary.removeChangeListener(this.listener);
+    this.serverSocket.close();
+    Socket socket = this.connection;
+    if (socket != null) {
+      socket.close();
+    }
+    this.shipper.interrupt();
+  }
+
+  /**
+   * Logs {@code change}, dropping the oldest change when the log is full.
+   */
+  private void logChange(SanctuaryChange change) {
+    synchronized (this.log) {
+      long sequence = this.loggedSequence.incrementAndGet();
+      this.log[this.slot(sequence)] = change;
+      if (sequence - this.firstRetainedSequence >= this.log.length) {
+        this.firstRetainedSequence = sequence - this.log.length + 1;
+      }
+      this.log.notifyAll();
+    }
+  }
+
+  /**
+   * Drops the changes up to {@code sequence}, which the standby has applied.
+   */
+  private void acknowledged(long sequence) {
+    synchronized (this.log) {
+      long last = Math.min(sequence, this.loggedSequence.get());
+      for (; this.firstRetainedSequence <= last; this.firstRetainedSequence++) {
+        this.log[this.slot(this.firstRetainedSequence)] = null;
+      }
+    }
+    this.acknowledgedSequence.accumulateAndGet(sequence, Math::max);
+    this.lastAcknowledgedMillis = System.currentTimeMillis();
+  }
+
+  private int slot(long sequence) {
+    return (int) (sequence % this.log.length);
+  }
+
+  /**
+   * Serves one standby after another until the primary is closed.
+   */
+  private void ship() {
+    while (!this.serverSocket.isClosed()) {
+      try (Socket socket = this.serverSocket.accept();
+           DataInputStream in = new DataInputStream(new BufferedInputStream(
+                   socket.getInputStream()));
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                   socket.getOutputStream(), 1 << 16))) {
+        socket.setTcpNoDelay(true);
+        this.connection = socket;
+        this.serve(socket, in, out);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException e) {
+        if (!this.serverSocket.isClosed()) {
+          System.err.println("Replication to standby failed: " + e);
+        }
+      } finally {
+        this.connection = null;
+      }
+    }
+  }
+
+  /**
+   * Brings a newly connected standby up to date and ships it every later change until the
+   * connection is closed.
+   */
+  private void serve(Socket socket, DataInputStream in, DataOutputStream out)
+          throws IOException, InterruptedException {
+    if (in.readByte() != ReplicationProtocol.HELLO) {
+      throw new IOException("Standby did not say which change it applied last.");
+    }
+    long appliedSequence = in.readLong();
+    boolean needsSnapshot;
+    synchronized (this.log) {
+      if (appliedSequence < 0 || appliedSequence > this.loggedSequence.get()) {
+        throw new IOException("Standby has applied change " + appliedSequence +
+                ", which was never logged.");
+      }
+      needsSnapshot = appliedSequence + 1 < this.firstRetainedSequence;
+      if (needsSnapshot && appliedSequence != 0) {
+        throw new IOException("Standby has applied changes up to " + appliedSequence +
+                " but the log starts at " + this.firstRetainedSequence + ".");
+      }
+    }
+    long nextSequence = needsSnapshot ? this.shipSnapshot(out) + 1 : appliedSequence + 1;
+    this.shippedSequence.set(nextSequence - 1);
+    this.acknowledgedSequence.set(nextSequence - 1);
+    Thread acknowledgements = new Thread(() -> this.readAcknowledgements(socket, in),
+            "replication-acknowledgements-" + this.getPort());
+    acknowledgements.setDaemon(true);
+    acknowledgements.start();
+    List<SanctuaryChange> batch = new ArrayList<>(this.maxBatchSize);
+    while (true) {
+      synchronized (this.log) {
+        while (this.loggedSequence.get() < nextSequence && !socket.isClosed()) {
+          this.log.wait();
+        }
+        if (socket.isClosed()) {
+          return;
+        }
+        if (nextSequence < this.firstRetainedSequence) {
+          throw new IOException("Standby fell more than " + this.log.length +
+                  " changes behind and has been disconnected.");
+        }
+        long last = Math.min(this.loggedSequence.get(), nextSequence + this.maxBatchSize - 1);
+        for (long sequence = nextSequence; sequence <= last; sequence++) {
+          batch.add(this.log[this.slot(sequence)]);
+        }
+      }
+      out.writeByte(ReplicationProtocol.BATCH);
+      out.writeLong(nextSequence);
+      out.writeLong(System.currentTimeMillis());
+      out.writeInt(batch.size());
+      for (SanctuaryChange change : batch) {
+        ReplicationProtocol.writeChange(out, change);
+      }
+      out.flush();
+      nextSequence += batch.size();
+      this.shippedSequence.set(nextSequence - 1);
+      this.batchesShipped.incrementAndGet();
+      batch.clear();
+    }
+  }
+
+  /**
+   * Ships the changes that build the current state of the sanctuary, from a fork taken together
+   * with the number of the last logged change, and returns that number.
+   */
+  private long shipSnapshot(DataOutputStream out) throws IOException {
+    JungleFriendsSanctuary snapshot;
+    long sequence;
+    synchronized (this.sanctuary) {
+      synchronized (this.log) {
+        snapshot = this.sanctuary.fork();
+        sequence = this.loggedSequence.get();
+      }
+    }
+    List<SanctuaryChange> changes = new ArrayList<>();
+    snapshot.addChangeListener(changes::add);
+    out.writeByte(ReplicationProtocol.SNAPSHOT);
+    out.writeLong(sequence);
+    out.writeLong(System.currentTimeMillis());
+    out.writeInt(changes.size());
+    for (SanctuaryChange change : changes) {
+      ReplicationProtocol.writeChange(out, change);
+    }
+    out.flush();
+    this.snapshotsShipped.incrementAndGet();
+    return sequence;
+  }
+
+  /**
+   * Reads acknowledgements until the standby goes away, then closes the connection and wakes
+   * the shipper so that it can wait for the next standby.
+   */
+  private void readAcknowledgements(Socket socket, DataInputStream in) {
+    try {
+      while (true) {
+        byte message = in.readByte();
+        if (message != ReplicationProtocol.ACKNOWLEDGEMENT) {
+          throw new IOException("Unknown replication message " + message);
+        }
+        this.acknowledged(in.readLong());
+      }
+    } catch (EOFException | SocketException e) {
+      // standby closed the connection
+    } catch (IOException e) {
+      System.err.println("Replication acknowledgements failed: " + e);
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // closing anyway
+      }
+      synchronized (this.log) {
+        this.log.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Runs a primary sanctuary in its own JVM under a steady stream of changes and prints the
+   * replication figures every second.
+   * Usage: {@code ReplicationPrimary <port> <isolationCages> [enclosureSize ...]}
+   *
+   * @param args port, number of isolation cages and the size of every enclosure
+   * @throws IOException if the port cannot be bound.
+   * @throws InterruptedException if interrupted while running.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      System.err.println("Usage: ReplicationPrimary <port> <isolationCages> [enclosureSize ...]");
+      return;
+    }
+    int[] sizeOfEnclosures = Arrays.stream(args).skip(2).mapToInt(Integer::parseInt).toArray();
+    JungleFriendsSanctuary sanctuary = new JungleFriendsSanctuary(Integer.parseInt(args[1]),
+            sizeOfEnclosures.length, sizeOfEnclosures);
+    ReplicationPrimary primary = new ReplicationPrimary(sanctuary, Integer.parseInt(args[0]), 512);
+    System.out.println("Primary listening on port " + primary.getPort());
+    Random random = new Random(37);
+    long nextReport = System.currentTimeMillis() + 1000;
+    for (int i = 0; ; i++) {
+      try {
+        synchronized (sanctuary) {
+          if (sanctuary.getMonkeys().size() < sanctuary.getTotalNumOfIsolationCages() / 2) {
+            sanctuary.addMonkey("Monkey" + i, MonkeySize.values()[random.nextInt(3)],
+                    1 + random.nextInt(20), 1 + random.nextInt(30),
+                    Species.values()[random.nextInt(Species.values().length)],
+                    Sex.values()[random.nextInt(2)],
+                    FavoriteFood.values()[random.nextInt(FavoriteFood.values().length)],
+                    HealthStatus.HEALTHY, null);
+          } else {
+            Primate monkey = sanctuary.getMonkeys().get(random.nextInt(
+                    sanctuary.getMonkeys().size()));
+            switch (random.nextInt(4)) {
+              case 0:
+                sanctuary.moveMonkeyToEnclosure(monkey);
+                break;
+              case 1:
+                sanctuary.updateMonkeyWeight(1 + random.nextInt(20), monkey);
+                break;
+              case 2:
+                sanctuary.moveMonkeyToIsolation(monkey);
+                break;
+              default:
+                sanctuary.removeMonkey(monkey);
+                break;
+            }
+          }
+        }
+      } catch (IllegalStateException e) {
+        // no room for the change; carry on with the next one
+      }
+      if (i % 100 == 0) {
+        Thread.sleep(1);
+      }
+      if (System.currentTimeMillis() >= nextReport) {
+        nextReport += 1000;
+        System.out.println("logged=" + primary.getLoggedSequence() + " shipped=" +
+                primary.getShippedSequence() + " acknowledged=" +
+                primary.getAcknowledgedSequence() + " lag=" + primary.getLag() + " batches=" +
+                primary.getBatchesShipped() + " retained=" + primary.getRetainedChanges() +
+                " connected=" + primary.isConnected());
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import enums.ChangeType;
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import sanctuary.SanctuaryChange;
+
+/**
+ * Wire format shared by {@link ReplicationPrimary} and {@link ReplicationStandby}. A standby
+ * starts with a hello byte and the sequence number of the last change it applied, 0 if none.
+ * The primary sends batches of changes, each a batch byte, the sequence number of its first
+ * change, the time it was sent and the changes. A new standby may first be sent a snapshot: a
+ * snapshot byte, the sequence number of the last change it reflects, the time it was sent and
+ * the changes that build it. The standby answers every applied batch or snapshot with an
+ * acknowledgement byte and the sequence number of the last change it applied.
+ */
+final class ReplicationProtocol {
+
+  static final byte BATCH = 1;
+  static final byte ACKNOWLEDGEMENT = 2;
+  static final byte HELLO = 3;
+  static final byte SNAPSHOT = 4;
+
+  private ReplicationProtocol() {
+  }
+
+  static void writeChange(DataOutputStream out, SanctuaryChange change) throws IOException {
+    out.writeByte(change.getType().ordinal());
+    switch (change.getType()) {
+      case HOUSINGS_ADDED:
+        out.writeByte(change.getHousingType().ordinal());
+        out.writeInt(change.getFirstNumber());
+        out.writeInt(change.getCount());
+        if (change.getHousingType() == HousingType.ENCLOSURE) {
+          for (int capacity : change.getCapacities()) {
+            out.writeInt(capacity);
+          }
+        }
+        break;
+      case MONKEY_ADDED:
+        out.writeUTF(change.getMonkeyId());
+        out.writeUTF(change.getName());
+        out.writeByte(change.getSize().ordinal());
+        out.writeDouble(change.getWeight());
+        out.writeInt(change.getAge());
+        out.writeByte(change.getSpecies().ordinal());
+        out.writeByte(change.getSex().ordinal());
+        out.writeByte(change.getFavoriteFood().ordinal());
+        out.writeByte(change.getHealthStatus().ordinal());
+        break;
+      case MONKEY_PLACED:
+        out.writeUTF(change.getMonkeyId());
+        out.writeInt(change.getPosition());
+        break;
+      case MONKEY_UNPLACED:
+      case MONKEY_RETIRED:
+        out.writeUTF(change.getMonkeyId());
+        break;
+      case HEALTH_STATUS_UPDATED:
+        out.writeUTF(change.getMonkeyId());
+        out.writeByte(change.getHealthStatus().ordinal());
+        break;
+      case SIZE_UPDATED:
+        out.writeUTF(change.getMonkeyId());
+        out.writeByte(change.getSize().ordinal());
+        break;
+      case WEIGHT_UPDATED:
+        out.writeUTF(change.getMonkeyId());
+        out.writeDouble(change.getWeight());
+        break;
+      case AGE_UPDATED:
+        out.writeUTF(change.getMonkeyId());
+        out.writeInt(change.getAge());
+        break;
+      case MONKEYS_MOVED: {
+        String[] monkeyIds = change.getMonkeyIds();
+        int[] positions = change.getPositions();
+        out.writeInt(monkeyIds.length);
+        for (int i = 0; i < monkeyIds.length; i++) {
+          out.writeUTF(monkeyIds[i]);
+          out.writeInt(positions[i]);
+        }
+        break;
+      }
+    }
+  }
+
+  static SanctuaryChange readChange(DataInputStream in) throws IOException {
+    ChangeType type = ChangeType.values()[in.readByte()];
+    switch (type) {
+      case HOUSINGS_ADDED: {
+        HousingType housingType = HousingType.values()[in.readByte()];
+        int firstNumber = in.readInt();
+        int count = in.readInt();
+        int[] capacities = null;
+        if (housingType == HousingType.ENCLOSURE) {
+          capacities = new int[count];
+          for (int i = 0; i < count; i++) {
+            capacities[i] = in.readInt();
+          }
+        }
+        return SanctuaryChange.housingsAdded(housingType, firstNumber, count, capacities);
+      }
+      case MONKEY_ADDED:
+        return SanctuaryChange.monkeyAdded(in.readUTF(), in.readUTF(),
+                MonkeySize.values()[in.readByte()], in.readDouble(), in.readInt(),
+                Species.values()[in.readByte()], Sex.values()[in.readByte()],
+                FavoriteFood.values()[in.readByte()], HealthStatus.values()[in.readByte()]);
+      case MONKEY_PLACED:
+        return SanctuaryChange.monkeyPlaced(in.readUTF(), in.readInt());
+      case MONKEY_UNPLACED:
+        return SanctuaryChange.monkeyUnplaced(in.readUTF());
+      case MONKEY_RETIRED:
+        return SanctuaryChange.monkeyRetired(in.readUTF());
+      case HEALTH_STATUS_UPDATED:
+        return SanctuaryChange.healthStatusUpdated(in.readUTF(),
+                HealthStatus.values()[in.readByte()]);
+      case SIZE_UPDATED:
+        return SanctuaryChange.sizeUpdated(in.readUTF(), MonkeySize.values()[in.readByte()]);
+      case WEIGHT_UPDATED:
+        return SanctuaryChange.weightUpdated(in.readUTF(), in.readDouble());
+      case AGE_UPDATED:
+        return SanctuaryChange.ageUpdated(in.readUTF(), in.readInt());
+      case MONKEYS_MOVED: {
+        int count = in.readInt();
+        String[] monkeyIds = new String[count];
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+          monkeyIds[i] = in.readUTF();
+          positions[i] = in.readInt();
+        }
+        return SanctuaryChange.monkeysMoved(monkeyIds, positions);
+      }
+      default:
+        throw new IOException("Unknown change type " + type);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+import sanctuary.JungleFriendsSanctuary;
+
+/**
+ * Keeps a warm copy of a sanctuary by applying the changes shipped by a
+ * {@link ReplicationPrimary}. The copy can be read while it is being kept up to date, and
+ * {@link #promote()} stops replication so that the copy can take over from the primary.
+ */
+public class ReplicationStandby implements Closeable {
+
+  private final JungleFriendsSanctuary sanctuary;
+  private final Socket socket;
+  private final Thread applier;
+  private volatile long appliedSequence;
+  private volatile long batchesApplied;
+  private volatile long replicationDelayMillis;
+  private volatile Exception failure;
+
+  /**
+   * Connects to the primary listening on {@code port} of the loopback interface and starts
+   * applying its changes to a new, empty sanctuary.
+   *
+   * @param port port of the primary
+   * @throws IOException if the primary cannot be reached.
+   */
+  public ReplicationStandby(int port) throws IOException {
+    this.sanctuary = new JungleFriendsSanctuary(0, 0, new int[0]);
+    this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    this.socket.setTcpNoDelay(true);
+    this.applier = new Thread(this::applyChanges, "replication-standby-" + port);
+    this.applier.setDaemon(true);
+    this.applier.start();
+  }
+
+  /**
+   * Returns the standby copy of the sanctuary. It must not be changed before promotion.
+   *
+   * @return the standby sanctuary
+   */
+  public JungleFriendsSanctuary getSanctuary() {
+    return this.sanctuary;
+  }
+
+  /**
+   * Returns the sequence number of the last change applied.
+   *
+   * @return last applied sequence number
+   */
+  public long getAppliedSequence() {
+    return this.appliedSequence;
+  }
+
+  public long getBatchesApplied() {
+    return this.batchesApplied;
+  }
+
+  /**
+   * Returns the time between the primary shipping the last applied batch and the standby
+   * finishing applying it.
+   *
+   * @return delay in milliseconds
+   */
+  public long getReplicationDelayMillis() {
+    return this.replicationDelayMillis;
+  }
+
+  public boolean isReplicating() {
+    return this.applier.isAlive();
+  }
+
+  /**
+   * Returns why replication stopped, or {@code null} if it is still running or was stopped by
+   * {@link #promote()} or {@link #close()}.
+   *
+   * @return failure that stopped replication
+   */
+  public Exception getFailure() {
+    return this.failure;
+  }
+
+  /**
+   * Stops applying changes and hands over the sanctuary, which then holds every change applied
+   * so far and may be changed like any other sanctuary.
+   *
+   * @return the promoted sanctuary
+   * @throws IOException if the connection cannot be closed.
+   * @throws InterruptedException if interrupted while waiting for the current change to finish.
+   */
+  public JungleFriendsSanctuary promote() throws IOException, InterruptedException {
+    this.close();
+    this.applier.join();
+    return this.sanctuary;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.socket.close();
+  }
+
+  private void applyChanges() {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            this.socket.getInputStream(), 1 << 16));
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                 this.socket.getOutputStream()))) {
+      out.writeByte(ReplicationProtocol.HELLO);
+      out.writeLong(this.appliedSequence);
+      out.flush();
+      while (true) {
+        byte message = in.readByte();
+        if (message != ReplicationProtocol.BATCH && message != ReplicationProtocol.SNAPSHOT) {
+          throw new IOException("Unknown replication message " + message);
+        }
+        long sequence = in.readLong();
+        long sentMillis = in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          this.sanctuary.applyChange(ReplicationProtocol.readChange(in));
+          if (message == ReplicationProtocol.BATCH) {
+            this.appliedSequence = sequence + i;
+          }
+        }
+        if (message == ReplicationProtocol.SNAPSHOT) {
+          this.appliedSequence = sequence;
+        }
+        this.batchesApplied++;
+        this.replicationDelayMillis = System.currentTimeMillis() - sentMillis;
+        out.writeByte(ReplicationProtocol.ACKNOWLEDGEMENT);
+        out.writeLong(this.appliedSequence);
+        out.flush();
+      }
+    } catch (EOFException | SocketException e) {
+      if (!this.socket.isClosed()) {
+        this.failure = e;
+      }
+    } catch (IOException | RuntimeException e) {
+      this.failure = e;
+      System.err.println("Replication from primary failed: " + e);
+    }
+  }
+
+  /**
+   * Runs a standby in its own JVM, printing the replication figures every second, and promotes
+   * it after the given number of seconds.
+   * Usage: {@code ReplicationStandby <port> [promoteAfterSeconds]}
+   *
+   * @param args port of the primary and optionally when to promote
+   * @throws IOException if the primary cannot be reached.
+   * @throws InterruptedException if interrupted while running.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.err.println("Usage: ReplicationStandby <port> [promoteAfterSeconds]");
+      return;
+    }
+    ReplicationStandby standby = new ReplicationStandby(Integer.parseInt(args[0]));
+    int promoteAfter = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+    for (int second = 1; second <= promoteAfter && standby.isReplicating(); second++) {
+      Thread.sleep(1000);
+      System.out.println("applied=" + standby.getAppliedSequence() + " batches=" +
+              standby.getBatchesApplied() + " delayMillis=" +
+              standby.getReplicationDelayMillis());
+    }
+    long start = System.nanoTime();
+    JungleFriendsSanctuary sanctuary = standby.promote();
+    System.out.println("Promoted in " + (System.nanoTime() - start) / 1000 + "us with " +
+            sanctuary.getMonkeys().size() + " monkeys, " + sanctuary.getAlumniMonkeys().size() +
+            " alumni and " + sanctuary.getHousings().size() + " housings. Failure: " +
+            standby.getFailure());
+  }
+}
@@ -0,0 +1,356 @@
+package report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Spliterators;
+
+import enums.HousingType;
+import enums.ReportFormat;
+import enums.Species;
+import sanctuary.Housing;
+import sanctuary.Primate;
+import sanctuary.Sanctuary;
+
+/**
+ * Writes sanctuary reports as CSV or JSON straight from the housings and their residents. Rows
+ * are written as they are visited, so memory use does not grow with the population. The species
+ * report reads the occupied housings once per species to list them grouped by species. The given
+ * stream or channel is flushed but not closed.
+ */
+public class SanctuaryReportWriter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String[] HOUSING_COLUMNS = {"id", "type", "species", "residents"};
+  private static final String[] RESIDENT_COLUMNS = {"housingId", "housingType", "id", "name",
+      "species", "sex", "size", "weight", "age", "healthStatus", "favoriteFood"};
+  private static final String[] SPECIES_COLUMNS = {"species", "location"};
+  private static final String[] SIGN_COLUMNS = {"enclosureId", "name", "sex", "favoriteFood"};
+
+  private final Sanctuary sanctuary;
+  private final ReportFormat format;
+
+  /**
+   * Constructs a report writer.
+   *
+   * @param sanctuary the sanctuary to report on
+   * @param format    the format of the reports
+   * @throws IllegalArgumentException if either is {@code null}.
+   */
+  public SanctuaryReportWriter(Sanctuary sanctuary, ReportFormat format) {
+    if (sanctuary == null || format == null) {
+      throw new IllegalArgumentException("Sanctuary and report format cannot be null.");
+    }
+    this.sanctuary = sanctuary;
+    this.format = format;
+  }
+
+  public void writeHousings(OutputStream out) throws IOException {
+    this.writeHousings(this.open(out));
+  }
+
+  public void writeHousings(WritableByteChannel channel) throws IOException {
+    this.writeHousings(this.open(channel));
+  }
+
+  public void writeResidents(OutputStream out) throws IOException {
+    this.writeResidents(this.open(out));
+  }
+
+  public void writeResidents(WritableByteChannel channel) throws IOException {
+    this.writeResidents(this.open(channel));
+  }
+
+  public void writeSpeciesLocations(OutputStream out) throws IOException {
+    this.writeSpeciesLocations(this.open(out));
+  }
+
+  public void writeSpeciesLocations(WritableByteChannel channel) throws IOException {
+    this.writeSpeciesLocations(this.open(channel));
+  }
+
+  public void writeEnclosureSigns(OutputStream out) throws IOException {
+    this.writeEnclosureSigns(this.open(out));
+  }
+
+  public void writeEnclosureSigns(WritableByteChannel channel) throws IOException {
+    this.writeEnclosureSigns(this.open(channel));
+  }
+
+  private void writeHousings(ReportSink sink) throws IOException {
+    sink.begin(HOUSING_COLUMNS);
+    for (Housing housing : this.sanctuary.getHousings()) {
+      sink.text(housing.getId());
+      sink.text(housing.getHousingType().name());
+      sink.text(housing.getSpecies() == null ? null : housing.getSpecies().name());
+      sink.number(housing.getResidentCount());
+      sink.endRow();
+    }
+    sink.end();
+  }
+
+  private void writeResidents(ReportSink sink) throws IOException {
+    sink.begin(RESIDENT_COLUMNS);
+    for (Housing housing : this.occupiedHousings()) {
+      for (int i = 0; i < housing.getResidentCount(); i++) {
+        Primate monkey = housing.getResident(i);
+        sink.text(housing.getId());
+        sink.text(housing.getHousingType().name());
+        sink.text(monkey.getId());
+        sink.text(monkey.getName());
+        sink.text(monkey.getSpecies().name());
+        sink.text(monkey.getSex().name());
+        sink.text(monkey.getSize().name());
+        sink.number(monkey.getWeight());
+        sink.number(monkey.getAge());
+        sink.text(monkey.getHealthStatus().name());
+        sink.text(monkey.getFavoriteFood().name());
+        sink.endRow();
+      }
+    }
+    sink.end();
+  }
+
+  private void writeSpeciesLocations(ReportSink sink) throws IOException {
+    sink.begin(SPECIES_COLUMNS);
+    for (Species species : Species.values()) {
+      for (Housing housing : this.occupiedHousings()) {
+        if (housing.getSpecies() == species) {
+          sink.text(species.name());
+          sink.text(housing.getId());
+          sink.endRow();
+        }
+      }
+    }
+    sink.end();
+  }
+
+  private void writeEnclosureSigns(ReportSink sink) throws IOException {
+    sink.begin(SIGN_COLUMNS);
+    for (Housing housing : this.occupiedHousings()) {
+      if (housing.getHousingType() == HousingType.ENCLOSURE) {
+        for (int i = 0; i < housing.getResidentCount(); i++) {
+          Primate monkey = housing.getResident(i);
+          sink.text(housing.getId());
+          sink.text(monkey.getName());
+          sink.text(monkey.getSex().name());
+          sink.text(monkey.getFavoriteFood().name());
+          sink.endRow();
+        }
+      }
+    }
+    sink.end();
+  }
+
+  /**
+   * Returns the housings that have residents, without materializing the empty ones.
+   */
+  private Iterable<Housing> occupiedHousings() {
+    return () -> Spliterators.iterator(this.sanctuary.occupiedHousingSpliterator());
+  }
+
+  private ReportSink open(OutputStream out) {
+    if (out == null) {
+      throw new IllegalArgumentException("Output stream cannot be null.");
+    }
+    return this.open(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+            BUFFER_SIZE));
+  }
+
+  private ReportSink open(WritableByteChannel channel) {
+    if (channel == null) {
+      throw new IllegalArgumentException("Channel cannot be null.");
+    }
+    return this.open(new BufferedWriter(Channels.newWriter(channel,
+            StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE));
+  }
+
+  private ReportSink open(Writer writer) {
+    if (this.format == ReportFormat.JSON) {
+      return new JsonSink(writer);
+    }
+    return new CsvSink(writer);
+  }
+
+  /**
+   * Writes the rows of one report field by field.
+   */
+  private abstract static class ReportSink {
+
+    protected final Writer writer;
+    protected String[] columns;
+    protected int column;
+    protected int row;
+
+    ReportSink(Writer writer) {
+      this.writer = writer;
+    }
+
+    void begin(String[] columns) throws IOException {
+      this.columns = columns;
+    }
+
+    abstract void text(String value) throws IOException;
+
+    abstract void number(double value) throws IOException;
+
+    abstract void number(int value) throws IOException;
+
+    void endRow() throws IOException {
+      this.column = 0;
+      this.row++;
+    }
+
+    void end() throws IOException {
+      this.writer.flush();
+    }
+  }
+
+  /**
+   * RFC 4180 CSV with a header row.
+   */
+  private static class CsvSink extends ReportSink {
+
+    CsvSink(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin(String[] columns) throws IOException {
+      super.begin(columns);
+      for (String column : columns) {
+        this.text(column);
+      }
+      this.endRow();
+      this.row = 0;
+    }
+
+    @Override
+    void text(String value) throws IOException {
+      this.separator();
+      if (value == null) {
+        return;
+      }
+      boolean quoted = false;
+      for (int i = 0; i < value.length() && !quoted; i++) {
+        char c = value.charAt(i);
+        quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+      }
+      if (!quoted) {
+        this.writer.write(value);
+        return;
+      }
+      this.writer.write('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"') {
+          this.writer.write('"');
+        }
+        this.writer.write(c);
+      }
+      this.writer.write('"');
+    }
+
+    @Override
+    void number(double value) throws IOException {
+      this.separator();
+      this.writer.write(Double.toString(value));
+    }
+
+    @Override
+    void number(int value) throws IOException {
+      this.separator();
+      this.writer.write(Integer.toString(value));
+    }
+
+    @Override
+    void endRow() throws IOException {
+      this.writer.write("\r\n");
+      super.endRow();
+    }
+
+    private void separator() throws IOException {
+      if (this.column++ > 0) {
+        this.writer.write(',');
+      }
+    }
+  }
+
+  /**
+   * A JSON array with one object per row.
+   */
+  private static class JsonSink extends ReportSink {
+
+    JsonSink(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    void begin(String[] columns) throws IOException {
+      super.begin(columns);
+      this.writer.write('[');
+    }
+
+    @Override
+    void text(String value) throws IOException {
+      this.key();
+      if (value == null) {
+        this.writer.write("null");
+        return;
+      }
+      this.writer.write('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          this.writer.write('\\');
+          this.writer.write(c);
+        } else if (c < 0x20) {
+          this.writer.write(String.format("\\u%04x", (int) c));
+        } else {
+          this.writer.write(c);
+        }
+      }
+      this.writer.write('"');
+    }
+
+    @Override
+    void number(double value) throws IOException {
+      this.key();
+      this.writer.write(Double.toString(value));
+    }
+
+    @Override
+    void number(int value) throws IOException {
+      this.key();
+      this.writer.write(Integer.toString(value));
+    }
+
+    @Override
+    void endRow() throws IOException {
+      this.writer.write('}');
+      super.endRow();
+    }
+
+    @Override
+    void end() throws IOException {
+      this.writer.write("]\n");
+      super.end();
+    }
+
+    private void key() throws IOException {
+      if (this.column == 0) {
+        this.writer.write(this.row == 0 ? "\n{" : ",\n{");
+      } else {
+        this.writer.write(',');
+      }
+      this.writer.write('"');
+      this.writer.write(this.columns[this.column++]);
+      this.writer.write("\":");
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package sanctuary;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import enums.MonkeySize;
+import enums.Species;
+
+/**
+ * How many more monkeys the enclosures of a sanctuary can take. An enclosure holding a species
+ * takes more monkeys of that species while they fit in its free space, and an empty enclosure
+ * takes monkeys of any one species. The sanctuary keeps the totals per species and size up to
+ * date as monkeys move and grow, so every question is answered from a few array reads. A
+ * sanctuary hands out copies.
+ */
+public final class CapacityForecast {
+
+  private static final Species[] SPECIES = Species.values();
+  private static final MonkeySize[] SIZES = MonkeySize.values();
+
+  private final int[] enclosureCounts;
+  private final long[] freeSpace;
+  private final long[] fittingMonkeys;
+  private final long[] emptyFittingMonkeys;
+  private int emptyEnclosureCount;
+  private long emptySpace;
+
+  CapacityForecast() {
+    this.enclosureCounts = new int[SPECIES.length];
+    this.freeSpace = new long[SPECIES.length];
+    this.fittingMonkeys = new long[SPECIES.length * SIZES.length];
+    this.emptyFittingMonkeys = new long[SIZES.length];
+  }
+
+  CapacityForecast(CapacityForecast forecast) {
+    this.enclosureCounts = forecast.enclosureCounts.clone();
+    this.freeSpace = forecast.freeSpace.clone();
+    this.fittingMonkeys = forecast.fittingMonkeys.clone();
+    this.emptyFittingMonkeys = forecast.emptyFittingMonkeys.clone();
+    this.emptyEnclosureCount = forecast.emptyEnclosureCount;
+    this.emptySpace = forecast.emptySpace;
+  }
+
+  /**
+   * Counts a new empty enclosure of {@code capacity}.
+   */
+  void enclosureAdded(int capacity) {
+    this.count(null, capacity, capacity, 1);
+  }
+
+  /**
+   * Replaces what was counted for {@code enclosure} by its current species and free space.
+   */
+  void enclosureChanged(Enclosure enclosure) {
+    this.count(enclosure.getCountedSpecies(), enclosure.getCountedAvailableCapacity(),
+            enclosure.getCapacity(), -1);
+    Species species = enclosure.getSpecies();
+    int availableCapacity = enclosure.getAvailableCapacity();
+    this.count(species, availableCapacity, enclosure.getCapacity(), 1);
+    enclosure.setCounted(species, availableCapacity);
+  }
+
+  private void count(Species species, int availableCapacity, int capacity, int sign) {
+    if (species == null) {
+      this.emptyEnclosureCount += sign;
+      this.emptySpace += sign * capacity;
+      for (MonkeySize size : SIZES) {
+        this.emptyFittingMonkeys[size.ordinal()] +=
+                sign * Math.max(capacity / size.getSpace(), 1);
+      }
+      return;
+    }
+    int free = Math.max(availableCapacity, 0);
+    this.enclosureCounts[species.ordinal()] += sign;
+    this.freeSpace[species.ordinal()] += sign * free;
+    for (MonkeySize size : SIZES) {
+      this.fittingMonkeys[species.ordinal() * SIZES.length + size.ordinal()] +=
+              sign * (free / size.getSpace());
+    }
+  }
+
+  /**
+   * Returns how many more monkeys of {@code species} and {@code size} the enclosures can take
+   * right now, counting the empty enclosures as well as those already holding the species.
+   *
+   * @param species the species
+   * @param size    the size of the monkeys
+   * @return number of monkeys that fit
+   */
+  public long getHeadroom(Species species, MonkeySize size) {
+    return this.getSpeciesHeadroom(species, size) + this.emptyFittingMonkeys[size.ordinal()];
+  }
+
+  /**
+   * Returns how many more monkeys of {@code species} and {@code size} fit in the enclosures that
+   * already hold the species, leaving the empty enclosures free.
+   *
+   * @param species the species
+   * @param size    the size of the monkeys
+   * @return number of monkeys that fit
+   */
+  public long getSpeciesHeadroom(Species species, MonkeySize size) {
+    return this.fittingMonkeys[species.ordinal() * SIZES.length + size.ordinal()];
+  }
+
+  /**
+   * Returns the free space of the enclosures holding {@code species}.
+   *
+   * @param species the species
+   * @return free space in square meters
+   */
+  public long getFreeSpace(Species species) {
+    return this.freeSpace[species.ordinal()];
+  }
+
+  public int getEnclosureCount(Species species) {
+    return this.enclosureCounts[species.ordinal()];
+  }
+
+  public int getEmptyEnclosureCount() {
+    return this.emptyEnclosureCount;
+  }
+
+  public long getEmptySpace() {
+    return this.emptySpace;
+  }
+
+  /**
+   * Returns the species living in enclosures, the one with the least free space in its own
+   * enclosures first. These run out of room first once the empty enclosures are taken.
+   *
+   * @return species in order of free space
+   */
+  public List<Species> getSpeciesByFreeSpace() {
+    List<Species> species = new ArrayList<>();
+    for (Species housed : SPECIES) {
+      if (this.enclosureCounts[housed.ordinal()] > 0) {
+        species.add(housed);
+      }
+    }
+    species.sort(Comparator.comparingLong(this::getFreeSpace));
+    return species;
+  }
+}
@@ -0,0 +1,248 @@
+package sanctuary;
+
+import java.util.Arrays;
+
+/**
+ * An append-only series of (time, value) samples stored as zigzag varint deltas in byte chunks
+ * of at most {@value #CHUNK_SIZE} bytes. The first sample of every chunk and the count, sum,
+ * minimum and maximum of its values are kept in a primitive header. Range reads can then skip
+ * chunks outside the range and aggregate chunks wholly inside it without decoding them.
+ *
+ * <p>The chunk being appended to is kept in fields, so a series of one sample allocates nothing
+ * else, and its bytes grow with its content. A chunk is trimmed to its content when it is closed,
+ * and the headers of closed chunks are allocated with the first of them.
+ */
+class DeltaSeries {
+
+  private static final int CHUNK_SIZE = 256;
+  private static final int MAX_ENTRY_SIZE = 20;
+  private static final int FIRST_BYTES = 32;
+  private static final int HEADER_SIZE = 8;
+  private static final int FIRST_TIME = 0;
+  private static final int FIRST_VALUE = 1;
+  private static final int MIN_TIME = 2;
+  private static final int MAX_TIME = 3;
+  private static final int VALUE_SUM = 4;
+  private static final int MIN_VALUE = 5;
+  private static final int MAX_VALUE = 6;
+  private static final int COUNT = 7;
+
+  private byte[][] closedChunks;
+  private long[] closedHeaders;
+  private int numOfClosedChunks;
+  private byte[] bytes;
+  private int length;
+  private int count;
+  private long firstTime;
+  private long firstValue;
+  private long minTime;
+  private long maxTime;
+  private long valueSum;
+  private long minValue;
+  private long maxValue;
+  private long lastTime;
+  private long lastValue;
+
+  DeltaSeries() {
+  }
+
+  /**
+   * Copies {@code series}. Closed chunks never change again and are shared with the copy.
+   */
+  DeltaSeries(DeltaSeries series) {
+    if (series.numOfClosedChunks > 0) {
+      this.closedChunks = series.closedChunks.clone();
+      this.closedHeaders = series.closedHeaders.clone();
+    }
+    this.numOfClosedChunks = series.numOfClosedChunks;
+    this.bytes = series.bytes == null ? null : series.bytes.clone();
+    this.length = series.length;
+    this.count = series.count;
+    this.firstTime = series.firstTime;
+    this.firstValue = series.firstValue;
+    this.minTime = series.minTime;
+    this.maxTime = series.maxTime;
+    this.valueSum = series.valueSum;
+    this.minValue = series.minValue;
+    this.maxValue = series.maxValue;
+    this.lastTime = series.lastTime;
+    this.lastValue = series.lastValue;
+  }
+
+  void append(long time, long value) {
+    if (this.count > 0 && this.length + MAX_ENTRY_SIZE > CHUNK_SIZE) {
+      this.closeChunk();
+    }
+    if (this.count == 0) {
+      this.startChunk(time, value);
+      return;
+    }
+    if (this.bytes == null) {
+      this.bytes = new byte[FIRST_BYTES];
+    } else if (this.length + MAX_ENTRY_SIZE > this.bytes.length) {
+      this.bytes = Arrays.copyOf(this.bytes, Math.min(this.bytes.length * 2, CHUNK_SIZE));
+    }
+    this.length = writeVarLong(this.bytes, this.length, zigzag(time - this.lastTime));
+    this.length = writeVarLong(this.bytes, this.length, zigzag(value - this.lastValue));
+    this.count++;
+    this.minTime = Math.min(this.minTime, time);
+    this.maxTime = Math.max(this.maxTime, time);
+    this.valueSum += value;
+    this.minValue = Math.min(this.minValue, value);
+    this.maxValue = Math.max(this.maxValue, value);
+    this.lastTime = time;
+    this.lastValue = value;
+  }
+
+  boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  /**
+   * Calls {@code visitor} with every sample whose time is in {@code [fromTime, toTime]}, in the
+   * order they were appended.
+   */
+  void scan(long fromTime, long toTime, SampleVisitor visitor) {
+    for (int chunk = 0; chunk < this.numOfClosedChunks; chunk++) {
+      int header = chunk * HEADER_SIZE;
+      if (this.overlaps(header, fromTime, toTime)) {
+        this.decodeClosed(chunk, fromTime, toTime, visitor);
+      }
+    }
+    if (this.count > 0 && this.minTime <= toTime && this.maxTime >= fromTime) {
+      decode(this.bytes, this.count, this.firstTime, this.firstValue, fromTime, toTime, visitor);
+    }
+  }
+
+  /**
+   * Adds every sample whose time is in {@code [fromTime, toTime]} to {@code statistics}.
+   */
+  void aggregate(long fromTime, long toTime, MeasurementStatistics.Builder statistics) {
+    for (int chunk = 0; chunk < this.numOfClosedChunks; chunk++) {
+      int header = chunk * HEADER_SIZE;
+      long[] headers = this.closedHeaders;
+      if (headers[header + MIN_TIME] >= fromTime && headers[header + MAX_TIME] <= toTime) {
+        statistics.add((int) headers[header + COUNT], headers[header + VALUE_SUM],
+                headers[header + MIN_VALUE], headers[header + MAX_VALUE]);
+      } else if (this.overlaps(header, fromTime, toTime)) {
+        this.decodeClosed(chunk, fromTime, toTime, (time, value) -> statistics.add(value));
+      }
+    }
+    if (this.count == 0) {
+      return;
+    }
+    if (this.minTime >= fromTime && this.maxTime <= toTime) {
+      statistics.add(this.count, this.valueSum, this.minValue, this.maxValue);
+    } else if (this.minTime <= toTime && this.maxTime >= fromTime) {
+      decode(this.bytes, this.count, this.firstTime, this.firstValue, fromTime, toTime,
+              (time, value) -> statistics.add(value));
+    }
+  }
+
+  /**
+   * Receives the samples of a series.
+   */
+  interface SampleVisitor {
+    void visit(long time, long value);
+  }
+
+  private boolean overlaps(int header, long fromTime, long toTime) {
+    return this.closedHeaders[header + MIN_TIME] <= toTime
+            && this.closedHeaders[header + MAX_TIME] >= fromTime;
+  }
+
+  private void decodeClosed(int chunk, long fromTime, long toTime, SampleVisitor visitor) {
+    int header = chunk * HEADER_SIZE;
+    decode(this.closedChunks[chunk], (int) this.closedHeaders[header + COUNT],
+            this.closedHeaders[header + FIRST_TIME], this.closedHeaders[header + FIRST_VALUE],
+            fromTime, toTime, visitor);
+  }
+
+  private static void decode(byte[] bytes, int count, long time, long value, long fromTime,
+                             long toTime, SampleVisitor visitor) {
+    int position = 0;
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        long timeDelta = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = bytes[position++];
+          timeDelta |= (long) (b & 0x7f) << shift;
+          shift += 7;
+        } while (b < 0);
+        long valueDelta = 0;
+        shift = 0;
+        do {
+          b = bytes[position++];
+          valueDelta |= (long) (b & 0x7f) << shift;
+          shift += 7;
+        } while (b < 0);
+        time += unzigzag(timeDelta);
+        value += unzigzag(valueDelta);
+      }
+      if (time >= fromTime && time <= toTime) {
+        visitor.visit(time, value);
+      }
+    }
+  }
+
+  /**
+   * Moves the chunk being appended to, trimmed to its content, behind the closed chunks.
+   */
+  private void closeChunk() {
+    if (this.closedChunks == null) {
+      this.closedChunks = new byte[1][];
+      this.closedHeaders = new long[HEADER_SIZE];
+    } else if (this.numOfClosedChunks == this.closedChunks.length) {
+      int capacity = this.closedChunks.length * 2;
+      this.closedChunks = Arrays.copyOf(this.closedChunks, capacity);
+      this.closedHeaders = Arrays.copyOf(this.closedHeaders, capacity * HEADER_SIZE);
+    }
+    int chunk = this.numOfClosedChunks++;
+    this.closedChunks[chunk] = this.bytes == null || this.bytes.length == this.length
+            ? this.bytes : Arrays.copyOf(this.bytes, this.length);
+    int header = chunk * HEADER_SIZE;
+    this.closedHeaders[header + FIRST_TIME] = this.firstTime;
+    this.closedHeaders[header + FIRST_VALUE] = this.firstValue;
+    this.closedHeaders[header + MIN_TIME] = this.minTime;
+    this.closedHeaders[header + MAX_TIME] = this.maxTime;
+    this.closedHeaders[header + VALUE_SUM] = this.valueSum;
+    this.closedHeaders[header + MIN_VALUE] = this.minValue;
+    this.closedHeaders[header + MAX_VALUE] = this.maxValue;
+    this.closedHeaders[header + COUNT] = this.count;
+    this.bytes = null;
+    this.length = 0;
+    this.count = 0;
+  }
+
+  private void startChunk(long time, long value) {
+    this.count = 1;
+    this.firstTime = time;
+    this.firstValue = value;
+    this.minTime = time;
+    this.maxTime = time;
+    this.valueSum = value;
+    this.minValue = value;
+    this.maxValue = value;
+    this.lastTime = time;
+    this.lastValue = value;
+  }
+
+  private static int writeVarLong(byte[] bytes, int position, long value) {
+    while ((value & ~0x7fL) != 0) {
+      bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    bytes[position++] = (byte) value;
+    return position;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
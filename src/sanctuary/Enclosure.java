@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class Enclosure implements Housing{
 
@@ -17,13 +18,57 @@ public class Enclosure implements Housing{
   private final int capacity;
   private static int enclosureNumber;
   private final String id;
+  private volatile Map<String, Map<Sex, FavoriteFood>> sign;
+  private int usedCapacity = -1;
+  private volatile PlacementPolicy.Profile placementProfile;
+  private Species countedSpecies;
+  private int countedAvailableCapacity;
 
 
   public Enclosure(int capacity) {
     this.enclosureNumber += 1;
-    this.id = "ENC" + this.enclosureNumber;
+    this.id = StringPool.enclosureId(this.enclosureNumber);
     this.troop = new ArrayList<>();
     this.capacity = capacity;
+    this.countedAvailableCapacity = capacity;
+  }
+
+  Enclosure(String id, int capacity) {
+    this.id = id;
+    this.troop = new ArrayList<>();
+    this.capacity = capacity;
+    this.countedAvailableCapacity = capacity;
+  }
+
+  /**
+   * Reserves {@code count} consecutive enclosure numbers and returns the first of them.
+   */
+  static synchronized int reserveIds(int count) {
+    int first = enclosureNumber + 1;
+    enclosureNumber += count;
+    return first;
+  }
+
+  /**
+   * Makes sure enclosure numbers up to {@code number} are not given out again.
+   */
+  static synchronized void reserveIdsThrough(int number) {
+    enclosureNumber = Math.max(enclosureNumber, number);
+  }
+
+  private Enclosure(Enclosure enclosure) {
+    this.id = enclosure.id;
+    this.troop = new ArrayList<>(enclosure.troop);
+    this.capacity = enclosure.capacity;
+    this.sign = enclosure.sign;
+    this.usedCapacity = enclosure.usedCapacity;
+    this.placementProfile = enclosure.placementProfile;
+    this.countedSpecies = enclosure.countedSpecies;
+    this.countedAvailableCapacity = enclosure.countedAvailableCapacity;
+  }
+
+  Enclosure copy() {
+    return new Enclosure(this);
   }
 
   @Override
@@ -37,8 +82,57 @@ public class Enclosure implements Housing{
     return troop;
   }
 
+  @Override
+  public int getResidentCount() {
+    return troop.size();
+  }
+
+  @Override
+  public Primate getResident(int index) {
+    return troop.get(index);
+  }
+
+  @Override
+  public boolean isOccupied() {
+    return !troop.isEmpty();
+  }
+
+  @Override
+  public void forEachResident(Consumer<? super Primate> action) {
+    for (int i = 0; i < troop.size(); i++) {
+      action.accept(troop.get(i));
+    }
+  }
+
    void removeMonkey(Primate monkey) {
-    troop.remove(monkey);
+    troop.removeIf(mon -> mon.getId().equals(monkey.getId()));
+    this.sign = null;
+    this.residentChanged();
+  }
+
+  void replaceMonkey(Primate monkey) {
+    troop.replaceAll(mon -> mon.getId().equals(monkey.getId()) ? monkey : mon);
+    this.residentChanged();
+  }
+
+  /**
+   * Drops what is kept about the residents' sizes and ages, after a resident has changed.
+   */
+  void residentChanged() {
+    this.usedCapacity = -1;
+    this.placementProfile = null;
+  }
+
+  /**
+   * Returns the scores of {@code policy} for this enclosure, kept until the residents change.
+   */
+  PlacementPolicy.Profile getPlacementProfile(PlacementPolicy policy) {
+    PlacementPolicy.Profile profile = this.placementProfile;
+    if (profile == null || !profile.isOf(policy)) {
+      profile = policy.profile(this.troop);
+      this.placementProfile = profile;
+    }
+    return profile;
   }
 
   @Override
@@ -61,35 +155,71 @@ public class Enclosure implements Housing{
   @Override
   public Species getSpecies()
   {
-    if(this.getResidents() == null || this.getResidents().isEmpty()){
+    if(this.troop.isEmpty()){
       return null;
     }
-    return getResidents().get(0).getSpecies();
+    return this.troop.get(0).getSpecies();
   }
 
   void addMonkey(Primate monkey) {
     this.troop.add(monkey);
+    this.sign = null;
+    this.residentChanged();
+  }
+
+  /**
+   * Returns the space of the enclosure.
+   *
+   * @return capacity in square meters
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Returns the species the capacity forecast last counted for this enclosure, or {@code null}
+   * if it was counted as empty.
+   */
+  Species getCountedSpecies() {
+    return this.countedSpecies;
+  }
+
+  int getCountedAvailableCapacity() {
+    return this.countedAvailableCapacity;
+  }
+
+  void setCounted(Species species, int availableCapacity) {
+    this.countedSpecies = species;
+    this.countedAvailableCapacity = availableCapacity;
   }
 
   int getAvailableCapacity() {
-    int usedCapacity = 0;
-    if(this.troop == null || this.troop.isEmpty())
-    {
-      return this.capacity;
-    }
-    for (Primate monkey : this.troop) {
-      usedCapacity += monkey.getSize().getSpace();
+    int usedCapacity = this.usedCapacity;
+    if (usedCapacity < 0) {
+      usedCapacity = 0;
+      for (int i = 0; i < this.troop.size(); i++) {
+        usedCapacity += this.troop.get(i).getSize().getSpace();
+      }
+      this.usedCapacity = usedCapacity;
     }
     return this.capacity - usedCapacity;
   }
 
+  /**
+   * Returns the sign of the enclosure. The sign is built once and kept until the residents
+   * change, so the returned map cannot be changed.
+   */
   Map<String, Map<Sex, FavoriteFood>> getEnclosureSign() {
-    Map<String, Map<Sex, FavoriteFood>> sign = new HashMap<>();
-    if(!this.getResidents().isEmpty()) {
-      for (Primate monkey : this.getResidents()) {
+    Map<String, Map<Sex, FavoriteFood>> sign = this.sign;
+    if (sign == null) {
+      sign = new HashMap<>();
+      for (int i = 0; i < this.troop.size(); i++) {
+        Primate monkey = this.troop.get(i);
         sign.put(monkey.getName(), Collections.singletonMap(monkey.getSex(),
                 monkey.getFavoriteFood()));
       }
+      sign = Collections.unmodifiableMap(sign);
+      this.sign = sign;
     }
     return sign;
   }
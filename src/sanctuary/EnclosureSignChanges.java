@@ -0,0 +1,41 @@
+package sanctuary;
+
+import java.util.Collections;
+import java.util.Map;
+
+import enums.FavoriteFood;
+import enums.Sex;
+
+/**
+ * The enclosure signs that changed after a given sign version, with the version they are
+ * current as of.
+ */
+public class EnclosureSignChanges {
+
+  private final long version;
+  private final Map<String, Map<String, Map<Sex, FavoriteFood>>> signs;
+
+  EnclosureSignChanges(long version, Map<String, Map<String, Map<Sex, FavoriteFood>>> signs) {
+    this.version = version;
+    this.signs = Collections.unmodifiableMap(signs);
+  }
+
+  /**
+   * Returns the sign version to ask for changes after next time.
+   *
+   * @return sign version
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Returns the current sign of every changed enclosure by enclosure id, in the order the
+   * enclosures last changed. An enclosure that has been emptied has an empty sign.
+   *
+   * @return changed signs
+   */
+  public Map<String, Map<String, Map<Sex, FavoriteFood>>> getSigns() {
+    return this.signs;
+  }
+}
@@ -0,0 +1,72 @@
+package sanctuary;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+
+/**
+ * Measures the heap a sanctuary full of monkeys takes and how many name and id strings it
+ * shares. Names are drawn from a small set of common names but built afresh for every monkey, as
+ * they would be when read from input, so every shared name is one the pool deduplicated.
+ */
+public final class HeapFootprintBenchmark {
+
+  private HeapFootprintBenchmark() {
+  }
+
+  /**
+   * Runs the benchmark. Run with a heap of a few gigabytes for a million monkeys.
+   * Usage: {@code HeapFootprintBenchmark [monkeys] [distinctNames]}
+   *
+   * @param args number of monkeys and number of distinct names
+   */
+  public static void main(String[] args) {
+    int monkeyCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int nameCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    long before = usedHeap();
+    JungleFriendsSanctuary sanctuary = new JungleFriendsSanctuary(monkeyCount, 0, new int[0]);
+    long empty = usedHeap();
+    Species[] species = Species.values();
+    long start = System.nanoTime();
+    for (int i = 0; i < monkeyCount; i++) {
+      String name = new StringBuilder("Monkey").append(i % nameCount).toString();
+      sanctuary.addMonkey(name, MonkeySize.SMALL, 1 + i % 20, 1 + i % 30,
+              species[i % species.length], i % 2 == 0 ? Sex.MALE : Sex.FEMALE,
+              FavoriteFood.NUTS, HealthStatus.HEALTHY, null);
+    }
+    long elapsed = System.nanoTime() - start;
+    long full = usedHeap();
+    List<Primate> monkeys = sanctuary.getMonkeys();
+    Set<String> names = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Primate monkey : monkeys) {
+      names.add(monkey.getName());
+    }
+    int sharedIds = 0;
+    List<Housing> housings = sanctuary.getHousings();
+    for (int i = 0; i < housings.size(); i++) {
+      if (housings.get(i).getId() == housings.get(i).getId()) {
+        sharedIds++;
+      }
+    }
+    System.out.printf("monkeys=%d distinctNames=%d nameObjects=%d sharedHousingIds=%d/%d%n",
+            monkeys.size(), nameCount, names.size(), sharedIds, housings.size());
+    System.out.printf("emptySanctuaryMB=%.1f monkeysMB=%.1f bytesPerMonkey=%.0f addNs=%.0f%n",
+            (empty - before) / 1e6, (full - empty) / 1e6,
+            (full - empty) / (double) monkeys.size(), elapsed / (double) monkeys.size());
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -1,6 +1,7 @@
 package sanctuary;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import enums.HousingType;
 import enums.Species;
@@ -14,6 +15,37 @@ public interface Housing {
 
   public List<Primate> getResidents();
 
+  /**
+   * Returns the number of monkeys living in the housing.
+   *
+   * @return number of residents
+   */
+  public int getResidentCount();
+
+  /**
+   * Returns the resident at {@code index}, where {@code index} is less than
+   * {@link #getResidentCount()}.
+   *
+   * @param index position of the resident
+   * @return resident
+   * @throws IndexOutOfBoundsException if there is no resident at {@code index}.
+   */
+  public Primate getResident(int index);
+
+  /**
+   * Returns whether at least one monkey lives in the housing.
+   *
+   * @return {@code true} if the housing has residents
+   */
+  public boolean isOccupied();
+
+  /**
+   * Calls {@code action} for every resident of the housing without creating a list of them.
+   *
+   * @param action action to call with every resident
+   */
+  public void forEachResident(Consumer<? super Primate> action);
+
   public Species getSpecies();
 
   public HousingType getHousingType();
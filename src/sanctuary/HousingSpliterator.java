@@ -0,0 +1,90 @@
+package sanctuary;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splittable traversal of a range of positions in a {@link HousingStore}, either over every
+ * housing or over the occupied ones only. Ranges are split in halves, so parallel streams spread
+ * the housings evenly over the threads.
+ */
+class HousingSpliterator implements Spliterator<Housing> {
+
+  private static final int MIN_SPLIT = 64;
+
+  private final HousingStore housings;
+  private final boolean occupiedOnly;
+  private final long occupiedTotal;
+  private int position;
+  private final int end;
+
+  /**
+   * @param occupiedTotal number of occupied housings in the whole store, used to estimate the
+   *                      size of a range of occupied housings
+   */
+  HousingSpliterator(HousingStore housings, int from, int to, boolean occupiedOnly,
+                     long occupiedTotal) {
+    this.housings = housings;
+    this.position = from;
+    this.end = to;
+    this.occupiedOnly = occupiedOnly;
+    this.occupiedTotal = occupiedTotal;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Housing> action) {
+    if (this.occupiedOnly) {
+      int next = this.housings.nextOccupied(this.position);
+      if (next < 0 || next >= this.end) {
+        this.position = this.end;
+        return false;
+      }
+      this.position = next;
+    } else if (this.position >= this.end) {
+      return false;
+    }
+    action.accept(this.housings.get(this.position++));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super Housing> action) {
+    if (this.occupiedOnly) {
+      for (int next = this.housings.nextOccupied(this.position); next >= 0 && next < this.end;
+           next = this.housings.nextOccupied(next + 1)) {
+        action.accept(this.housings.get(next));
+      }
+    } else {
+      for (int next = this.position; next < this.end; next++) {
+        action.accept(this.housings.get(next));
+      }
+    }
+    this.position = this.end;
+  }
+
+  @Override
+  public Spliterator<Housing> trySplit() {
+    if (this.end - this.position < MIN_SPLIT) {
+      return null;
+    }
+    int middle = (this.position + this.end) >>> 1;
+    Spliterator<Housing> prefix = new HousingSpliterator(this.housings, this.position, middle,
+            this.occupiedOnly, this.occupiedTotal);
+    this.position = middle;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    long positions = this.end - this.position;
+    if (!this.occupiedOnly || this.housings.size() == 0) {
+      return positions;
+    }
+    return positions * this.occupiedTotal / this.housings.size();
+  }
+
+  @Override
+  public int characteristics() {
+    return this.occupiedOnly ? ORDERED | NONNULL : ORDERED | NONNULL | SIZED | SUBSIZED;
+  }
+}
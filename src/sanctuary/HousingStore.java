@@ -0,0 +1,476 @@
+package sanctuary;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import enums.HousingType;
+
+/**
+ * Stores the housings of a sanctuary by position. An empty housing is kept only as its id number
+ * and capacity in primitive arrays. A full {@link Enclosure} or {@link Isolation} is kept only
+ * while the housing has residents. Positions with and without residents are tracked in bit sets,
+ * so finding a free cage does not touch the housing objects at all.
+ *
+ * <p>Positions are stored in blocks of {@value #BLOCK_SIZE}, which are shared with the stores
+ * forked from this one until either side changes them. Each block counts its set bits, so
+ * searches skip the blocks with none.
+ */
+class HousingStore {
+
+  private static final String ENCLOSURE_PREFIX = "ENC";
+  private static final String ISOLATION_PREFIX = "ISO";
+  private static final int BLOCK_SHIFT = 8;
+  private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  private static final int ISOLATIONS = 0;
+  private static final int OCCUPIED = 1;
+  private static final int OCCUPIED_ENCLOSURES = 2;
+  private static final int VACANT_ISOLATIONS = 3;
+  private static final int VACANT_ENCLOSURES = 4;
+  private static final int KINDS = 5;
+
+  private List<Segment> segments;
+  private Block[] blocks;
+  private boolean shared;
+  private Object owner;
+  private int vacantIsolationCount;
+  private int occupiedCount;
+  private int size;
+
+  HousingStore() {
+    this.segments = new ArrayList<>();
+    this.blocks = new Block[16];
+    this.owner = new Object();
+  }
+
+  private HousingStore(HousingStore store) {
+    this.segments = store.segments;
+    this.blocks = store.blocks;
+    this.shared = true;
+    this.owner = new Object();
+    this.vacantIsolationCount = store.vacantIsolationCount;
+    this.occupiedCount = store.occupiedCount;
+    this.size = store.size;
+  }
+
+  /**
+   * Returns a store with the same housings that shares every block with this one. Both stores
+   * copy a shared block before changing it. The occupied housings themselves are shared too.
+   */
+  HousingStore fork() {
+    this.owner = new Object();
+    this.shared = true;
+    return new HousingStore(this);
+  }
+
+  /**
+   * Adds {@code count} enclosures with newly reserved ids and returns the number of the first.
+   */
+  int addEnclosures(int[] sizeOfEnclosures, int count) {
+    if (count <= 0) {
+      return 0;
+    }
+    int firstNumber = Enclosure.reserveIds(count);
+    this.addEnclosures(firstNumber, sizeOfEnclosures, count);
+    return firstNumber;
+  }
+
+  /**
+   * Adds {@code count} enclosures numbered from {@code firstNumber}.
+   */
+  void addEnclosures(int firstNumber, int[] sizeOfEnclosures, int count) {
+    if (count <= 0) {
+      return;
+    }
+    Enclosure.reserveIdsThrough(firstNumber + count - 1);
+    this.grow(count);
+    this.segments.add(new Segment(HousingType.ENCLOSURE, firstNumber, this.size, count));
+    for (int i = 0; i < count; i++) {
+      Block block = this.writableBlock(this.size);
+      block.capacities[this.size & (BLOCK_SIZE - 1)] = sizeOfEnclosures[i];
+      block.set(VACANT_ENCLOSURES, this.size++);
+    }
+  }
+
+  /**
+   * Adds {@code count} isolation cages with newly reserved ids and returns the number of the
+   * first.
+   */
+  int addIsolations(int count) {
+    if (count <= 0) {
+      return 0;
+    }
+    int firstNumber = Isolation.reserveIds(count);
+    this.addIsolations(firstNumber, count);
+    return firstNumber;
+  }
+
+  /**
+   * Adds {@code count} isolation cages numbered from {@code firstNumber}.
+   */
+  void addIsolations(int firstNumber, int count) {
+    if (count <= 0) {
+      return;
+    }
+    Isolation.reserveIdsThrough(firstNumber + count - 1);
+    this.grow(count);
+    this.segments.add(new Segment(HousingType.ISOLATION, firstNumber, this.size, count));
+    for (int i = 0; i < count; i++) {
+      Block block = this.writableBlock(this.size);
+      block.set(ISOLATIONS, this.size);
+      block.set(VACANT_ISOLATIONS, this.size++);
+    }
+    this.vacantIsolationCount += count;
+  }
+
+  int getSegmentCount() {
+    return this.segments.size();
+  }
+
+  HousingType getSegmentType(int segment) {
+    return this.segments.get(segment).type;
+  }
+
+  int getSegmentFirstNumber(int segment) {
+    return this.segments.get(segment).firstNumber;
+  }
+
+  int getSegmentFirstPosition(int segment) {
+    return this.segments.get(segment).firstPosition;
+  }
+
+  int getSegmentSize(int segment) {
+    return this.segments.get(segment).count;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the position of the housing with {@code housingId}, or -1 if there is none.
+   */
+  int positionOf(String housingId) {
+    if (housingId == null || housingId.length() <= 3) {
+      return -1;
+    }
+    HousingType type;
+    if (housingId.startsWith(ENCLOSURE_PREFIX)) {
+      type = HousingType.ENCLOSURE;
+    } else if (housingId.startsWith(ISOLATION_PREFIX)) {
+      type = HousingType.ISOLATION;
+    } else {
+      return -1;
+    }
+    int number = 0;
+    for (int i = 3; i < housingId.length(); i++) {
+      char digit = housingId.charAt(i);
+      if (digit < '0' || digit > '9' || number > (Integer.MAX_VALUE - 9) / 10
+              || (i == 3 && digit == '0')) {
+        return -1;
+      }
+      number = number * 10 + digit - '0';
+    }
+    for (Segment segment : this.segments) {
+      if (segment.type == type && number >= segment.firstNumber
+              && number < segment.firstNumber + segment.count) {
+        return segment.firstPosition + number - segment.firstNumber;
+      }
+    }
+    return -1;
+  }
+
+  HousingType getType(int position) {
+    return this.blockOf(position).get(ISOLATIONS, position) ? HousingType.ISOLATION
+            : HousingType.ENCLOSURE;
+  }
+
+  int getCapacity(int position) {
+    return this.blockOf(position).capacities[position & (BLOCK_SIZE - 1)];
+  }
+
+  String getId(int position) {
+    Housing housing = this.blockOf(position).occupants[position & (BLOCK_SIZE - 1)];
+    if (housing != null) {
+      return housing.getId();
+    }
+    Segment segment = this.segmentOf(position);
+    int number = segment.firstNumber + position - segment.firstPosition;
+    return segment.type == HousingType.ENCLOSURE ? StringPool.enclosureId(number)
+            : StringPool.isolationId(number);
+  }
+
+  int getVacantIsolationCount() {
+    return this.vacantIsolationCount;
+  }
+
+  int getOccupiedCount() {
+    return this.occupiedCount;
+  }
+
+  boolean isOccupied(int position) {
+    return this.blockOf(position).occupants[position & (BLOCK_SIZE - 1)] != null;
+  }
+
+  /**
+   * Returns the housing at {@code position}. An empty housing is returned as a new object that
+   * is not kept by the store until a monkey is placed in it.
+   */
+  Housing get(int position) {
+    Block block = this.blockOf(position);
+    Housing housing = block.occupants[position & (BLOCK_SIZE - 1)];
+    if (housing != null) {
+      return housing;
+    }
+    if (block.get(ISOLATIONS, position)) {
+      return new Isolation(this.getId(position));
+    }
+    return new Enclosure(this.getId(position), block.capacities[position & (BLOCK_SIZE - 1)]);
+  }
+
+  /**
+   * Keeps {@code housing} as the occupied housing at {@code position}.
+   */
+  void occupy(int position, Housing housing) {
+    Block block = this.writableBlock(position);
+    block.occupants[position & (BLOCK_SIZE - 1)] = housing;
+    if (block.set(OCCUPIED, position)) {
+      this.occupiedCount++;
+    }
+    if (!block.get(ISOLATIONS, position)) {
+      block.set(OCCUPIED_ENCLOSURES, position);
+    } else if (block.clear(VACANT_ISOLATIONS, position)) {
+      this.vacantIsolationCount--;
+    }
+    block.clear(VACANT_ENCLOSURES, position);
+  }
+
+  /**
+   * Drops the housing object at {@code position}, keeping only its id and capacity.
+   */
+  void vacate(int position) {
+    Block block = this.writableBlock(position);
+    block.occupants[position & (BLOCK_SIZE - 1)] = null;
+    if (block.clear(OCCUPIED, position)) {
+      this.occupiedCount--;
+    }
+    block.clear(OCCUPIED_ENCLOSURES, position);
+    if (block.get(ISOLATIONS, position)) {
+      if (block.set(VACANT_ISOLATIONS, position)) {
+        this.vacantIsolationCount++;
+      }
+    } else {
+      block.set(VACANT_ENCLOSURES, position);
+    }
+  }
+
+  int nextOccupied(int from) {
+    return this.next(OCCUPIED, from);
+  }
+
+  int nextOccupiedEnclosure(int from) {
+    return this.next(OCCUPIED_ENCLOSURES, from);
+  }
+
+  int nextVacantIsolation(int from) {
+    return this.next(VACANT_ISOLATIONS, from);
+  }
+
+  int nextVacantEnclosure(int from) {
+    return this.next(VACANT_ENCLOSURES, from);
+  }
+
+  /**
+   * Returns a read-only list of the housings in position order.
+   */
+  List<Housing> asList() {
+    return new HousingList();
+  }
+
+  /**
+   * Returns the first position from {@code from} on whose bit of {@code kind} is set, or -1.
+   */
+  private int next(int kind, int from) {
+    for (int index = from >> BLOCK_SHIFT; from < this.size; index++) {
+      Block block = this.blocks[index];
+      if (block.counts[kind] > 0) {
+        int position = block.next(kind, from & (BLOCK_SIZE - 1));
+        if (position >= 0) {
+          return (index << BLOCK_SHIFT) + position;
+        }
+      }
+      from = (index + 1) << BLOCK_SHIFT;
+    }
+    return -1;
+  }
+
+  private Block blockOf(int position) {
+    if (position < 0 || position >= this.size) {
+      throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + this.size);
+    }
+    return this.blocks[position >> BLOCK_SHIFT];
+  }
+
+  /**
+   * Returns the block of {@code position} this store may change in place, copying it first if
+   * it is still shared with a fork.
+   */
+  private Block writableBlock(int position) {
+    this.ensureUnshared();
+    int index = position >> BLOCK_SHIFT;
+    Block block = this.blocks[index];
+    if (block.owner != this.owner) {
+      block = new Block(block, this.owner);
+      this.blocks[index] = block;
+    }
+    return block;
+  }
+
+  private void ensureUnshared() {
+    if (this.shared) {
+      this.blocks = this.blocks.clone();
+      this.segments = new ArrayList<>(this.segments);
+      this.shared = false;
+    }
+  }
+
+  private Segment segmentOf(int position) {
+    int low = 0;
+    int high = this.segments.size() - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (this.segments.get(middle).firstPosition <= position) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return this.segments.get(low);
+  }
+
+  private void grow(int count) {
+    this.ensureUnshared();
+    int blockCount = (this.size + count + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    if (blockCount > this.blocks.length) {
+      this.blocks = Arrays.copyOf(this.blocks, Math.max(blockCount, this.blocks.length * 2));
+    }
+    for (int index = (this.size + BLOCK_SIZE - 1) >> BLOCK_SHIFT; index < blockCount; index++) {
+      this.blocks[index] = new Block(this.owner);
+    }
+  }
+
+  /**
+   * Capacities, occupied housings and bits of {@value #BLOCK_SIZE} consecutive positions. A
+   * block is changed in place only by the store that owns it.
+   */
+  private static class Block {
+
+    private static final int WORDS = BLOCK_SIZE / Long.SIZE;
+
+    private final Object owner;
+    private final int[] capacities;
+    private final Housing[] occupants;
+    private final long[] bits;
+    private final int[] counts;
+
+    Block(Object owner) {
+      this.owner = owner;
+      this.capacities = new int[BLOCK_SIZE];
+      this.occupants = new Housing[BLOCK_SIZE];
+      this.bits = new long[KINDS * WORDS];
+      this.counts = new int[KINDS];
+    }
+
+    Block(Block block, Object owner) {
+      this.owner = owner;
+      this.capacities = block.capacities.clone();
+      this.occupants = block.occupants.clone();
+      this.bits = block.bits.clone();
+      this.counts = block.counts.clone();
+    }
+
+    boolean get(int kind, int position) {
+      return (this.bits[kind * WORDS + ((position & (BLOCK_SIZE - 1)) >> 6)]
+              & (1L << position)) != 0;
+    }
+
+    /**
+     * Sets the bit of {@code kind} at {@code position} and returns whether it was clear.
+     */
+    boolean set(int kind, int position) {
+      int word = kind * WORDS + ((position & (BLOCK_SIZE - 1)) >> 6);
+      if ((this.bits[word] & (1L << position)) != 0) {
+        return false;
+      }
+      this.bits[word] |= 1L << position;
+      this.counts[kind]++;
+      return true;
+    }
+
+    /**
+     * Clears the bit of {@code kind} at {@code position} and returns whether it was set.
+     */
+    boolean clear(int kind, int position) {
+      int word = kind * WORDS + ((position & (BLOCK_SIZE - 1)) >> 6);
+      if ((this.bits[word] & (1L << position)) == 0) {
+        return false;
+      }
+      this.bits[word] &= ~(1L << position);
+      this.counts[kind]--;
+      return true;
+    }
+
+    /**
+     * Returns the first offset from {@code from} on in this block whose bit of {@code kind} is
+     * set, or -1.
+     */
+    int next(int kind, int from) {
+      int word = from >> 6;
+      long bits = this.bits[kind * WORDS + word] & (-1L << from);
+      while (bits == 0) {
+        if (++word == WORDS) {
+          return -1;
+        }
+        bits = this.bits[kind * WORDS + word];
+      }
+      return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+  }
+
+  /**
+   * Housings added together, whose ids are consecutive numbers.
+   */
+  private static class Segment {
+
+    private final HousingType type;
+    private final int firstNumber;
+    private final int firstPosition;
+    private final int count;
+
+    Segment(HousingType type, int firstNumber, int firstPosition, int count) {
+      this.type = type;
+      this.firstNumber = firstNumber;
+      this.firstPosition = firstPosition;
+      this.count = count;
+    }
+  }
+
+  private class HousingList extends AbstractList<Housing> implements RandomAccess {
+
+    @Override
+    public Housing get(int index) {
+      if (index < 0 || index >= HousingStore.this.size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                + HousingStore.this.size);
+      }
+      return HousingStore.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return HousingStore.this.size;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package sanctuary;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import enums.HousingType;
 import enums.Species;
@@ -15,10 +16,40 @@ public class Isolation implements Housing{
 
   public Isolation() {
     this.isolationNumber += 1;
-    this.id = "ISO" + this.isolationNumber;
+    this.id = StringPool.isolationId(this.isolationNumber);
     this.monkey = null;
   }
 
+  Isolation(String id) {
+    this.id = id;
+    this.monkey = null;
+  }
+
+  /**
+   * Reserves {@code count} consecutive isolation numbers and returns the first of them.
+   */
+  static synchronized int reserveIds(int count) {
+    int first = isolationNumber + 1;
+    isolationNumber += count;
+    return first;
+  }
+
+  /**
+   * Makes sure isolation numbers up to {@code number} are not given out again.
+   */
+  static synchronized void reserveIdsThrough(int number) {
+    isolationNumber = Math.max(isolationNumber, number);
+  }
+
+  private Isolation(Isolation isolation) {
+    this.id = isolation.id;
+    this.monkey = isolation.monkey;
+  }
+
+  Isolation copy() {
+    return new Isolation(this);
+  }
+
   @Override
   public String getId() {
     return id;
@@ -37,19 +68,43 @@ public class Isolation implements Housing{
   @Override
   public boolean isLocationAvailable(Primate monkey) {
 
-    if(this.getResidents() == null || this.getResidents().isEmpty()
-            || this.getResidents().get(0) == null)
-    {
-      return true;
-    }
-    return false;
+    return this.monkey == null;
   }
 
   @Override
   public List<Primate> getResidents() {
+    if (this.monkey == null) {
+      return Collections.emptyList();
+    }
     return Collections.singletonList(monkey);
   }
 
+  @Override
+  public int getResidentCount() {
+    return this.monkey == null ? 0 : 1;
+  }
+
+  @Override
+  public Primate getResident(int index) {
+    if (index != 0 || this.monkey == null) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Residents: " +
+              this.getResidentCount());
+    }
+    return this.monkey;
+  }
+
+  @Override
+  public boolean isOccupied() {
+    return this.monkey != null;
+  }
+
+  @Override
+  public void forEachResident(Consumer<? super Primate> action) {
+    if (this.monkey != null) {
+      action.accept(this.monkey);
+    }
+  }
+
   @Override
   public HousingType getHousingType() {
     return HousingType.ISOLATION;
@@ -1,65 +1,212 @@
 package sanctuary;
 
+import java.time.Clock;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import enums.FavoriteFood;
 import enums.HealthStatus;
 import enums.HousingType;
+import enums.Measurement;
 import enums.MonkeySize;
 import enums.Sex;
 import enums.Species;
 
+/**
+ * Implements {@link Sanctuary} with housings and indexes that are shared with its forks.
+ *
+ * <p>Every public method holds the monitor of the sanctuary, so calls from several threads, and
+ * forks taken by change listeners, see each change whole. The lists and spliterators it returns
+ * read the sanctuary later without the monitor: hold it while reading them if another thread
+ * may change the sanctuary, or read a {@link #fork()} instead.
+ */
 public class JungleFriendsSanctuary implements Sanctuary {
 
+  private static final double SKETCH_ACCURACY = 0.01;
+  private static final int PAGE_SCAN_LIMIT = 10000;
+  private static final int VACANT_PLACEMENT_CANDIDATES = 32;
+  private static final Comparator<String> MONKEY_ID_ORDER =
+          Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
   private final int[] sizeOfEnclosures;
-  private final List<Housing> locations;
-  private final List<Primate> monkeys;
+  private final HousingStore locations;
+  private final SharedTreeMap<Long, Primate> monkeys;
   private int numOfIsolationCages;
   private int numOfEnclosures;
-  private final List<Primate> alumniMonkeys;
+  private final SharedTreeMap<Long, Primate> alumniMonkeys;
+  private long monkeySequence;
+  private final SharedTreeMap<String, Long> monkeySequences;
+  private final SharedTreeMap<String, Long> alumniSequences;
+  private final SharedTreeMap<String, String> monkeyHousings;
+  private final SharedTreeMap<String, Primate> monkeysById;
+  private final NameIndex nameIndex;
+  private final MonkeyCounts counts;
+  private final CapacityForecast forecast;
+  private final SharedTreeMap<String, MeasurementHistory> histories;
+  private final Clock clock;
+  private final Map<Species, QuantileSketch> weightSketches;
+  private final Map<Species, QuantileSketch> ageSketches;
+  private long signVersion;
+  private final SharedTreeMap<String, Long> signVersions;
+  private final SharedTreeMap<Long, String> changedSigns;
+  private final List<Consumer<SanctuaryChange>> changeListeners;
+  private PlacementPolicy placementPolicy;
+  private Set<Object> owned;
+  private volatile long monkeyGeneration;
 
   public JungleFriendsSanctuary(int numOfIsolationCages, int numOfEnclosures, int[] sizeOfEnclosures) {
+    this(numOfIsolationCages, numOfEnclosures, sizeOfEnclosures, Clock.systemUTC());
+  }
+
+  /**
+   * Constructs a sanctuary that timestamps the measurement history of its monkeys with
+   * {@code clock}.
+   *
+   * @param numOfIsolationCages number of isolation cages
+   * @param numOfEnclosures     number of enclosures
+   * @param sizeOfEnclosures    size of every enclosure
+   * @param clock               clock used to timestamp measurements
+   * @throws IllegalArgumentException if {@code clock} is {@code null}.
+   */
+  public JungleFriendsSanctuary(int numOfIsolationCages, int numOfEnclosures, int[] sizeOfEnclosures,
+                                Clock clock) {
+    if (clock == null) {
+      throw new IllegalArgumentException("Clock cannot be null.");
+    }
+    this.clock = clock;
     this.numOfIsolationCages = numOfIsolationCages;
     this.numOfEnclosures = numOfEnclosures;
     this.sizeOfEnclosures = sizeOfEnclosures;
-    this.locations = createLocations(this.numOfEnclosures, this.sizeOfEnclosures, this.numOfIsolationCages, 0, 0);
-    this.monkeys = new ArrayList<>();
-    this.alumniMonkeys = new ArrayList<>();
+    this.locations = new HousingStore();
+    this.locations.addEnclosures(this.sizeOfEnclosures, this.numOfEnclosures);
+    this.locations.addIsolations(this.numOfIsolationCages);
+    this.forecast = new CapacityForecast();
+    this.enclosuresAdded(this.sizeOfEnclosures, this.numOfEnclosures);
+    this.monkeys = new SharedTreeMap<>(Comparator.naturalOrder());
+    this.alumniMonkeys = new SharedTreeMap<>(Comparator.naturalOrder());
+    this.monkeySequences = new SharedTreeMap<>(MONKEY_ID_ORDER);
+    this.alumniSequences = new SharedTreeMap<>(MONKEY_ID_ORDER);
+    this.monkeyHousings = new SharedTreeMap<>(MONKEY_ID_ORDER);
+    this.monkeysById = new SharedTreeMap<>(MONKEY_ID_ORDER);
+    this.nameIndex = new NameIndex();
+    this.counts = new MonkeyCounts();
+    this.histories = new SharedTreeMap<>(MONKEY_ID_ORDER);
+    this.weightSketches = new EnumMap<>(Species.class);
+    this.ageSketches = new EnumMap<>(Species.class);
+    this.signVersions = new SharedTreeMap<>(Comparator.naturalOrder());
+    this.changedSigns = new SharedTreeMap<>(Comparator.naturalOrder());
+    this.changeListeners = new CopyOnWriteArrayList<>();
+    this.owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Species species : Species.values()) {
+      this.weightSketches.put(species, new QuantileSketch(SKETCH_ACCURACY, 0.01, 10000));
+      this.ageSketches.put(species, new QuantileSketch(SKETCH_ACCURACY, 0.5, 200));
+    }
+    this.owned.addAll(this.weightSketches.values());
+    this.owned.addAll(this.ageSketches.values());
+  }
+
+  /**
+   * Forks {@code sanctuary}. The indexes and housings are shared with it, so this takes
+   * constant time, and either sanctuary copies what it changes afterwards.
+   */
+  private JungleFriendsSanctuary(JungleFriendsSanctuary sanctuary) {
+    this.numOfIsolationCages = sanctuary.numOfIsolationCages;
+    this.numOfEnclosures = sanctuary.numOfEnclosures;
+    this.sizeOfEnclosures = sanctuary.sizeOfEnclosures;
+    this.locations = sanctuary.locations.fork();
+    this.monkeys = sanctuary.monkeys.fork();
+    this.alumniMonkeys = sanctuary.alumniMonkeys.fork();
+    this.monkeySequence = sanctuary.monkeySequence;
+    this.monkeySequences = sanctuary.monkeySequences.fork();
+    this.alumniSequences = sanctuary.alumniSequences.fork();
+    this.monkeyHousings = sanctuary.monkeyHousings.fork();
+    this.monkeysById = sanctuary.monkeysById.fork();
+    this.nameIndex = sanctuary.nameIndex.fork();
+    this.counts = new MonkeyCounts(sanctuary.counts);
+    this.forecast = new CapacityForecast(sanctuary.forecast);
+    this.histories = sanctuary.histories.fork();
+    this.weightSketches = new EnumMap<>(sanctuary.weightSketches);
+    this.ageSketches = new EnumMap<>(sanctuary.ageSketches);
+    this.signVersion = sanctuary.signVersion;
+    this.signVersions = sanctuary.signVersions.fork();
+    this.changedSigns = sanctuary.changedSigns.fork();
+    this.clock = sanctuary.clock;
+    this.placementPolicy = sanctuary.placementPolicy;
+    this.changeListeners = new CopyOnWriteArrayList<>();
+    this.owned = Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  @Override
+  public synchronized JungleFriendsSanctuary fork() {
+    JungleFriendsSanctuary fork = new JungleFriendsSanctuary(this);
+    this.owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    return fork;
   }
 
   @Override
-  public void addMonkey(String name, MonkeySize size, float weight, int age, Species species, Sex sex,
-                        FavoriteFood favoriteFood, HealthStatus healthStatus,
-                        String monkeyLocation) throws IllegalStateException {
+  public synchronized String addMonkey(String name, MonkeySize size, float weight, int age,
+                                       Species species, Sex sex, FavoriteFood favoriteFood,
+                                       HealthStatus healthStatus, String monkeyLocation)
+          throws IllegalStateException {
     Primate newMonkey;
     if (isIsolationCageAvailable(null) != null) {
       newMonkey = new Monkey(name, size, weight, age, species, sex, favoriteFood, healthStatus);
-      this.monkeys.add(newMonkey);
+      this.registerMonkey((Monkey) newMonkey);
       if (monkeyLocation != null) {
         moveMonkey(monkeyLocation, newMonkey);
       } else {
         moveMonkeyToIsolation(newMonkey);
       }
+      return newMonkey.getId();
     } else throw new IllegalStateException("No more isolation cages available. New monkey cannot " +
             "be added to the sanctuary");
   }
 
+  /**
+   * {@inheritDoc} The list is a read-only view that follows later changes. Reaching a monkey
+   * by index takes logarithmic time.
+   */
   @Override
   public List<Primate> getMonkeys() {
-    return this.monkeys;
+    return new MonkeyList(this, this.monkeys);
   }
 
   @Override
-  public void moveMonkey(String housingId, Primate monkey) throws IllegalStateException,
-          IllegalArgumentException {
-    Housing housing = this.locations.stream().filter(house -> house.getId().equals(housingId))
-            .findFirst().orElse(null);
+  public synchronized Primate getMonkey(String monkeyId) {
+    Primate monkey = monkeyId == null ? null : this.monkeysById.get(monkeyId);
+    return monkey == null ? null : new MonkeyView(this, monkey);
+  }
+
+  @Override
+  public synchronized MonkeyLocation locateMonkey(String monkeyId) {
+    Primate monkey = this.getMonkey(monkeyId);
+    return monkey == null ? null : this.getMonkeyLocation(monkey);
+  }
+
+  @Override
+  public synchronized void moveMonkey(String housingId, Primate monkey)
+          throws IllegalStateException, IllegalArgumentException {
+    monkey = this.resolveMonkey(monkey);
+    Housing housing = this.findHousing(housingId);
     if (housing == null) {
       throw new IllegalArgumentException(housingId + " : Location does not exist. Move monkey " +
               monkey.getName() + "(" + monkey.getId() + ") to valid location.");
@@ -76,18 +223,77 @@ public class JungleFriendsSanctuary implements Sanctuary {
                 "Enclosure. Move monkey " + monkey.getName() + "(" + monkey.getId() +
                 ") to Isolation cage first.");
       }
-      if (housing.getHousingType() == HousingType.ENCLOSURE) {
-        ((Enclosure) housing).addMonkey(monkey);
-      } else if (housing.getHousingType() == HousingType.ISOLATION) {
-        ((Isolation) housing).addMonkey(monkey);
-      }
+      this.placeMonkey(housing, monkey);
     } else
       throw new IllegalStateException("The location " + housingId + " is not available for " +
               monkey.getName() + "(" + monkey.getId() + "). Try another location.");
   }
 
   @Override
-  public void moveMonkeyToEnclosure(Primate monkey) throws IllegalStateException {
+  public synchronized void moveMonkeys(Map<Primate, String> moves) throws IllegalStateException,
+          IllegalArgumentException {
+    if (moves == null) {
+      throw new IllegalArgumentException("Moves cannot be null.");
+    }
+    Map<Primate, Housing> targets = new LinkedHashMap<>();
+    Map<String, List<Primate>> finalResidents = new LinkedHashMap<>();
+    for (Map.Entry<Primate, String> move : moves.entrySet()) {
+      if (move.getKey() == null) {
+        throw new IllegalArgumentException("Monkey cannot be null.");
+      }
+      Primate monkey = this.resolveMonkey(move.getKey());
+      if (!this.monkeysById.containsKey(monkey.getId())) {
+        throw new IllegalArgumentException("Monkey " + monkey.getName() + "(" + monkey.getId() +
+                ") does not exist in sanctuary.");
+      }
+      Housing housing = this.findHousing(move.getValue());
+      if (housing == null) {
+        throw new IllegalArgumentException(move.getValue() + " : Location does not exist. Move " +
+                "monkey " + monkey.getName() + "(" + monkey.getId() + ") to valid location.");
+      }
+      Housing currentHousing = this.findHousing(this.monkeyHousings.get(monkey.getId()));
+      if (housing.getHousingType() == HousingType.ENCLOSURE) {
+        if (monkey.getHealthStatus() == HealthStatus.UNHEALTHY) {
+          throw new IllegalStateException("Only healthy monkeys can be added to Enclosures. " +
+                  "Monkey " + monkey.getName() + "(" + monkey.getId() + ") is UNHEALTHY.");
+        }
+        if (currentHousing == null) {
+          throw new IllegalStateException("New monkey cannot be directly added to " +
+                  "Enclosure. Move monkey " + monkey.getName() + "(" + monkey.getId() +
+                  ") to Isolation cage first.");
+        }
+      }
+      targets.put(monkey, housing);
+      if (currentHousing != null) {
+        finalResidents.computeIfAbsent(currentHousing.getId(),
+                id -> new ArrayList<>(currentHousing.getResidents())).removeIf(mon -> mon.getId().equals(monkey.getId()));
+      }
+    }
+    for (Map.Entry<Primate, Housing> target : targets.entrySet()) {
+      finalResidents.computeIfAbsent(target.getValue().getId(),
+              id -> new ArrayList<>(target.getValue().getResidents())).add(target.getKey());
+    }
+    for (Map.Entry<String, List<Primate>> housing : finalResidents.entrySet()) {
+      if (!isValidFinalState(this.findHousing(housing.getKey()), housing.getValue())) {
+        throw new IllegalStateException("The location " + housing.getKey() + " cannot " +
+                "house " + housing.getValue().stream().map(mon -> mon.getName() + "(" +
+                mon.getId() + ")").collect(Collectors.joining(", ")) + " together. No monkeys " +
+                "were moved.");
+      }
+    }
+
+    List<Primate> movingMonkeys = new ArrayList<>(targets.size());
+    int[] positions = new int[targets.size()];
+    for (Map.Entry<Primate, Housing> target : targets.entrySet()) {
+      positions[movingMonkeys.size()] = this.locations.positionOf(target.getValue().getId());
+      movingMonkeys.add(target.getKey());
+    }
+    this.relocate(movingMonkeys, positions);
+  }
+
+  @Override
+  public synchronized void moveMonkeyToEnclosure(Primate monkey) throws IllegalStateException {
+    monkey = this.resolveMonkey(monkey);
     Enclosure enclosure = isEnclosureAvailable(monkey);
     if (enclosure != null) {
       if (monkey.getHealthStatus() == HealthStatus.UNHEALTHY) {
@@ -99,57 +305,71 @@ public class JungleFriendsSanctuary implements Sanctuary {
                 "Enclosure. Move monkey " + monkey.getName() + "(" + monkey.getId() +
                 ") to Isolation cage first.");
       }
-      enclosure.addMonkey(monkey);
+      this.placeMonkey(enclosure, monkey);
     } else {
       throw new IllegalStateException("No space left in Enclosures. Cannot house anymore monkeys.");
     }
   }
 
   @Override
-  public void moveMonkeyToIsolation(Primate monkey) throws UnsupportedOperationException {
+  public synchronized void setPlacementPolicy(PlacementPolicy policy) {
+    this.placementPolicy = policy;
+  }
+
+  @Override
+  public synchronized void moveMonkeyToIsolation(Primate monkey)
+          throws UnsupportedOperationException {
+    monkey = this.resolveMonkey(monkey);
     Isolation isolation = isIsolationCageAvailable(monkey);
     if (isolation != null) {
       this.removeMonkeyFromCurrentLocation(monkey);
-      isolation.addMonkey(monkey);
+      this.placeMonkey(isolation, monkey);
     } else {
       throw new IllegalStateException("No more Isolation cages left. Cannot house anymore " +
               "monkeys.");
     }
   }
 
+  /**
+   * {@inheritDoc} The list is read-only. Empty housings are kept only as an id and capacity, so
+   * each access to one returns a new object.
+   */
   @Override
   public List<Housing> getHousings() {
-    return this.locations;
+    return this.locations.asList();
   }
 
   @Override
-  public void removeMonkey(Primate monkey) {
+  public synchronized void removeMonkey(Primate monkey) {
     if (monkey == null) {
       throw new IllegalArgumentException("Monkey cannot be null.");
     }
-    if (!this.getMonkeys().stream()
-            .filter(mon -> mon.getId().equals(monkey.getId()))
-            .findAny().isPresent()) {
+    Primate existingMonkey = this.resolveMonkey(monkey);
+    if (!this.monkeysById.containsKey(monkey.getId())) {
       throw new IllegalArgumentException("Monkey " + monkey.getName() + "(" + monkey.getId() +
               ") does not exist in sanctuary.");
     }
-    this.removeMonkeyFromCurrentLocation(monkey);
-    this.getMonkeys().removeIf(mon -> mon.getId().equals(monkey.getId()));
-    this.alumniMonkeys.add(monkey);
+    this.removeMonkeyFromCurrentLocation(existingMonkey);
+    this.retireMonkey(existingMonkey);
   }
 
   @Override
-  public int getTotalNumOfIsolationCages() {
+  public synchronized int getTotalNumOfIsolationCages() {
     return this.numOfIsolationCages;
   }
 
   @Override
-  public int getTotalNumOfEnclosures() {
+  public synchronized int getTotalNumOfEnclosures() {
     return this.numOfEnclosures;
   }
 
   @Override
-  public Map<Species, List<String>> getSpeciesWithLocations() {
+  public synchronized int getNumOfFreeIsolationCages() {
+    return this.locations.getVacantIsolationCount();
+  }
+
+  @Override
+  public synchronized Map<Species, List<String>> getSpeciesWithLocations() {
     Map<Species, List<String>> speciesWithLocations = new TreeMap<>();
     List<String> marmosetLocations = new ArrayList<>();
     List<String> capuchinLocations = new ArrayList<>();
@@ -164,10 +384,23 @@ public class JungleFriendsSanctuary implements Sanctuary {
     List<String> woollySpiderLocations = new ArrayList<>();
     List<String> woollyLocations = new ArrayList<>();
 
+    speciesWithLocations.put(Species.MARMOSET, marmosetLocations);
+    speciesWithLocations.put(Species.SAKI, sakiLocations);
+    speciesWithLocations.put(Species.SPIDER, spiderLocations);
+    speciesWithLocations.put(Species.CAPUCHIN, capuchinLocations);
+    speciesWithLocations.put(Species.NIGHT, nightLocations);
+    speciesWithLocations.put(Species.HOWLER, howlerLocation);
+    speciesWithLocations.put(Species.TAMARIN, tamarinLocations);
+    speciesWithLocations.put(Species.TITI, titiLocations);
+    speciesWithLocations.put(Species.UAKARIS, uakarisLocations);
+    speciesWithLocations.put(Species.WOOLLY, woollyLocations);
+    speciesWithLocations.put(Species.WOOLLY_SPIDER, woollySpiderLocations);
+    speciesWithLocations.put(Species.SQUIRREL, squirrelLocations);
 
-    for (Housing location : this.locations) {
-      if(location.getResidents() != null && !location.getResidents().isEmpty()
-              && location.getResidents().get(0) != null) {
+    for (int position = this.locations.nextOccupied(0); position >= 0;
+         position = this.locations.nextOccupied(position + 1)) {
+      Housing location = this.locations.get(position);
+      if (location.isOccupied()) {
         switch (location.getSpecies()) {
           case MARMOSET:
             marmosetLocations.add(location.getId());
@@ -207,158 +440,430 @@ public class JungleFriendsSanctuary implements Sanctuary {
             break;
         }
       }
-
-      speciesWithLocations.put(Species.MARMOSET, marmosetLocations);
-      speciesWithLocations.put(Species.SAKI, sakiLocations);
-      speciesWithLocations.put(Species.SPIDER, spiderLocations);
-      speciesWithLocations.put(Species.CAPUCHIN, capuchinLocations);
-      speciesWithLocations.put(Species.NIGHT, nightLocations);
-      speciesWithLocations.put(Species.HOWLER, howlerLocation);
-      speciesWithLocations.put(Species.TAMARIN, tamarinLocations);
-      speciesWithLocations.put(Species.TITI, titiLocations);
-      speciesWithLocations.put(Species.UAKARIS, uakarisLocations);
-      speciesWithLocations.put(Species.WOOLLY, woollyLocations);
-      speciesWithLocations.put(Species.WOOLLY_SPIDER, woollyLocations);
-      speciesWithLocations.put(Species.SQUIRREL, squirrelLocations);
-
     }
     return speciesWithLocations;
   }
 
   @Override
-  public List<String> getLocationsForSpecies(Species species) {
+  public synchronized List<String> getLocationsForSpecies(Species species) {
     return this.getSpeciesWithLocations().get(species);
   }
 
   @Override
-  public Map<String, Map<HousingType, String>> getAllMonkeysWithLocations() {
+  public synchronized Map<String, Map<HousingType, String>> getAllMonkeysWithLocations() {
     Map<String, Map<HousingType, String>> monkeysWithLocations = new TreeMap<>();
-    for (Housing location : this.locations) {
-      if (location.getResidents() != null && !location.getResidents().isEmpty()
-              && location.getResidents().get(0) != null) {
-        if (location.getHousingType() == HousingType.ISOLATION) {
-          monkeysWithLocations.put(location.getResidents().get(0).getName(),
-                  Collections.singletonMap(HousingType.ISOLATION, location.getId()));
-        } else if (location.getHousingType() == HousingType.ENCLOSURE) {
-          for (Primate monkey : location.getResidents()) {
-            monkeysWithLocations.put(monkey.getName(),
-                    Collections.singletonMap(HousingType.ENCLOSURE, location.getId()));
-          }
-        }
+    for (int position = this.locations.nextOccupied(0); position >= 0;
+         position = this.locations.nextOccupied(position + 1)) {
+      Housing location = this.locations.get(position);
+      for (int i = 0; i < location.getResidentCount(); i++) {
+        monkeysWithLocations.put(location.getResident(i).getName(),
+                Collections.singletonMap(location.getHousingType(), location.getId()));
       }
     }
     return monkeysWithLocations;
   }
 
   @Override
-  public Map<FavoriteFood, Integer> getFavFoodShoppingList() {
+  public synchronized Map<FavoriteFood, Integer> getFavFoodShoppingList() {
     Map<FavoriteFood, Integer> favFoodShoppingList = new HashMap<>();
-    int nuts = 0;
-    int fruits = 0;
-    int seeds = 0;
-    int eggs = 0;
-    int leaves = 0;
-    int treeSap = 0;
-    int insects = 0;
-    for (Primate monkey : this.getMonkeys()) {
-      switch (monkey.getFavoriteFood()) {
-        case NUTS:
-          favFoodShoppingList.put(FavoriteFood.NUTS, nuts += monkey.getSize().getFoodRequired());
-          break;
-
-        case FRUITS:
-          favFoodShoppingList.put(FavoriteFood.FRUITS, fruits += monkey.getSize()
-                  .getFoodRequired());
-          break;
-
-        case EGGS:
-          favFoodShoppingList.put(FavoriteFood.EGGS, eggs += monkey.getSize().getFoodRequired());
-          break;
-
-        case SEEDS:
-          favFoodShoppingList.put(FavoriteFood.SEEDS, seeds += monkey.getSize().getFoodRequired());
-          break;
-
-        case LEAVES:
-          favFoodShoppingList.put(FavoriteFood.LEAVES, leaves += monkey.getSize()
-                  .getFoodRequired());
-          break;
-
-        case TREESAP:
-          favFoodShoppingList.put(FavoriteFood.TREESAP, treeSap += monkey.getSize()
-                  .getFoodRequired());
-          break;
-
-        case INSECTS:
-          favFoodShoppingList.put(FavoriteFood.INSECTS, insects += monkey.getSize()
-                  .getFoodRequired());
-          break;
+    for (FavoriteFood food : FavoriteFood.values()) {
+      long foodRequired = this.counts.getFoodRequired(food);
+      if (foodRequired > 0) {
+        favFoodShoppingList.put(food, (int) foodRequired);
       }
     }
     return favFoodShoppingList;
   }
 
   @Override
-  public void addCapacity(int numOfNewIsolationCages, int numOfNewEnclosures,
+  public synchronized MonkeyCounts getMonkeyCounts() {
+    return new MonkeyCounts(this.counts);
+  }
+
+  @Override
+  public synchronized CapacityForecast getCapacityForecast() {
+    return new CapacityForecast(this.forecast);
+  }
+
+  @Override
+  public synchronized ResidentTable getResidentTable() {
+    ResidentTable table = new ResidentTable(this.monkeyHousings.size());
+    for (int position = this.locations.nextOccupied(0); position >= 0;
+         position = this.locations.nextOccupied(position + 1)) {
+      Housing housing = this.locations.get(position);
+      for (int i = 0; i < housing.getResidentCount(); i++) {
+        table.add(housing, housing.getResident(i));
+      }
+    }
+    return table;
+  }
+
+  @Override
+  public synchronized void addCapacity(int numOfNewIsolationCages, int numOfNewEnclosures,
                           int[] sizeOfEnclosures) {
-    this.locations.addAll(createLocations(numOfNewEnclosures, this.sizeOfEnclosures,
-            numOfNewIsolationCages, this.numOfEnclosures, this.numOfIsolationCages));
+    if (numOfNewEnclosures > 0 && (sizeOfEnclosures == null
+            || sizeOfEnclosures.length < numOfNewEnclosures)) {
+      throw new IllegalArgumentException("Size of every new Enclosure must be given. Enclosures: " +
+              numOfNewEnclosures + ", Sizes: " + (sizeOfEnclosures == null ? 0 :
+              sizeOfEnclosures.length));
+    }
+    int firstEnclosure = this.locations.addEnclosures(sizeOfEnclosures, numOfNewEnclosures);
+    this.enclosuresAdded(sizeOfEnclosures, numOfNewEnclosures);
+    int firstIsolation = this.locations.addIsolations(numOfNewIsolationCages);
     this.numOfIsolationCages += numOfNewIsolationCages;
     this.numOfEnclosures += numOfNewEnclosures;
+    if (!this.changeListeners.isEmpty() && numOfNewEnclosures > 0) {
+      this.publish(SanctuaryChange.housingsAdded(HousingType.ENCLOSURE, firstEnclosure,
+              numOfNewEnclosures, sizeOfEnclosures));
+    }
+    if (!this.changeListeners.isEmpty() && numOfNewIsolationCages > 0) {
+      this.publish(SanctuaryChange.housingsAdded(HousingType.ISOLATION, firstIsolation,
+              numOfNewIsolationCages, null));
+    }
   }
 
   @Override
-  public Map<String, Map<Sex, FavoriteFood>> getEnclosureSign(String enclosureId) {
+  public synchronized Map<String, Map<Sex, FavoriteFood>> getEnclosureSign(String enclosureId) {
     if(enclosureId == null){
       throw new IllegalArgumentException("Enclosure id cannot be null.");
     }
-    boolean validEnclosureId = false;
-    Map<String, Map<Sex, FavoriteFood>> enclosureSign = new HashMap<>();
-    for(Housing location : this.getHousings()) {
-      if (location.getId().equals(enclosureId) && location.getHousingType() == HousingType.ENCLOSURE) {
-        enclosureSign = ((Enclosure) location).getEnclosureSign();
-        validEnclosureId = true;
-      }
+    int position = this.locations.positionOf(enclosureId);
+    if (position < 0 || this.locations.getType(position) != HousingType.ENCLOSURE) {
+      throw new IllegalArgumentException(enclosureId + ": Enclosure id does not exist.");
+    }
+    if (!this.locations.isOccupied(position)) {
+      return Collections.emptyMap();
     }
-    if(!validEnclosureId){
+    return ((Enclosure) this.locations.get(position)).getEnclosureSign();
+  }
 
-        throw new IllegalArgumentException(enclosureId + ": Enclosure id does not exist.");
+  @Override
+  public synchronized long getSignVersion() {
+    return this.signVersion;
+  }
 
+  @Override
+  public synchronized EnclosureSignChanges getChangedEnclosureSigns(long sinceVersion) {
+    Map<String, Map<String, Map<Sex, FavoriteFood>>> signs = new LinkedHashMap<>();
+    for (Iterator<String> enclosureIds = this.changedSigns.values(sinceVersion, false);
+         enclosureIds.hasNext(); ) {
+      String enclosureId = enclosureIds.next();
+      signs.put(enclosureId, this.getEnclosureSign(enclosureId));
     }
-    return enclosureSign;
+    return new EnclosureSignChanges(this.signVersion, signs);
   }
 
+  /**
+   * {@inheritDoc} The list is a read-only view that follows later changes.
+   */
   @Override
   public List<Primate> getAlumniMonkeys() {
-    return this.alumniMonkeys;
+    return new MonkeyList(this, this.alumniMonkeys);
+  }
+
+  @Override
+  public synchronized Page<Primate> getMonkeysPage(String cursor, int pageSize,
+                                                   Predicate<? super Primate> filter) {
+    checkPageSize(pageSize);
+    if (cursor != null && cursor.isEmpty()) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+    List<Primate> items = new ArrayList<>();
+    String lastId = null;
+    int scanned = 0;
+    for (Iterator<Primate> monkeys = this.monkeysById.values(cursor, false);
+         monkeys.hasNext(); ) {
+      Primate monkey = monkeys.next();
+      if (items.size() == pageSize || scanned == PAGE_SCAN_LIMIT) {
+        return new Page<>(items, lastId);
+      }
+      scanned++;
+      lastId = monkey.getId();
+      if (filter == null || filter.test(monkey)) {
+        items.add(((Monkey) monkey).copy());
+      }
+    }
+    return new Page<>(items, null);
   }
 
   @Override
-  public void updateMonkeyHealthStatus(HealthStatus updatedHealthStatus, Primate monkey)
+  public synchronized Page<Housing> getHousingsPage(String cursor, int pageSize,
+                                                    Predicate<? super Housing> filter) {
+    checkPageSize(pageSize);
+    List<Housing> items = new ArrayList<>();
+    int position = parseCursor(cursor, this.locations.size());
+    for (int scanned = 0; position < this.locations.size(); position++, scanned++) {
+      if (items.size() == pageSize || scanned == PAGE_SCAN_LIMIT) {
+        return new Page<>(items, String.valueOf(position));
+      }
+      Housing housing = this.locations.get(position);
+      if (filter == null || filter.test(housing)) {
+        items.add(this.locations.isOccupied(position) ? copyHousing(housing) : housing);
+      }
+    }
+    return new Page<>(items, null);
+  }
+
+  @Override
+  public synchronized Page<Primate> getAlumniMonkeysPage(String cursor, int pageSize,
+                                                         Predicate<? super Primate> filter) {
+    checkPageSize(pageSize);
+    List<Primate> items = new ArrayList<>();
+    int index = parseCursor(cursor, this.alumniMonkeys.size());
+    for (int scanned = 0; index < this.alumniMonkeys.size(); index++, scanned++) {
+      if (items.size() == pageSize || scanned == PAGE_SCAN_LIMIT) {
+        return new Page<>(items, String.valueOf(index));
+      }
+      Primate monkey = this.alumniMonkeys.getAt(index);
+      if (filter == null || filter.test(monkey)) {
+        items.add(((Monkey) monkey).copy());
+      }
+    }
+    return new Page<>(items, null);
+  }
+
+  @Override
+  public Spliterator<Housing> housingSpliterator() {
+    return new HousingSpliterator(this.locations, 0, this.locations.size(), false,
+            this.locations.getOccupiedCount());
+  }
+
+  @Override
+  public Spliterator<Housing> occupiedHousingSpliterator() {
+    return new HousingSpliterator(this.locations, 0, this.locations.size(), true,
+            this.locations.getOccupiedCount());
+  }
+
+  @Override
+  public Spliterator<Primate> residentSpliterator() {
+    int occupiedCount = this.locations.getOccupiedCount();
+    return new ResidentSpliterator(new HousingSpliterator(this.locations, 0,
+            this.locations.size(), true, occupiedCount), this.monkeyHousings.size(),
+            occupiedCount);
+  }
+
+  @Override
+  public synchronized List<MonkeyLocation> findMonkeysByName(String name) {
+    if (name == null) {
+      throw new IllegalArgumentException("Name cannot be null.");
+    }
+    List<MonkeyLocation> matches = new ArrayList<>();
+    for (Primate monkey : this.nameIndex.find(name)) {
+      matches.add(this.getMonkeyLocation(monkey));
+    }
+    return matches;
+  }
+
+  @Override
+  public synchronized List<MonkeyLocation> findMonkeysByNamePrefix(String prefix, int limit) {
+    if (prefix == null) {
+      throw new IllegalArgumentException("Prefix cannot be null.");
+    }
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit cannot be negative.");
+    }
+    List<MonkeyLocation> matches = new ArrayList<>();
+    this.nameIndex.forEachWithPrefix(prefix, limit,
+            monkey -> matches.add(this.getMonkeyLocation(monkey)));
+    return matches;
+  }
+
+  @Override
+  public synchronized MeasurementSeries getMeasurementHistory(Primate monkey,
+                                                             Measurement measurement,
+                                                             long fromMillis, long toMillis) {
+    if (monkey == null || measurement == null) {
+      throw new IllegalArgumentException("Monkey and measurement cannot be null.");
+    }
+    MeasurementHistory history = this.histories.get(monkey.getId());
+    if (history == null) {
+      throw new IllegalArgumentException("Monkey " + monkey.getName() + "(" + monkey.getId() +
+              ") does not exist in sanctuary.");
+    }
+    return history.read(measurement, fromMillis, toMillis);
+  }
+
+  @Override
+  public synchronized MeasurementStatistics getSpeciesMeasurementStatistics(
+          Species species, Measurement measurement, long fromMillis, long toMillis) {
+    if (species == null || measurement == null) {
+      throw new IllegalArgumentException("Species and measurement cannot be null.");
+    }
+    MeasurementStatistics.Builder statistics =
+            new MeasurementStatistics.Builder(MeasurementHistory.scale(measurement));
+    for (Iterator<MeasurementHistory> histories = this.histories.values(); histories.hasNext(); ) {
+      MeasurementHistory history = histories.next();
+      if (history.getSpecies() == species) {
+        history.aggregate(measurement, fromMillis, toMillis, statistics);
+      }
+    }
+    return statistics.build();
+  }
+
+  @Override
+  public synchronized QuantileSketch getSpeciesSketch(Species species, Measurement measurement) {
+    return new QuantileSketch(this.getSketches(measurement).get(species));
+  }
+
+  @Override
+  public synchronized double getSpeciesQuantile(Species species, Measurement measurement,
+                                                double quantile) {
+    return this.getSketches(measurement).get(species).getQuantile(quantile);
+  }
+
+  /**
+   * Registers {@code listener} to be told of every change to this sanctuary, in order and on the
+   * thread making the change. The listener is first given the changes that build the current
+   * state from an empty sanctuary. Register while no other thread is changing the sanctuary.
+   *
+   * @param listener listener of changes
+   * @throws IllegalArgumentException if {@code listener} is {@code null}.
+   */
+  public synchronized void addChangeListener(Consumer<SanctuaryChange> listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("Change listener cannot be null.");
+    }
+    for (int i = 0; i < this.locations.getSegmentCount(); i++) {
+      int firstPosition = this.locations.getSegmentFirstPosition(i);
+      int count = this.locations.getSegmentSize(i);
+      int[] capacities = null;
+      if (this.locations.getSegmentType(i) == HousingType.ENCLOSURE) {
+        capacities = new int[count];
+        for (int j = 0; j < count; j++) {
+          capacities[j] = this.locations.getCapacity(firstPosition + j);
+        }
+      }
+      listener.accept(SanctuaryChange.housingsAdded(this.locations.getSegmentType(i),
+              this.locations.getSegmentFirstNumber(i), count, capacities));
+    }
+    for (Iterator<Primate> monkeys = this.monkeys.values(); monkeys.hasNext(); ) {
+      listener.accept(SanctuaryChange.monkeyAdded(monkeys.next()));
+    }
+    for (Iterator<Primate> alumni = this.alumniMonkeys.values(); alumni.hasNext(); ) {
+      Primate monkey = alumni.next();
+      listener.accept(SanctuaryChange.monkeyAdded(monkey));
+      listener.accept(SanctuaryChange.monkeyRetired(monkey.getId()));
+    }
+    for (int position = this.locations.nextOccupied(0); position >= 0;
+         position = this.locations.nextOccupied(position + 1)) {
+      Housing housing = this.locations.get(position);
+      for (int i = 0; i < housing.getResidentCount(); i++) {
+        listener.accept(SanctuaryChange.monkeyPlaced(housing.getResident(i).getId(), position));
+      }
+    }
+    this.changeListeners.add(listener);
+  }
+
+  public synchronized void removeChangeListener(Consumer<SanctuaryChange> listener) {
+    this.changeListeners.remove(listener);
+  }
+
+  /**
+   * Registers {@code listener} to be told of the changes made from now on, without first being
+   * given the changes that build the current state.
+   */
+  synchronized void addChangeListenerFromNow(Consumer<SanctuaryChange> listener) {
+    this.changeListeners.add(listener);
+  }
+
+  /**
+   * Applies a change published by another sanctuary. Applying all changes of a sanctuary in
+   * order to an empty sanctuary, built with no housings, reproduces its housings, monkeys and
+   * placements with the same ids. The change is passed on to the listeners of this sanctuary.
+   *
+   * @param change the change
+   * @throws IllegalArgumentException if {@code change} is {@code null} or refers to a monkey or
+   *                                  housing that does not exist.
+   */
+  public synchronized void applyChange(SanctuaryChange change) {
+    if (change == null) {
+      throw new IllegalArgumentException("Change cannot be null.");
+    }
+    switch (change.getType()) {
+      case HOUSINGS_ADDED:
+        if (change.getHousingType() == HousingType.ENCLOSURE) {
+          int[] capacities = change.getCapacities();
+          this.locations.addEnclosures(change.getFirstNumber(), capacities, change.getCount());
+          this.enclosuresAdded(capacities, change.getCount());
+          this.numOfEnclosures += change.getCount();
+        } else {
+          this.locations.addIsolations(change.getFirstNumber(), change.getCount());
+          this.numOfIsolationCages += change.getCount();
+        }
+        if (!this.changeListeners.isEmpty()) {
+          this.publish(change);
+        }
+        break;
+      case MONKEY_ADDED:
+        this.registerMonkey(new Monkey(change.getMonkeyId(), change.getName(), change.getSize(),
+                change.getWeight(), change.getAge(), change.getSpecies(), change.getSex(),
+                change.getFavoriteFood(), change.getHealthStatus()));
+        break;
+      case MONKEY_PLACED:
+        if (change.getPosition() < 0 || change.getPosition() >= this.locations.size()) {
+          throw new IllegalArgumentException("Housing " + change.getPosition() +
+                  " does not exist.");
+        }
+        this.placeMonkey(this.locations.get(change.getPosition()),
+                this.findMonkey(change.getMonkeyId()));
+        break;
+      case MONKEY_UNPLACED:
+        this.removeMonkeyFromCurrentLocation(this.findMonkey(change.getMonkeyId()));
+        break;
+      case MONKEY_RETIRED:
+        this.retireMonkey(this.findMonkey(change.getMonkeyId()));
+        break;
+      case HEALTH_STATUS_UPDATED:
+        this.changeHealthStatus(this.writableMonkey(this.findMonkey(change.getMonkeyId())),
+                change.getHealthStatus());
+        break;
+      case SIZE_UPDATED:
+        this.changeSize(this.writableMonkey(this.findMonkey(change.getMonkeyId())),
+                change.getSize());
+        break;
+      case WEIGHT_UPDATED:
+        this.changeWeight(this.writableMonkey(this.findMonkey(change.getMonkeyId())),
+                change.getWeight());
+        break;
+      case AGE_UPDATED:
+        this.changeAge(this.writableMonkey(this.findMonkey(change.getMonkeyId())),
+                change.getAge());
+        break;
+      case MONKEYS_MOVED: {
+        String[] monkeyIds = change.getMonkeyIds();
+        int[] positions = change.getPositions();
+        List<Primate> monkeys = new ArrayList<>(monkeyIds.length);
+        for (int i = 0; i < monkeyIds.length; i++) {
+          if (positions[i] < 0 || positions[i] >= this.locations.size()) {
+            throw new IllegalArgumentException("Housing " + positions[i] + " does not exist.");
+          }
+          monkeys.add(this.findMonkey(monkeyIds[i]));
+        }
+        this.relocate(monkeys, positions);
+        break;
+      }
+    }
+  }
+
+  @Override
+  public synchronized void updateMonkeyHealthStatus(HealthStatus updatedHealthStatus,
+                                                    Primate monkey)
           throws IllegalStateException, IllegalArgumentException {
     boolean shouldMonkeyMoveToIsolation = false;
     Housing currentHousing = null;
     if (monkey == null) {
       throw new IllegalArgumentException("Monkey cannot be null.");
     }
+    monkey = this.writableMonkey(monkey);
     try{
-      ((Monkey) monkey).updateHealthStatus(updatedHealthStatus);
+      this.changeHealthStatus((Monkey) monkey, updatedHealthStatus);
     } catch(IllegalArgumentException e){
       throw e;
     }
     if (monkey.getHealthStatus() == HealthStatus.UNHEALTHY) {
-      for (Housing housing : this.getHousings()) {
-
-        if (housing.getHousingType() == HousingType.ENCLOSURE && housing.getResidents() != null
-                && !housing.getResidents().isEmpty()) {
-          for (Primate resident : housing.getResidents()) {
-            if (resident.getId().equals(monkey.getId())) {
-              shouldMonkeyMoveToIsolation = true;
-              currentHousing = housing;
-            }
-          }
-        }
-      }
+      currentHousing = this.findHousing(this.monkeyHousings.get(monkey.getId()));
+      shouldMonkeyMoveToIsolation = currentHousing != null
+              && currentHousing.getHousingType() == HousingType.ENCLOSURE;
     }
     if (shouldMonkeyMoveToIsolation) {
       try {
@@ -374,125 +879,731 @@ public class JungleFriendsSanctuary implements Sanctuary {
   }
 
   @Override
-  public void updateMonkeySize(MonkeySize updatedSize, Primate monkey)
+  public synchronized List<Primate> updateMonkeysHealthStatus(HealthStatus updatedHealthStatus,
+                                                           List<Primate> monkeys)
+          throws IllegalArgumentException {
+    if (updatedHealthStatus == null) {
+      throw new IllegalArgumentException("Monkey's updated health status cannot be null.");
+    }
+    if (monkeys == null) {
+      throw new IllegalArgumentException("Monkeys cannot be null.");
+    }
+    for (Primate monkey : monkeys) {
+      if (monkey == null) {
+        throw new IllegalArgumentException("Monkeys cannot be null.");
+      }
+      if (!this.monkeySequences.containsKey(monkey.getId())
+              && !this.alumniSequences.containsKey(monkey.getId())) {
+        throw new IllegalArgumentException("Monkey " + monkey.getName() + "(" + monkey.getId() +
+                ") does not exist in sanctuary. No monkeys were updated.");
+      }
+    }
+    Set<String> monkeyIds = new HashSet<>();
+    for (Primate monkey : monkeys) {
+      this.changeHealthStatus(this.writableMonkey(monkey), updatedHealthStatus);
+      monkeyIds.add(monkey.getId());
+    }
+    List<Primate> notQuarantined = new ArrayList<>();
+    if (updatedHealthStatus != HealthStatus.UNHEALTHY) {
+      return notQuarantined;
+    }
+
+    List<Primate> unhealthyInEnclosures = ForkJoinPool.commonPool()
+            .invoke(new EnclosureResidentSearch(this.locations, monkeyIds, 0,
+                    this.locations.size()));
+    int isolationCursor = 0;
+    for (Primate monkey : unhealthyInEnclosures) {
+      isolationCursor = isolationCursor < 0 ? -1
+              : this.locations.nextVacantIsolation(isolationCursor);
+      this.removeMonkeyFromCurrentLocation(monkey);
+      if (isolationCursor >= 0) {
+        this.placeMonkey(this.locations.get(isolationCursor), monkey);
+      } else {
+        notQuarantined.add(new MonkeyView(this, monkey));
+      }
+    }
+    return notQuarantined;
+  }
+
+  @Override
+  public synchronized void updateMonkeySize(MonkeySize updatedSize, Primate monkey)
           throws IllegalStateException, IllegalArgumentException {
     if (monkey == null) {
       throw new IllegalArgumentException("Monkey cannot be null.");
     }
+    Monkey resident = this.writableMonkey(monkey);
     try {
-      ((Monkey) monkey).updateSize(updatedSize);
+      this.changeSize(resident, updatedSize);
     } catch(IllegalArgumentException e){
       throw e;
     }
-    this.getHousings().forEach(housing -> {
+    for (int position = this.locations.nextOccupied(0); position >= 0;
+         position = this.locations.nextOccupied(position + 1)) {
+      Housing housing = this.locations.get(position);
       if (housing.getHousingType() == HousingType.ENCLOSURE) {
-        if (((Enclosure) housing).getAvailableCapacity() < (updatedSize.getSpace() - monkey.getSize().
+        if (((Enclosure) housing).getAvailableCapacity() < (updatedSize.getSpace() - resident.getSize().
                 getSpace())) {
           try {
-            this.moveMonkeyToEnclosure(monkey);
+            this.moveMonkeyToEnclosure(resident);
           } catch (IllegalStateException e) {
             if (e.getMessage().equals("No space left in Enclosures. Cannot house anymore monkeys."))
             {
-              this.removeMonkeyFromCurrentLocation(monkey);
+              this.removeMonkeyFromCurrentLocation(resident);
               throw new IllegalStateException("Monkey size increased and no more space left for " +
                       "monkey in any Enclosures. Please find a suitable place for monkey " +
-                      monkey.getName() + "(" + monkey.getId() + ")using exchange agreement");
+                      resident.getName() + "(" + resident.getId() + ")using exchange agreement");
             } else throw e;
           }
         }
       }
-    });
+    }
   }
 
   @Override
-  public void updateMonkeyWeight(double updatedWeight, Primate monkey)
+  public synchronized void updateMonkeyWeight(double updatedWeight, Primate monkey)
           throws IllegalStateException, IllegalArgumentException {
     if (monkey == null) {
       throw new IllegalArgumentException(" Monkey cannot be null.");
     }
+    monkey = this.writableMonkey(monkey);
     try{
-      ((Monkey) monkey).updateWeight(updatedWeight);
+      this.changeWeight((Monkey) monkey, updatedWeight);
     } catch(IllegalArgumentException e){
     throw e;
   }
   }
 
   @Override
-  public void updateMonkeyAge(int updatedAge, Primate monkey)
+  public synchronized void updateMonkeyAge(int updatedAge, Primate monkey)
           throws IllegalStateException, IllegalArgumentException {
     if (monkey == null) {
       throw new IllegalArgumentException(" Monkey cannot be null.");
     }
+    monkey = this.writableMonkey(monkey);
     try{
-      ((Monkey) monkey).updateAge(updatedAge);
+      this.changeAge((Monkey) monkey, updatedAge);
     } catch(IllegalArgumentException e){
       throw e;
     }
   }
 
   private Isolation isIsolationCageAvailable(Primate monkey) {
-    List<Housing> isolations = locations.stream()
-            .filter(location -> location.getHousingType() == HousingType.ISOLATION)
-            .collect(Collectors.toList());
-
-    for (Housing isolation : isolations) {
-      if (isolation.isLocationAvailable(monkey)) {
-        return (Isolation) isolation;
-      }
-    }
-    return null;
+    int position = this.locations.nextVacantIsolation(0);
+    return position < 0 ? null : (Isolation) this.locations.get(position);
   }
 
   private Enclosure isEnclosureAvailable(Primate monkey) {
-    List<Housing> enclosures = locations.stream()
-            .filter(location -> location.getHousingType() == HousingType.ENCLOSURE)
-            .collect(Collectors.toList());
-
-    for (Housing enclosure : enclosures) {
+    if (this.placementPolicy != null) {
+      return this.bestEnclosure(monkey, this.placementPolicy);
+    }
+    int vacant = this.locations.nextVacantEnclosure(0);
+    for (int position = this.locations.nextOccupiedEnclosure(0); position >= 0
+            && (vacant < 0 || position < vacant);
+         position = this.locations.nextOccupiedEnclosure(position + 1)) {
+      Housing enclosure = this.locations.get(position);
       if (enclosure.isLocationAvailable(monkey)) {
         return (Enclosure) enclosure;
       }
     }
-    return null;
+    return vacant < 0 ? null : (Enclosure) this.locations.get(vacant);
   }
 
-  private List<Housing> createLocations(int numOfEnclosures, int[] sizeOfEnclosures,
-                                        int numOfIsolationCages, int existingNumOfEnclosures,
-                                        int existingNumOfIsolationCages) {
-    List<Housing> locations = new ArrayList<>();
-    for (int i = existingNumOfEnclosures; i < numOfEnclosures; i++) {
-      Housing enclosure = new Enclosure(sizeOfEnclosures[i]);
-      locations.add(enclosure);
+  /**
+   * Returns the enclosure {@code policy} scores highest for {@code monkey}, preferring the
+   * earlier one on a tie. Every occupied enclosure that can take the monkey is a candidate, but
+   * empty enclosures differ only in capacity, so only the first few of them are scored.
+   */
+  private Enclosure bestEnclosure(Primate monkey, PlacementPolicy policy) {
+    int best = -1;
+    int bestScore = Integer.MIN_VALUE;
+    for (int position = this.locations.nextOccupiedEnclosure(0); position >= 0;
+         position = this.locations.nextOccupiedEnclosure(position + 1)) {
+      Housing enclosure = this.locations.get(position);
+      if (enclosure.isLocationAvailable(monkey)) {
+        int score = policy.score(monkey, (Enclosure) enclosure);
+        if (score > bestScore) {
+          best = position;
+          bestScore = score;
+        }
+      }
     }
-    for (int i = existingNumOfIsolationCages; i < numOfIsolationCages; i++) {
-      Housing isolation = new Isolation();
-      locations.add(isolation);
+    int vacant = this.locations.nextVacantEnclosure(0);
+    for (int i = 0; i < VACANT_PLACEMENT_CANDIDATES && vacant >= 0; i++) {
+      int score = policy.score(monkey, (Enclosure) this.locations.get(vacant));
+      if (score > bestScore || (score == bestScore && vacant < best)) {
+        best = vacant;
+        bestScore = score;
+      }
+      vacant = this.locations.nextVacantEnclosure(vacant + 1);
     }
-    return locations;
+    return best < 0 ? null : (Enclosure) this.locations.get(best);
   }
 
   private boolean removeMonkeyFromCurrentLocation(Primate monkey) {
-    List<Housing> locations = this.locations.stream()
-            .filter(location -> location.getResidents() != null
-                    && !location.getResidents().isEmpty() && location.getResidents().get(0) != null
-                    && location.getResidents().stream()
-                    .anyMatch(mon -> mon.getId().equals(monkey.getId())))
-            .collect(Collectors.toList());
-
-    if (locations.size() > 1) {
-      throw new IllegalStateException("Monkey " + monkey.getName() + "(" + monkey.getId() +
-              ") exists at more than one place");
-    }
-    Housing currentLocation = locations.stream().findFirst().orElse(null);
+    Housing currentLocation = this.findHousing(this.monkeyHousings.remove(monkey.getId()));
 
     if (currentLocation != null) {
+      currentLocation = this.writableHousing(currentLocation);
       if (currentLocation.getHousingType() == HousingType.ISOLATION) {
         ((Isolation) currentLocation).removeMonkey(monkey);
       } else if (currentLocation.getHousingType() == HousingType.ENCLOSURE) {
         ((Enclosure) currentLocation).removeMonkey(monkey);
+        this.forecast.enclosureChanged((Enclosure) currentLocation);
+      }
+      if (!currentLocation.isOccupied()) {
+        this.locations.vacate(this.locations.positionOf(currentLocation.getId()));
+        this.owned.remove(currentLocation);
+      }
+      this.signChanged(currentLocation);
+      if (!this.changeListeners.isEmpty()) {
+        this.publish(SanctuaryChange.monkeyUnplaced(monkey.getId()));
       }
       return true;
     }
     return false;
   }
+
+  /**
+   * Read-only list of the monkeys in a map, in key order, as views of {@code sanctuary}.
+   */
+  private static class MonkeyList extends AbstractList<Primate> {
+
+    private final JungleFriendsSanctuary sanctuary;
+    private final SharedTreeMap<Long, Primate> monkeys;
+
+    MonkeyList(JungleFriendsSanctuary sanctuary, SharedTreeMap<Long, Primate> monkeys) {
+      this.sanctuary = sanctuary;
+      this.monkeys = monkeys;
+    }
+
+    @Override
+    public Primate get(int index) {
+      return new MonkeyView(this.sanctuary, this.monkeys.getAt(index));
+    }
+
+    @Override
+    public int size() {
+      return this.monkeys.size();
+    }
+
+    @Override
+    public Iterator<Primate> iterator() {
+      Iterator<Primate> monkeys = this.monkeys.values();
+      return new Iterator<Primate>() {
+        @Override
+        public boolean hasNext() {
+          return monkeys.hasNext();
+        }
+
+        @Override
+        public Primate next() {
+          return new MonkeyView(MonkeyList.this.sanctuary, monkeys.next());
+        }
+      };
+    }
+  }
+
+  /**
+   * Read-only view of a monkey of a sanctuary. A sanctuary copies a monkey it shares with a fork
+   * before changing it, so the view looks the monkey up again by id once a copy has been made,
+   * and always reads what the sanctuary holds. Two views are equal if they show the same monkey
+   * of the same sanctuary.
+   */
+  private static final class MonkeyView implements Primate {
+
+    private final JungleFriendsSanctuary sanctuary;
+    private final Primate first;
+    private Primate monkey;
+    private volatile long generation;
+
+    MonkeyView(JungleFriendsSanctuary sanctuary, Primate monkey) {
+      this.sanctuary = sanctuary;
+      this.first = monkey;
+      this.monkey = monkey;
+      this.generation = sanctuary.monkeyGeneration;
+    }
+
+    private Primate current() {
+      if (this.generation != this.sanctuary.monkeyGeneration) {
+        synchronized (this.sanctuary) {
+          this.monkey = this.sanctuary.findMonkey(this.first.getId());
+          this.generation = this.sanctuary.monkeyGeneration;
+        }
+      }
+      return this.monkey;
+    }
+
+    @Override
+    public String getId() {
+      return this.first.getId();
+    }
+
+    @Override
+    public String getName() {
+      return this.first.getName();
+    }
+
+    @Override
+    public MonkeySize getSize() {
+      return this.current().getSize();
+    }
+
+    @Override
+    public double getWeight() {
+      return this.current().getWeight();
+    }
+
+    @Override
+    public int getAge() {
+      return this.current().getAge();
+    }
+
+    @Override
+    public Species getSpecies() {
+      return this.first.getSpecies();
+    }
+
+    @Override
+    public Sex getSex() {
+      return this.first.getSex();
+    }
+
+    @Override
+    public HealthStatus getHealthStatus() {
+      return this.current().getHealthStatus();
+    }
+
+    @Override
+    public FavoriteFood getFavoriteFood() {
+      return this.first.getFavoriteFood();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof MonkeyView && ((MonkeyView) other).sanctuary == this.sanctuary
+              && ((MonkeyView) other).getId().equals(this.getId());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.getId().hashCode();
+    }
+  }
+
+  /**
+   * Finds the enclosure residents with one of the given ids by splitting the housings into
+   * ranges that are searched in parallel.
+   */
+  private static class EnclosureResidentSearch extends RecursiveTask<List<Primate>> {
+
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 256;
+    private final HousingStore housings;
+    private final Set<String> monkeyIds;
+    private final int from;
+    private final int to;
+
+    EnclosureResidentSearch(HousingStore housings, Set<String> monkeyIds, int from, int to) {
+      this.housings = housings;
+      this.monkeyIds = monkeyIds;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected List<Primate> compute() {
+      if (this.to - this.from <= THRESHOLD) {
+        List<Primate> residents = new ArrayList<>();
+        for (int i = this.housings.nextOccupied(this.from); i >= 0 && i < this.to;
+             i = this.housings.nextOccupied(i + 1)) {
+          Housing housing = this.housings.get(i);
+          if (housing.getHousingType() == HousingType.ENCLOSURE) {
+            for (int j = 0; j < housing.getResidentCount(); j++) {
+              if (this.monkeyIds.contains(housing.getResident(j).getId())) {
+                residents.add(housing.getResident(j));
+              }
+            }
+          }
+        }
+        return residents;
+      }
+      int middle = (this.from + this.to) >>> 1;
+      EnclosureResidentSearch left = new EnclosureResidentSearch(this.housings, this.monkeyIds,
+              this.from, middle);
+      left.fork();
+      List<Primate> residents = new EnclosureResidentSearch(this.housings, this.monkeyIds, middle,
+              this.to).compute();
+      List<Primate> leftResidents = left.join();
+      leftResidents.addAll(residents);
+      return leftResidents;
+    }
+  }
+
+  private boolean isValidFinalState(Housing housing, List<Primate> residents) {
+    if (housing.getHousingType() == HousingType.ISOLATION) {
+      return residents.size() <= 1;
+    }
+    int usedCapacity = 0;
+    for (Primate monkey : residents) {
+      if (monkey.getSpecies() != residents.get(0).getSpecies()) {
+        return false;
+      }
+      usedCapacity += monkey.getSize().getSpace();
+    }
+    return residents.size() <= 1 || usedCapacity <= ((Enclosure) housing).getCapacity();
+  }
+
+  private void placeMonkey(Housing housing, Primate monkey) {
+    housing = this.writableHousing(this.findHousing(housing.getId()));
+    if (housing.getHousingType() == HousingType.ENCLOSURE) {
+      ((Enclosure) housing).addMonkey(monkey);
+      this.forecast.enclosureChanged((Enclosure) housing);
+    } else if (housing.getHousingType() == HousingType.ISOLATION) {
+      ((Isolation) housing).addMonkey(monkey);
+    }
+    int position = this.locations.positionOf(housing.getId());
+    this.locations.occupy(position, housing);
+    this.monkeyHousings.put(monkey.getId(), housing.getId());
+    this.signChanged(housing);
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.monkeyPlaced(monkey.getId(), position));
+    }
+  }
+
+  /**
+   * Moves every monkey to the housing at the position given for it. Every housing left or
+   * entered is stored, counted and re-signed once, and the moves are published as one change.
+   * The moves must already have been checked.
+   */
+  private void relocate(List<Primate> monkeys, int[] positions) {
+    if (monkeys.isEmpty()) {
+      return;
+    }
+    Map<Integer, Housing> housings = new LinkedHashMap<>();
+    for (Primate monkey : monkeys) {
+      int position = this.locations.positionOf(this.monkeyHousings.remove(monkey.getId()));
+      if (position >= 0) {
+        Housing housing = housings.computeIfAbsent(position,
+                key -> this.writableHousing(this.locations.get(key)));
+        if (housing.getHousingType() == HousingType.ISOLATION) {
+          ((Isolation) housing).removeMonkey(monkey);
+        } else {
+          ((Enclosure) housing).removeMonkey(monkey);
+        }
+      }
+    }
+    String[] monkeyIds = new String[monkeys.size()];
+    for (int i = 0; i < monkeyIds.length; i++) {
+      Primate monkey = monkeys.get(i);
+      Housing housing = housings.computeIfAbsent(positions[i],
+              key -> this.writableHousing(this.locations.get(key)));
+      if (housing.getHousingType() == HousingType.ISOLATION) {
+        ((Isolation) housing).addMonkey(monkey);
+      } else {
+        ((Enclosure) housing).addMonkey(monkey);
+      }
+      this.monkeyHousings.put(monkey.getId(), housing.getId());
+      monkeyIds[i] = monkey.getId();
+    }
+    for (Map.Entry<Integer, Housing> entry : housings.entrySet()) {
+      Housing housing = entry.getValue();
+      if (housing.isOccupied()) {
+        this.locations.occupy(entry.getKey(), housing);
+      } else {
+        this.locations.vacate(entry.getKey());
+        this.owned.remove(housing);
+      }
+      if (housing.getHousingType() == HousingType.ENCLOSURE) {
+        this.forecast.enclosureChanged((Enclosure) housing);
+      }
+      this.signChanged(housing);
+    }
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.monkeysMoved(monkeyIds, positions));
+    }
+  }
+
+  /**
+   * Moves {@code housing} to the newest sign version if it is an enclosure.
+   */
+  private void signChanged(Housing housing) {
+    if (housing.getHousingType() == HousingType.ENCLOSURE) {
+      Long previousVersion = this.signVersions.put(housing.getId(), ++this.signVersion);
+      if (previousVersion != null) {
+        this.changedSigns.remove(previousVersion);
+      }
+      this.changedSigns.put(this.signVersion, housing.getId());
+    }
+  }
+
+  private void registerMonkey(Monkey monkey) {
+    this.monkeys.put(this.monkeySequence, monkey);
+    this.monkeySequences.put(monkey.getId(), this.monkeySequence++);
+    this.monkeysById.put(monkey.getId(), monkey);
+    this.nameIndex.add(monkey);
+    this.counts.add(monkey);
+    MeasurementHistory history = new MeasurementHistory(monkey.getSpecies());
+    history.recordAll(this.clock.millis(), monkey);
+    this.histories.put(monkey.getId(), history);
+    this.owned.add(history);
+    this.writableSketch(this.weightSketches, monkey.getSpecies()).add(monkey.getWeight());
+    this.writableSketch(this.ageSketches, monkey.getSpecies()).add(monkey.getAge());
+    this.owned.add(monkey);
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.monkeyAdded(monkey));
+    }
+  }
+
+  private void retireMonkey(Primate monkey) {
+    this.monkeys.remove(this.monkeySequences.remove(monkey.getId()));
+    this.monkeysById.remove(monkey.getId());
+    this.counts.remove(monkey);
+    this.alumniMonkeys.put(this.monkeySequence, monkey);
+    this.alumniSequences.put(monkey.getId(), this.monkeySequence++);
+    this.writableSketch(this.weightSketches, monkey.getSpecies()).remove(monkey.getWeight());
+    this.writableSketch(this.ageSketches, monkey.getSpecies()).remove(monkey.getAge());
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.monkeyRetired(monkey.getId()));
+    }
+  }
+
+  private void changeHealthStatus(Monkey monkey, HealthStatus healthStatus) {
+    HealthStatus previousHealthStatus = monkey.getHealthStatus();
+    monkey.updateHealthStatus(healthStatus);
+    if (this.monkeysById.containsKey(monkey.getId())) {
+      this.counts.healthStatusChanged(previousHealthStatus, healthStatus);
+    }
+    this.recordMeasurement(Measurement.HEALTH_STATUS, monkey);
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.healthStatusUpdated(monkey.getId(), healthStatus));
+    }
+  }
+
+  private void changeSize(Monkey monkey, MonkeySize size) {
+    MonkeySize previousSize = monkey.getSize();
+    monkey.updateSize(size);
+    if (this.monkeysById.containsKey(monkey.getId())) {
+      this.counts.sizeChanged(monkey.getFavoriteFood(), previousSize, size);
+    }
+    this.residentChanged(monkey);
+    this.recordMeasurement(Measurement.SIZE, monkey);
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.sizeUpdated(monkey.getId(), size));
+    }
+  }
+
+  private void changeWeight(Monkey monkey, double weight) {
+    double previousWeight = monkey.getWeight();
+    monkey.updateWeight(weight);
+    this.recordMeasurement(Measurement.WEIGHT, monkey);
+    if (this.monkeysById.containsKey(monkey.getId())) {
+      QuantileSketch sketch = this.writableSketch(this.weightSketches, monkey.getSpecies());
+      sketch.remove(previousWeight);
+      sketch.add(weight);
+    }
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.weightUpdated(monkey.getId(), weight));
+    }
+  }
+
+  private void changeAge(Monkey monkey, int age) {
+    int previousAge = monkey.getAge();
+    monkey.updateAge(age);
+    this.residentChanged(monkey);
+    this.recordMeasurement(Measurement.AGE, monkey);
+    if (this.monkeysById.containsKey(monkey.getId())) {
+      QuantileSketch sketch = this.writableSketch(this.ageSketches, monkey.getSpecies());
+      sketch.remove(previousAge);
+      sketch.add(age);
+    }
+    if (!this.changeListeners.isEmpty()) {
+      this.publish(SanctuaryChange.ageUpdated(monkey.getId(), age));
+    }
+  }
+
+  /**
+   * Tells the enclosure of {@code monkey}, if any, that the monkey has changed in place.
+   */
+  private void residentChanged(Monkey monkey) {
+    Housing housing = this.findHousing(this.monkeyHousings.get(monkey.getId()));
+    if (housing != null && housing.getHousingType() == HousingType.ENCLOSURE) {
+      Enclosure enclosure = (Enclosure) this.writableHousing(housing);
+      enclosure.residentChanged();
+      this.forecast.enclosureChanged(enclosure);
+    }
+  }
+
+  private void enclosuresAdded(int[] capacities, int count) {
+    for (int i = 0; i < count; i++) {
+      this.forecast.enclosureAdded(capacities[i]);
+    }
+  }
+
+  /**
+   * Tells the listeners of {@code change}. A listener may fork this sanctuary, so a change is
+   * published only once everything it stands for has been applied.
+   */
+  private void publish(SanctuaryChange change) {
+    for (Consumer<SanctuaryChange> listener : this.changeListeners) {
+      listener.accept(change);
+    }
+  }
+
+  private Primate findMonkey(String monkeyId) {
+    Primate monkey = this.monkeysById.get(monkeyId);
+    if (monkey == null) {
+      Long sequence = this.alumniSequences.get(monkeyId);
+      monkey = sequence == null ? null : this.alumniMonkeys.get(sequence);
+    }
+    if (monkey == null) {
+      throw new IllegalArgumentException("Monkey " + monkeyId + " does not exist in sanctuary.");
+    }
+    return monkey;
+  }
+
+  private Map<Species, QuantileSketch> getSketches(Measurement measurement) {
+    if (measurement == Measurement.WEIGHT) {
+      return this.weightSketches;
+    } else if (measurement == Measurement.AGE) {
+      return this.ageSketches;
+    }
+    throw new IllegalArgumentException("Quantiles are only kept for " + Measurement.WEIGHT +
+            " and " + Measurement.AGE + ". Measurement: " + measurement);
+  }
+
+  private QuantileSketch writableSketch(Map<Species, QuantileSketch> sketches, Species species) {
+    QuantileSketch sketch = sketches.get(species);
+    if (!this.owned.contains(sketch)) {
+      sketch = new QuantileSketch(sketch);
+      this.owned.add(sketch);
+      sketches.put(species, sketch);
+    }
+    return sketch;
+  }
+
+  private void recordMeasurement(Measurement measurement, Primate monkey) {
+    MeasurementHistory history = this.histories.get(monkey.getId());
+    if (history == null) {
+      return;
+    }
+    if (!this.owned.contains(history)) {
+      history = new MeasurementHistory(history);
+      this.owned.add(history);
+      this.histories.put(monkey.getId(), history);
+    }
+    history.record(this.clock.millis(), measurement, this.resolveMonkey(monkey));
+  }
+
+  private MonkeyLocation getMonkeyLocation(Primate monkey) {
+    return new MonkeyLocation(monkey.getId(), monkey.getName(),
+            this.findHousing(this.monkeyHousings.get(monkey.getId())),
+            !this.monkeysById.containsKey(monkey.getId()));
+  }
+
+  private Housing findHousing(String housingId) {
+    int position = this.locations.positionOf(housingId);
+    return position < 0 ? null : this.locations.get(position);
+  }
+
+  private static void checkPageSize(int pageSize) {
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("Page size must be positive. Page size: " + pageSize);
+    }
+  }
+
+  /**
+   * Returns the index a positional cursor continues from.
+   */
+  private static int parseCursor(String cursor, int size) {
+    if (cursor == null) {
+      return 0;
+    }
+    try {
+      int index = Integer.parseInt(cursor);
+      if (index >= 0 && index <= size) {
+        return index;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+  }
+
+  private static Housing copyHousing(Housing housing) {
+    if (housing.getHousingType() == HousingType.ENCLOSURE) {
+      return ((Enclosure) housing).copy();
+    }
+    return ((Isolation) housing).copy();
+  }
+
+  private Primate resolveMonkey(Primate monkey) {
+    if (monkey == null) {
+      return null;
+    }
+    if (monkey instanceof MonkeyView) {
+      monkey = ((MonkeyView) monkey).current();
+    }
+    Primate current = this.monkeysById.get(monkey.getId());
+    return current == null ? monkey : current;
+  }
+
+  /**
+   * Returns the housing this sanctuary may change in place, copying it first if it is still
+   * shared with a fork. An empty housing is not kept by the store, so it is taken as it is.
+   */
+  private Housing writableHousing(Housing housing) {
+    if (this.owned.contains(housing)) {
+      return housing;
+    }
+    int position = this.locations.positionOf(housing.getId());
+    if (!this.locations.isOccupied(position)) {
+      this.owned.add(housing);
+      return housing;
+    }
+    Housing copy = copyHousing(housing);
+    this.owned.add(copy);
+    this.locations.occupy(position, copy);
+    return copy;
+  }
+
+  /**
+   * Returns the monkey this sanctuary may change in place, copying it first if it is still
+   * shared with a fork. Alumni are copied the same way. A monkey that was never in this
+   * sanctuary is returned as it is.
+   */
+  private Monkey writableMonkey(Primate monkey) {
+    Primate current = this.resolveMonkey(monkey);
+    SharedTreeMap<Long, Primate> monkeys = this.monkeys;
+    Long sequence = this.monkeySequences.get(current.getId());
+    if (sequence == null) {
+      monkeys = this.alumniMonkeys;
+      sequence = this.alumniSequences.get(current.getId());
+      if (sequence == null) {
+        return (Monkey) current;
+      }
+      current = monkeys.get(sequence);
+    }
+    if (this.owned.contains(current)) {
+      return (Monkey) current;
+    }
+    Monkey copy = ((Monkey) current).copy();
+    this.owned.add(copy);
+    monkeys.put(sequence, copy);
+    if (monkeys == this.alumniMonkeys) {
+      this.monkeyGeneration++;
+      return copy;
+    }
+    this.monkeysById.put(copy.getId(), copy);
+    Housing housing = this.findHousing(this.monkeyHousings.get(copy.getId()));
+    if (housing != null) {
+      housing = this.writableHousing(housing);
+      if (housing.getHousingType() == HousingType.ENCLOSURE) {
+        ((Enclosure) housing).replaceMonkey(copy);
+      } else {
+        ((Isolation) housing).addMonkey(copy);
+      }
+    }
+    this.monkeyGeneration++;
+    return copy;
+  }
 }
@@ -0,0 +1,85 @@
+package sanctuary;
+
+import enums.Measurement;
+import enums.Species;
+
+/**
+ * Every recorded weight, age, size and health status of one monkey. Weights are kept in
+ * thousandths of a pound so that every measurement is stored as a whole number.
+ */
+class MeasurementHistory {
+
+  private static final double WEIGHT_SCALE = 1000;
+
+  private final Species species;
+  private final DeltaSeries[] series;
+
+  MeasurementHistory(Species species) {
+    this.species = species;
+    this.series = new DeltaSeries[Measurement.values().length];
+    for (int i = 0; i < this.series.length; i++) {
+      this.series[i] = new DeltaSeries();
+    }
+  }
+
+  MeasurementHistory(MeasurementHistory history) {
+    this.species = history.species;
+    this.series = new DeltaSeries[history.series.length];
+    for (int i = 0; i < this.series.length; i++) {
+      this.series[i] = new DeltaSeries(history.series[i]);
+    }
+  }
+
+  Species getSpecies() {
+    return this.species;
+  }
+
+  /**
+   * Records every measurement of {@code monkey} at {@code time}.
+   */
+  void recordAll(long time, Primate monkey) {
+    this.record(time, Measurement.WEIGHT, monkey);
+    this.record(time, Measurement.AGE, monkey);
+    this.record(time, Measurement.SIZE, monkey);
+    this.record(time, Measurement.HEALTH_STATUS, monkey);
+  }
+
+  /**
+   * Records the current value of {@code measurement} of {@code monkey} at {@code time}.
+   */
+  void record(long time, Measurement measurement, Primate monkey) {
+    long value;
+    switch (measurement) {
+      case WEIGHT:
+        value = Math.round(monkey.getWeight() * WEIGHT_SCALE);
+        break;
+      case AGE:
+        value = monkey.getAge();
+        break;
+      case SIZE:
+        value = monkey.getSize().ordinal();
+        break;
+      default:
+        value = monkey.getHealthStatus() == null ? -1 : monkey.getHealthStatus().ordinal();
+        break;
+    }
+    this.series[measurement.ordinal()].append(time, value);
+  }
+
+  MeasurementSeries read(Measurement measurement, long fromTime, long toTime) {
+    MeasurementSeries samples = new MeasurementSeries();
+    double scale = scale(measurement);
+    this.series[measurement.ordinal()].scan(fromTime, toTime,
+        (time, value) -> samples.add(time, value / scale));
+    return samples;
+  }
+
+  void aggregate(Measurement measurement, long fromTime, long toTime,
+                 MeasurementStatistics.Builder statistics) {
+    this.series[measurement.ordinal()].aggregate(fromTime, toTime, statistics);
+  }
+
+  static double scale(Measurement measurement) {
+    return measurement == Measurement.WEIGHT ? WEIGHT_SCALE : 1;
+  }
+}
@@ -0,0 +1,58 @@
+package sanctuary;
+
+import java.util.Arrays;
+
+/**
+ * The samples of one measurement of a monkey, oldest first. Times are milliseconds since the
+ * epoch. Weights are in pounds, ages in years, and sizes and health statuses are the ordinal of
+ * their {@link enums.MonkeySize} or {@link enums.HealthStatus}.
+ */
+public class MeasurementSeries {
+
+  private long[] times;
+  private double[] values;
+  private int size;
+
+  MeasurementSeries() {
+    this.times = new long[8];
+    this.values = new double[8];
+  }
+
+  void add(long time, double value) {
+    if (this.size == this.times.length) {
+      this.times = Arrays.copyOf(this.times, this.size * 2);
+      this.values = Arrays.copyOf(this.values, this.size * 2);
+    }
+    this.times[this.size] = time;
+    this.values[this.size++] = value;
+  }
+
+  public int getSize() {
+    return this.size;
+  }
+
+  public long getTime(int index) {
+    this.checkIndex(index);
+    return this.times[index];
+  }
+
+  public double getValue(int index) {
+    this.checkIndex(index);
+    return this.values[index];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder series = new StringBuilder("[");
+    for (int i = 0; i < this.size; i++) {
+      series.append(i == 0 ? "" : ", ").append(this.times[i]).append('=').append(this.values[i]);
+    }
+    return series.append(']').toString();
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+  }
+}
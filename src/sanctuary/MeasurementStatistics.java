@@ -0,0 +1,91 @@
+package sanctuary;
+
+/**
+ * Count, minimum, maximum and mean of the samples of a measurement.
+ */
+public class MeasurementStatistics {
+
+  private final long count;
+  private final double min;
+  private final double max;
+  private final double mean;
+
+  private MeasurementStatistics(long count, double min, double max, double mean) {
+    this.count = count;
+    this.min = min;
+    this.max = max;
+    this.mean = mean;
+  }
+
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the smallest sample, or {@code NaN} if there are no samples.
+   *
+   * @return minimum
+   */
+  public double getMin() {
+    return this.min;
+  }
+
+  /**
+   * Returns the largest sample, or {@code NaN} if there are no samples.
+   *
+   * @return maximum
+   */
+  public double getMax() {
+    return this.max;
+  }
+
+  /**
+   * Returns the mean of the samples, or {@code NaN} if there are no samples.
+   *
+   * @return mean
+   */
+  public double getMean() {
+    return this.mean;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + this.count + ", min=" + this.min + ", max=" + this.max + ", mean="
+            + this.mean;
+  }
+
+  /**
+   * Accumulates the raw encoded samples of a {@link DeltaSeries}.
+   */
+  static class Builder {
+
+    private final double scale;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    Builder(double scale) {
+      this.scale = scale;
+    }
+
+    void add(long value) {
+      this.add(1, value, value, value);
+    }
+
+    void add(long count, long sum, long min, long max) {
+      this.count += count;
+      this.sum += sum;
+      this.min = Math.min(this.min, min);
+      this.max = Math.max(this.max, max);
+    }
+
+    MeasurementStatistics build() {
+      if (this.count == 0) {
+        return new MeasurementStatistics(0, Double.NaN, Double.NaN, Double.NaN);
+      }
+      return new MeasurementStatistics(this.count, this.min / this.scale, this.max / this.scale,
+              this.sum / this.scale / this.count);
+    }
+  }
+}
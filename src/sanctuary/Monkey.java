@@ -44,6 +44,27 @@ public class Monkey implements Primate {
    */
   Monkey(String name, MonkeySize size, double weight, int age, Species species, Sex sex,
          FavoriteFood favoriteFood, HealthStatus healthStatus) throws IllegalArgumentException {
+    this(null, name, size, weight, age, species, sex, favoriteFood, healthStatus);
+  }
+
+  /**
+   * Constructs a monkey with a given id, as when applying the changes of another sanctuary.
+   * Later monkeys are numbered after {@code id}.
+   *
+   * @param id           the id of the monkey, or {@code null} for the next free id.
+   * @param name         the name of the monkey.
+   * @param size         the size of the monkey.
+   * @param weight       the weight of the monkey.
+   * @param age          the age of the monkey.
+   * @param species      the species of the monkey.
+   * @param sex          the sex of the monkey.
+   * @param favoriteFood the favorite food of the monkey.
+   * @param healthStatus the health status of the monkey.
+   * @throws IllegalArgumentException under the same conditions as the other constructor.
+   */
+  Monkey(String id, String name, MonkeySize size, double weight, int age, Species species,
+         Sex sex, FavoriteFood favoriteFood, HealthStatus healthStatus)
+          throws IllegalArgumentException {
     if (name == null || name.isEmpty()) {
       throw new IllegalArgumentException("Monkey's name cannot be null or empty.");
     }
@@ -62,9 +83,18 @@ public class Monkey implements Primate {
     if (favoriteFood == null) {
       throw new IllegalArgumentException("Monkey's favorite food cannot be null.");
     }
-    monkeyNumber += 1;
-    this.id = "MON" + monkeyNumber;
-    this.name = name;
+    if (id == null) {
+      monkeyNumber += 1;
+      this.id = "MON" + monkeyNumber;
+    } else {
+      if (id.startsWith("MON") && id.length() > 3 && id.length() < 13
+              && id.substring(3).chars().allMatch(Character::isDigit)) {
+        monkeyNumber = (int) Math.max(monkeyNumber, Math.min(Integer.MAX_VALUE,
+                Long.parseLong(id.substring(3))));
+      }
+      this.id = id;
+    }
+    this.name = StringPool.name(name);
     this.size = size;
     this.weight = weight;
     this.species = species;
@@ -74,6 +104,27 @@ public class Monkey implements Primate {
     this.age = age;
   }
 
+  private Monkey(Monkey monkey) {
+    this.id = monkey.id;
+    this.name = monkey.name;
+    this.size = monkey.size;
+    this.weight = monkey.weight;
+    this.species = monkey.species;
+    this.sex = monkey.sex;
+    this.favoriteFood = monkey.favoriteFood;
+    this.healthStatus = monkey.healthStatus;
+    this.age = monkey.age;
+  }
+
+  /**
+   * Returns a copy of the monkey with the same id.
+   *
+   * @return copy of the monkey
+   */
+  Monkey copy() {
+    return new Monkey(this);
+  }
+
   @Override
   public String getId() {
     return this.id;
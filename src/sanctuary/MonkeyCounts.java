@@ -0,0 +1,106 @@
+package sanctuary;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Species;
+
+/**
+ * Counts of the current monkeys of a sanctuary by species, size and health status, and the food
+ * they need by favorite food. Counts are kept in arrays indexed by enum ordinal, so reading them
+ * boxes nothing. A sanctuary keeps its counts up to date as monkeys change and hands out copies.
+ */
+public final class MonkeyCounts {
+
+  private static final MonkeySize[] SIZES = MonkeySize.values();
+
+  private final int[] speciesCounts;
+  private final int[] sizeCounts;
+  private final int[] healthCounts;
+  private final long[] foodRequired;
+  private int total;
+
+  MonkeyCounts() {
+    this.speciesCounts = new int[Species.values().length];
+    this.sizeCounts = new int[SIZES.length];
+    this.healthCounts = new int[HealthStatus.values().length];
+    this.foodRequired = new long[FavoriteFood.values().length];
+  }
+
+  MonkeyCounts(MonkeyCounts counts) {
+    this.speciesCounts = counts.speciesCounts.clone();
+    this.sizeCounts = counts.sizeCounts.clone();
+    this.healthCounts = counts.healthCounts.clone();
+    this.foodRequired = counts.foodRequired.clone();
+    this.total = counts.total;
+  }
+
+  void add(Primate monkey) {
+    this.count(monkey, 1);
+  }
+
+  void remove(Primate monkey) {
+    this.count(monkey, -1);
+  }
+
+  void sizeChanged(FavoriteFood favoriteFood, MonkeySize previousSize, MonkeySize size) {
+    this.sizeCounts[previousSize.ordinal()]--;
+    this.sizeCounts[size.ordinal()]++;
+    this.foodRequired[favoriteFood.ordinal()] +=
+            size.getFoodRequired() - previousSize.getFoodRequired();
+  }
+
+  void healthStatusChanged(HealthStatus previousHealthStatus, HealthStatus healthStatus) {
+    this.healthCounts[previousHealthStatus.ordinal()]--;
+    this.healthCounts[healthStatus.ordinal()]++;
+  }
+
+  private void count(Primate monkey, int delta) {
+    this.speciesCounts[monkey.getSpecies().ordinal()] += delta;
+    this.sizeCounts[monkey.getSize().ordinal()] += delta;
+    this.healthCounts[monkey.getHealthStatus().ordinal()] += delta;
+    this.foodRequired[monkey.getFavoriteFood().ordinal()] +=
+            delta * monkey.getSize().getFoodRequired();
+    this.total += delta;
+  }
+
+  public int getTotal() {
+    return this.total;
+  }
+
+  public int getCount(Species species) {
+    return this.speciesCounts[species.ordinal()];
+  }
+
+  public int getCount(MonkeySize size) {
+    return this.sizeCounts[size.ordinal()];
+  }
+
+  public int getCount(HealthStatus healthStatus) {
+    return this.healthCounts[healthStatus.ordinal()];
+  }
+
+  /**
+   * Returns the food needed by the monkeys whose favorite food is {@code favoriteFood}, as in
+   * {@link Sanctuary#getFavFoodShoppingList()}.
+   *
+   * @param favoriteFood the favorite food
+   * @return grams of the food needed
+   */
+  public long getFoodRequired(FavoriteFood favoriteFood) {
+    return this.foodRequired[favoriteFood.ordinal()];
+  }
+
+  /**
+   * Returns the space the monkeys need in an enclosure.
+   *
+   * @return square meters needed
+   */
+  public long getSpaceRequired() {
+    long space = 0;
+    for (int i = 0; i < SIZES.length; i++) {
+      space += (long) this.sizeCounts[i] * SIZES[i].getSpace();
+    }
+    return space;
+  }
+}
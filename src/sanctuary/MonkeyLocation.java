@@ -0,0 +1,65 @@
+package sanctuary;
+
+import enums.HousingType;
+
+/**
+ * Where a monkey found by a search of the sanctuary currently lives.
+ */
+public class MonkeyLocation {
+
+  private final String monkeyId;
+  private final String name;
+  private final String housingId;
+  private final HousingType housingType;
+  private final boolean alumni;
+
+  MonkeyLocation(String monkeyId, String name, Housing housing, boolean alumni) {
+    this.monkeyId = monkeyId;
+    this.name = name;
+    this.housingId = housing == null ? null : housing.getId();
+    this.housingType = housing == null ? null : housing.getHousingType();
+    this.alumni = alumni;
+  }
+
+  public String getMonkeyId() {
+    return this.monkeyId;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Returns the id of the housing the monkey lives in, or {@code null} if the monkey is an
+   * alumni or has not been housed.
+   *
+   * @return housing id
+   */
+  public String getHousingId() {
+    return this.housingId;
+  }
+
+  /**
+   * Returns the type of the housing the monkey lives in, or {@code null} if the monkey is an
+   * alumni or has not been housed.
+   *
+   * @return housing type
+   */
+  public HousingType getHousingType() {
+    return this.housingType;
+  }
+
+  /**
+   * Returns whether the monkey has left the sanctuary.
+   *
+   * @return {@code true} if the monkey is an alumni
+   */
+  public boolean isAlumni() {
+    return this.alumni;
+  }
+
+  @Override
+  public String toString() {
+    return this.name + "(" + this.monkeyId + ")=" + (this.alumni ? "ALUMNI" : this.housingId);
+  }
+}
@@ -0,0 +1,92 @@
+package sanctuary;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Sorted index from monkey names to every monkey, current or alumni, with that name.
+ * Names are matched without regard to case. Exact lookups and prefix scans both take
+ * logarithmic time in the number of monkeys, plus the number of matches. A fork of the index
+ * shares its entries until either side adds to it.
+ */
+class NameIndex {
+
+  private static final Comparator<Key> KEY_ORDER =
+          Comparator.comparing((Key key) -> key.name).thenComparingLong(key -> key.sequence);
+
+  private final SharedTreeMap<Key, Primate> monkeysByName;
+  private long sequence;
+
+  NameIndex() {
+    this.monkeysByName = new SharedTreeMap<>(KEY_ORDER);
+  }
+
+  private NameIndex(NameIndex nameIndex) {
+    this.monkeysByName = nameIndex.monkeysByName.fork();
+    this.sequence = nameIndex.sequence;
+  }
+
+  NameIndex fork() {
+    return new NameIndex(this);
+  }
+
+  void add(Primate monkey) {
+    this.monkeysByName.put(new Key(key(monkey.getName()), this.sequence++), monkey);
+  }
+
+  List<Primate> find(String name) {
+    String key = key(name);
+    List<Primate> matches = new ArrayList<>(1);
+    Iterator<Map.Entry<Key, Primate>> entries =
+            this.monkeysByName.entries(new Key(key, Long.MIN_VALUE), true);
+    while (entries.hasNext()) {
+      Map.Entry<Key, Primate> entry = entries.next();
+      if (!entry.getKey().name.equals(key)) {
+        break;
+      }
+      matches.add(entry.getValue());
+    }
+    return matches;
+  }
+
+  /**
+   * Calls {@code action} with every monkey whose name starts with {@code prefix}, in name order,
+   * until {@code limit} monkeys have been visited.
+   */
+  void forEachWithPrefix(String prefix, int limit, Consumer<Primate> action) {
+    String key = key(prefix);
+    Iterator<Map.Entry<Key, Primate>> entries =
+            this.monkeysByName.entries(new Key(key, Long.MIN_VALUE), true);
+    for (int visited = 0; visited < limit && entries.hasNext(); visited++) {
+      Map.Entry<Key, Primate> entry = entries.next();
+      if (!entry.getKey().name.startsWith(key)) {
+        return;
+      }
+      action.accept(entry.getValue());
+    }
+  }
+
+  private static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Name of a monkey, told apart from the same name of other monkeys by the order they were
+   * added in.
+   */
+  private static class Key {
+
+    private final String name;
+    private final long sequence;
+
+    Key(String name, long sequence) {
+      this.name = name;
+      this.sequence = sequence;
+    }
+  }
+}
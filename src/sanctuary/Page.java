@@ -0,0 +1,50 @@
+package sanctuary;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a paged listing of the sanctuary, with the cursor to ask for the next page.
+ *
+ * @param <T> type of the listed items
+ */
+public class Page<T> {
+
+  private final List<T> items;
+  private final String nextCursor;
+
+  /**
+   * Constructs a page, as when a listing is read from another process.
+   *
+   * @param items      the items on the page
+   * @param nextCursor cursor to ask for the next page, or {@code null} if this is the last page
+   */
+  public Page(List<T> items, String nextCursor) {
+    this.items = Collections.unmodifiableList(items);
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Returns the items on this page. A page can hold fewer items than asked for when a filter
+   * matches few of the items looked at, even if more pages follow.
+   *
+   * @return items on the page
+   */
+  public List<T> getItems() {
+    return this.items;
+  }
+
+  /**
+   * Returns the cursor that continues the listing after this page, or {@code null} if this is
+   * the last page.
+   *
+   * @return cursor of the next page
+   */
+  public String getNextCursor() {
+    return this.nextCursor;
+  }
+
+  public boolean hasMore() {
+    return this.nextCursor != null;
+  }
+}
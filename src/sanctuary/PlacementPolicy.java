@@ -0,0 +1,212 @@
+package sanctuary;
+
+import java.util.Arrays;
+import java.util.List;
+
+import enums.FavoriteFood;
+import enums.Sex;
+
+/**
+ * Chooses between the enclosures a monkey may be placed in by scoring them with a set of
+ * {@link PlacementRule}s. When the policy is built, the rules are evaluated for every
+ * combination of sex, age band and favorite food and compiled into two tables: one scoring a
+ * monkey next to a resident, and one scoring the space left free. Every enclosure keeps the sum
+ * of its residents' rows until its residents change, so scoring an enclosure is then one lookup
+ * in that sum plus one for the free space.
+ */
+public final class PlacementPolicy {
+
+  private static final int MAX_AGE = 127;
+  private static final int MAX_FREE_SPACE = 1024;
+  private static final int FOODS = FavoriteFood.values().length;
+
+  private final byte[] ageBands;
+  private final int bandCount;
+  private final int codeCount;
+  private final int[] pairScores;
+  private final int[] freeSpaceScores;
+
+  private PlacementPolicy(int[] ageBandBounds, PlacementRule[] rules) {
+    this.bandCount = ageBandBounds.length + 1;
+    this.ageBands = new byte[MAX_AGE + 1];
+    for (int age = 0, band = 0; age <= MAX_AGE; age++) {
+      while (band < ageBandBounds.length && age >= ageBandBounds[band]) {
+        band++;
+      }
+      this.ageBands[age] = (byte) band;
+    }
+    this.codeCount = Sex.values().length * this.bandCount * FOODS;
+    this.pairScores = new int[this.codeCount * this.codeCount];
+    for (int code = 0; code < this.codeCount; code++) {
+      for (int residentCode = 0; residentCode < this.codeCount; residentCode++) {
+        int score = 0;
+        for (PlacementRule rule : rules) {
+          score += rule.scorePair(this.sexOf(code), this.bandOf(code), this.foodOf(code),
+                  this.sexOf(residentCode), this.bandOf(residentCode), this.foodOf(residentCode));
+        }
+        this.pairScores[code * this.codeCount + residentCode] = score;
+      }
+    }
+    this.freeSpaceScores = new int[MAX_FREE_SPACE + 1];
+    for (int freeSpace = 0; freeSpace <= MAX_FREE_SPACE; freeSpace++) {
+      for (PlacementRule rule : rules) {
+        this.freeSpaceScores[freeSpace] += rule.scoreFreeSpace(freeSpace);
+      }
+    }
+  }
+
+  /**
+   * Builds a policy from {@code rules}. Ages are grouped into bands at the given bounds, so
+   * bounds of 5 and 15 give the bands below 5, 5 to 14 and 15 and older.
+   *
+   * @param ageBandBounds first age of every band but the youngest, in increasing order
+   * @param rules         the rules, whose scores are added up
+   * @return the policy
+   * @throws IllegalArgumentException if the bounds are not increasing ages or a rule is
+   *                                  {@code null}.
+   */
+  public static PlacementPolicy of(int[] ageBandBounds, PlacementRule... rules) {
+    if (ageBandBounds == null || rules == null || Arrays.asList(rules).contains(null)) {
+      throw new IllegalArgumentException("Age bands and rules cannot be null.");
+    }
+    for (int i = 0; i < ageBandBounds.length; i++) {
+      if (ageBandBounds[i] <= (i == 0 ? 0 : ageBandBounds[i - 1]) || ageBandBounds[i] > MAX_AGE) {
+        throw new IllegalArgumentException("Age band bounds must be increasing ages up to " +
+                MAX_AGE + ". Bounds: " + Arrays.toString(ageBandBounds));
+      }
+    }
+    return new PlacementPolicy(ageBandBounds.clone(), rules.clone());
+  }
+
+  /**
+   * Prefers enclosures where the monkey evens out the sexes: {@code weight} for every resident
+   * of the other sex and minus {@code weight} for every resident of the same sex.
+   *
+   * @param weight importance of the rule
+   * @return the rule
+   */
+  public static PlacementRule sexBalance(int weight) {
+    return new PlacementRule() {
+      @Override
+      public int scorePair(Sex sex, int ageBand, FavoriteFood food, Sex residentSex,
+                           int residentAgeBand, FavoriteFood residentFood) {
+        return sex == residentSex ? -weight : weight;
+      }
+    };
+  }
+
+  /**
+   * Prefers enclosures of monkeys of a similar age: {@code weight} for every resident in the same
+   * age band, less {@code weight} for every band a resident is further away.
+   *
+   * @param weight importance of the rule
+   * @return the rule
+   */
+  public static PlacementRule ageGrouping(int weight) {
+    return new PlacementRule() {
+      @Override
+      public int scorePair(Sex sex, int ageBand, FavoriteFood food, Sex residentSex,
+                           int residentAgeBand, FavoriteFood residentFood) {
+        return weight - weight * Math.abs(ageBand - residentAgeBand);
+      }
+    };
+  }
+
+  /**
+   * Prefers enclosures of monkeys with the same favorite food, so fewer feeding rounds are
+   * needed: {@code weight} for every resident with the same favorite food.
+   *
+   * @param weight importance of the rule
+   * @return the rule
+   */
+  public static PlacementRule foodClustering(int weight) {
+    return new PlacementRule() {
+      @Override
+      public int scorePair(Sex sex, int ageBand, FavoriteFood food, Sex residentSex,
+                           int residentAgeBand, FavoriteFood residentFood) {
+        return food == residentFood ? weight : 0;
+      }
+    };
+  }
+
+  /**
+   * Keeps room for the residents to grow: {@code weight} if at least {@code freeSpace} square
+   * meters stay free, and {@code weight} less for every square meter short of that.
+   *
+   * @param freeSpace square meters to keep free
+   * @param weight    importance of the rule
+   * @return the rule
+   */
+  public static PlacementRule growthHeadroom(int freeSpace, int weight) {
+    return new PlacementRule() {
+      @Override
+      public int scoreFreeSpace(int space) {
+        return space >= freeSpace ? weight : weight - weight * (freeSpace - space);
+      }
+    };
+  }
+
+  /**
+   * Scores placing {@code monkey} in {@code enclosure}. The pair scores of the residents are
+   * summed once per enclosure for every kind of monkey, so this is two table lookups.
+   */
+  int score(Primate monkey, Enclosure enclosure) {
+    int freeSpace = Math.max(0, Math.min(MAX_FREE_SPACE,
+            enclosure.getAvailableCapacity() - monkey.getSize().getSpace()));
+    if (!enclosure.isOccupied()) {
+      return this.freeSpaceScores[freeSpace];
+    }
+    return enclosure.getPlacementProfile(this).scores[this.codeOf(monkey)]
+            + this.freeSpaceScores[freeSpace];
+  }
+
+  /**
+   * Sums the pair scores of {@code residents} for every kind of monkey that could join them.
+   */
+  Profile profile(List<Primate> residents) {
+    int[] scores = new int[this.codeCount];
+    for (int i = 0; i < residents.size(); i++) {
+      int residentCode = this.codeOf(residents.get(i));
+      for (int code = 0; code < this.codeCount; code++) {
+        scores[code] += this.pairScores[code * this.codeCount + residentCode];
+      }
+    }
+    return new Profile(this, scores);
+  }
+
+  private int codeOf(Primate monkey) {
+    int band = this.ageBands[Math.max(0, Math.min(MAX_AGE, monkey.getAge()))];
+    return (monkey.getSex().ordinal() * this.bandCount + band) * FOODS
+            + monkey.getFavoriteFood().ordinal();
+  }
+
+  /**
+   * The summed pair scores of an enclosure's residents under one policy.
+   */
+  static final class Profile {
+
+    private final PlacementPolicy policy;
+    private final int[] scores;
+
+    private Profile(PlacementPolicy policy, int[] scores) {
+      this.policy = policy;
+      this.scores = scores;
+    }
+
+    boolean isOf(PlacementPolicy policy) {
+      return this.policy == policy;
+    }
+  }
+
+  private Sex sexOf(int code) {
+    return Sex.values()[code / (this.bandCount * FOODS)];
+  }
+
+  private int bandOf(int code) {
+    return code / FOODS % this.bandCount;
+  }
+
+  private FavoriteFood foodOf(int code) {
+    return FavoriteFood.values()[code % FOODS];
+  }
+}
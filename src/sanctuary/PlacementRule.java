@@ -0,0 +1,41 @@
+package sanctuary;
+
+import enums.FavoriteFood;
+import enums.Sex;
+
+/**
+ * One consideration of a {@link PlacementPolicy}. A rule scores how well a monkey fits next to
+ * each resident of an enclosure and how well the space left free after placing it fits. Rules
+ * are only asked when a policy is built, for every combination of attribute values, so they may
+ * be as slow as they like.
+ */
+public interface PlacementRule {
+
+  /**
+   * Returns the score of housing a monkey next to one resident. Age bands are numbered from 0
+   * for the youngest band of the policy.
+   *
+   * @param sex             sex of the monkey being placed
+   * @param ageBand         age band of the monkey being placed
+   * @param food            favorite food of the monkey being placed
+   * @param residentSex     sex of the resident
+   * @param residentAgeBand age band of the resident
+   * @param residentFood    favorite food of the resident
+   * @return the score, higher is better
+   */
+  public default int scorePair(Sex sex, int ageBand, FavoriteFood food, Sex residentSex,
+                               int residentAgeBand, FavoriteFood residentFood) {
+    return 0;
+  }
+
+  /**
+   * Returns the score of an enclosure having {@code freeSpace} square meters left after the
+   * monkey is placed in it.
+   *
+   * @param freeSpace space left free, never negative
+   * @return the score, higher is better
+   */
+  public default int scoreFreeSpace(int freeSpace) {
+    return 0;
+  }
+}
@@ -0,0 +1,147 @@
+package sanctuary;
+
+/**
+ * A mergeable quantile sketch over positive values with a fixed relative accuracy. Values are
+ * counted in logarithmically sized buckets between a fixed minimum and maximum, so memory is
+ * bounded. Unlike sampling sketches, values can also be removed, which lets the sketch follow a
+ * population as it changes. Every quantile is within the relative accuracy of a value that was
+ * added.
+ */
+public class QuantileSketch {
+
+  private final double relativeAccuracy;
+  private final double minValue;
+  private final double maxValue;
+  private final double gamma;
+  private final double logGamma;
+  private final int minIndex;
+  private final int[] counts;
+  private long zeroCount;
+  private long count;
+
+  /**
+   * Constructs an empty sketch.
+   *
+   * @param relativeAccuracy the relative accuracy of quantiles, between 0 and 1 exclusive
+   * @param minValue         the smallest value told apart from zero
+   * @param maxValue         the largest value told apart from larger ones
+   * @throws IllegalArgumentException if the accuracy or range is invalid.
+   */
+  public QuantileSketch(double relativeAccuracy, double minValue, double maxValue) {
+    if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+      throw new IllegalArgumentException("Relative accuracy must be between 0 and 1.");
+    }
+    if (minValue <= 0 || maxValue <= minValue) {
+      throw new IllegalArgumentException("Sketch range must be positive and not empty.");
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.minValue = minValue;
+    this.maxValue = maxValue;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(this.gamma);
+    this.minIndex = (int) Math.ceil(Math.log(minValue) / this.logGamma);
+    int maxIndex = (int) Math.ceil(Math.log(maxValue) / this.logGamma);
+    this.counts = new int[maxIndex - this.minIndex + 1];
+  }
+
+  /**
+   * Constructs a copy of {@code sketch}.
+   *
+   * @param sketch the sketch to copy
+   */
+  public QuantileSketch(QuantileSketch sketch) {
+    this.relativeAccuracy = sketch.relativeAccuracy;
+    this.minValue = sketch.minValue;
+    this.maxValue = sketch.maxValue;
+    this.gamma = sketch.gamma;
+    this.logGamma = sketch.logGamma;
+    this.minIndex = sketch.minIndex;
+    this.counts = sketch.counts.clone();
+    this.zeroCount = sketch.zeroCount;
+    this.count = sketch.count;
+  }
+
+  public void add(double value) {
+    this.update(value, 1);
+  }
+
+  /**
+   * Removes one occurrence of a value that was added before.
+   *
+   * @param value the value to remove
+   */
+  public void remove(double value) {
+    this.update(value, -1);
+  }
+
+  /**
+   * Adds every value counted by {@code sketch} to this sketch.
+   *
+   * @param sketch a sketch with the same accuracy and range
+   * @throws IllegalArgumentException if the sketches do not have the same accuracy and range.
+   */
+  public void merge(QuantileSketch sketch) {
+    if (sketch.relativeAccuracy != this.relativeAccuracy || sketch.minValue != this.minValue
+            || sketch.maxValue != this.maxValue) {
+      throw new IllegalArgumentException("Only sketches with the same accuracy and range can be " +
+              "merged.");
+    }
+    for (int i = 0; i < this.counts.length; i++) {
+      this.counts[i] += sketch.counts[i];
+    }
+    this.zeroCount += sketch.zeroCount;
+    this.count += sketch.count;
+  }
+
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the value below which {@code quantile} of the values fall, or {@code NaN} if the
+   * sketch is empty.
+   *
+   * @param quantile the quantile between 0 and 1 inclusive, for example 0.99
+   * @return the estimated value
+   * @throws IllegalArgumentException if {@code quantile} is outside 0 and 1.
+   */
+  public double getQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+    }
+    if (this.count == 0) {
+      return Double.NaN;
+    }
+    long rank = (long) (quantile * (this.count - 1));
+    long seen = this.zeroCount;
+    if (rank < seen) {
+      return 0;
+    }
+    for (int i = 0; i < this.counts.length; i++) {
+      seen += this.counts[i];
+      if (rank < seen) {
+        return 2 * Math.pow(this.gamma, i + this.minIndex) / (this.gamma + 1);
+      }
+    }
+    return this.maxValue;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + this.count + ", p50=" + this.getQuantile(0.5) + ", p90="
+            + this.getQuantile(0.9) + ", p99=" + this.getQuantile(0.99);
+  }
+
+  private void update(double value, int delta) {
+    if (value < 0 || Double.isNaN(value)) {
+      throw new IllegalArgumentException("Sketch values cannot be negative.");
+    }
+    if (value < this.minValue) {
+      this.zeroCount += delta;
+    } else {
+      int index = (int) Math.ceil(Math.log(Math.min(value, this.maxValue)) / this.logGamma);
+      this.counts[Math.max(0, Math.min(index - this.minIndex, this.counts.length - 1))] += delta;
+    }
+    this.count += delta;
+  }
+}
@@ -0,0 +1,71 @@
+package sanctuary;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splittable traversal of the residents of the housings of a housing {@link Spliterator}. It
+ * splits where the housings split, and estimates its size from the share of the housings it
+ * covers.
+ */
+class ResidentSpliterator implements Spliterator<Primate> {
+
+  private final Spliterator<Housing> housings;
+  private final long residentTotal;
+  private final long housingTotal;
+  private Housing housing;
+  private int resident;
+
+  ResidentSpliterator(Spliterator<Housing> housings, long residentTotal, long housingTotal) {
+    this.housings = housings;
+    this.residentTotal = residentTotal;
+    this.housingTotal = housingTotal;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Primate> action) {
+    while (this.housing == null || this.resident >= this.housing.getResidentCount()) {
+      this.housing = null;
+      this.resident = 0;
+      if (!this.housings.tryAdvance(housing -> this.housing = housing)) {
+        return false;
+      }
+    }
+    action.accept(this.housing.getResident(this.resident++));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super Primate> action) {
+    if (this.housing != null) {
+      for (; this.resident < this.housing.getResidentCount(); this.resident++) {
+        action.accept(this.housing.getResident(this.resident));
+      }
+      this.housing = null;
+    }
+    this.housings.forEachRemaining(housing -> housing.forEachResident(action));
+  }
+
+  @Override
+  public Spliterator<Primate> trySplit() {
+    if (this.housing != null) {
+      return null;
+    }
+    Spliterator<Housing> prefix = this.housings.trySplit();
+    return prefix == null ? null
+            : new ResidentSpliterator(prefix, this.residentTotal, this.housingTotal);
+  }
+
+  @Override
+  public long estimateSize() {
+    if (this.housingTotal == 0) {
+      return 0;
+    }
+    return this.housings.estimateSize() * this.residentTotal / this.housingTotal;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
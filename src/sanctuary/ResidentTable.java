@@ -0,0 +1,122 @@
+package sanctuary;
+
+import java.util.Arrays;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+
+/**
+ * The residents of a sanctuary's housings as a table with one row per resident, in the order of
+ * {@link Sanctuary#getHousings()}. Columns are kept in flat arrays, with enums stored as
+ * ordinals, so the table is built without a map or object per resident and reading a cell
+ * allocates nothing.
+ */
+public final class ResidentTable {
+
+  private static final HousingType[] HOUSING_TYPES = HousingType.values();
+  private static final Species[] SPECIES = Species.values();
+  private static final MonkeySize[] SIZES = MonkeySize.values();
+  private static final Sex[] SEXES = Sex.values();
+  private static final FavoriteFood[] FOODS = FavoriteFood.values();
+  private static final HealthStatus[] HEALTH_STATUSES = HealthStatus.values();
+
+  private String[] monkeyIds;
+  private String[] names;
+  private String[] housingIds;
+  private byte[] housingTypes;
+  private byte[] species;
+  private byte[] sizes;
+  private byte[] sexes;
+  private byte[] foods;
+  private byte[] healthStatuses;
+  private int size;
+
+  ResidentTable(int expectedSize) {
+    int capacity = Math.max(expectedSize, 1);
+    this.monkeyIds = new String[capacity];
+    this.names = new String[capacity];
+    this.housingIds = new String[capacity];
+    this.housingTypes = new byte[capacity];
+    this.species = new byte[capacity];
+    this.sizes = new byte[capacity];
+    this.sexes = new byte[capacity];
+    this.foods = new byte[capacity];
+    this.healthStatuses = new byte[capacity];
+  }
+
+  void add(Housing housing, Primate monkey) {
+    if (this.size == this.monkeyIds.length) {
+      int capacity = this.size * 2;
+      this.monkeyIds = Arrays.copyOf(this.monkeyIds, capacity);
+      this.names = Arrays.copyOf(this.names, capacity);
+      this.housingIds = Arrays.copyOf(this.housingIds, capacity);
+      this.housingTypes = Arrays.copyOf(this.housingTypes, capacity);
+      this.species = Arrays.copyOf(this.species, capacity);
+      this.sizes = Arrays.copyOf(this.sizes, capacity);
+      this.sexes = Arrays.copyOf(this.sexes, capacity);
+      this.foods = Arrays.copyOf(this.foods, capacity);
+      this.healthStatuses = Arrays.copyOf(this.healthStatuses, capacity);
+    }
+    this.monkeyIds[this.size] = monkey.getId();
+    this.names[this.size] = monkey.getName();
+    this.housingIds[this.size] = housing.getId();
+    this.housingTypes[this.size] = (byte) housing.getHousingType().ordinal();
+    this.species[this.size] = (byte) monkey.getSpecies().ordinal();
+    this.sizes[this.size] = (byte) monkey.getSize().ordinal();
+    this.sexes[this.size] = (byte) monkey.getSex().ordinal();
+    this.foods[this.size] = (byte) monkey.getFavoriteFood().ordinal();
+    this.healthStatuses[this.size] = (byte) monkey.getHealthStatus().ordinal();
+    this.size++;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public String getMonkeyId(int row) {
+    return this.monkeyIds[this.check(row)];
+  }
+
+  public String getName(int row) {
+    return this.names[this.check(row)];
+  }
+
+  public String getHousingId(int row) {
+    return this.housingIds[this.check(row)];
+  }
+
+  public HousingType getHousingType(int row) {
+    return HOUSING_TYPES[this.housingTypes[this.check(row)]];
+  }
+
+  public Species getSpecies(int row) {
+    return SPECIES[this.species[this.check(row)]];
+  }
+
+  public MonkeySize getSize(int row) {
+    return SIZES[this.sizes[this.check(row)]];
+  }
+
+  public Sex getSex(int row) {
+    return SEXES[this.sexes[this.check(row)]];
+  }
+
+  public FavoriteFood getFavoriteFood(int row) {
+    return FOODS[this.foods[this.check(row)]];
+  }
+
+  public HealthStatus getHealthStatus(int row) {
+    return HEALTH_STATUSES[this.healthStatuses[this.check(row)]];
+  }
+
+  private int check(int row) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + this.size);
+    }
+    return row;
+  }
+}
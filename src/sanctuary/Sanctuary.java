@@ -2,23 +2,59 @@ package sanctuary;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Predicate;
 
 import enums.FavoriteFood;
 import enums.HealthStatus;
 import enums.HousingType;
+import enums.Measurement;
 import enums.MonkeySize;
 import enums.Sex;
 import enums.Species;
 
 public interface Sanctuary {
 
-  public void addMonkey(String name, MonkeySize size, float weight, int age, Species species, Sex sex, FavoriteFood favoriteFood,
-                        HealthStatus healthStatus, String monkeyLocation);
+  /**
+   * Adds a new monkey to {@code monkeyLocation}, or to a free isolation cage when it is
+   * {@code null}.
+   *
+   * @return the id given to the new monkey
+   */
+  public String addMonkey(String name, MonkeySize size, float weight, int age, Species species, Sex sex, FavoriteFood favoriteFood,
+                          HealthStatus healthStatus, String monkeyLocation);
 
   public List<Primate> getMonkeys();
 
+  /**
+   * Returns the current monkey with {@code monkeyId}.
+   *
+   * @param monkeyId id of the monkey
+   * @return the monkey, or {@code null} if it is not in the sanctuary
+   */
+  public Primate getMonkey(String monkeyId);
+
+  /**
+   * Returns where the current monkey with {@code monkeyId} lives.
+   *
+   * @param monkeyId id of the monkey
+   * @return the location, or {@code null} if the monkey is not in the sanctuary
+   */
+  public MonkeyLocation locateMonkey(String monkeyId);
+
   public void moveMonkey(String housingId, Primate monkey);
 
+  /**
+   * Moves every monkey in {@code moves} to the housing id it maps to as one transaction. The
+   * moves are validated against the state after all of them are applied, so monkeys can swap
+   * places between full housings. Either every move is applied or none is.
+   *
+   * @param moves monkeys mapped to the id of the housing they move to
+   * @throws IllegalArgumentException if a monkey or housing does not exist.
+   * @throws IllegalStateException if the resulting placement breaks a housing rule.
+   */
+  public void moveMonkeys(Map<Primate, String> moves);
+
   public List<Housing> getHousings();
 
   public void removeMonkey(Primate monkey);
@@ -27,10 +63,25 @@ public interface Sanctuary {
 
   public int getTotalNumOfEnclosures();
 
+  /**
+   * Returns the number of isolation cages without a resident.
+   *
+   * @return free isolation cages
+   */
+  public int getNumOfFreeIsolationCages();
+
   public void moveMonkeyToIsolation(Primate monkey) throws UnsupportedOperationException;
 
   public void moveMonkeyToEnclosure(Primate monkey) throws UnsupportedOperationException;
 
+  /**
+   * Sets the policy {@link #moveMonkeyToEnclosure(Primate)} uses to choose between the
+   * enclosures that can take a monkey. Without a policy the first such enclosure is taken.
+   *
+   * @param policy the policy, or {@code null} to take the first enclosure
+   */
+  public void setPlacementPolicy(PlacementPolicy policy);
+
   public Map<Species, List<String>> getSpeciesWithLocations();
 
   public List<String> getLocationsForSpecies(Species species);
@@ -39,13 +90,218 @@ public interface Sanctuary {
 
   public Map<FavoriteFood, Integer> getFavFoodShoppingList();
 
+  /**
+   * Returns the counts of the current monkeys by species, size and health status and the food
+   * they need, without building a map.
+   *
+   * @return a copy of the counts
+   */
+  public MonkeyCounts getMonkeyCounts();
+
+  /**
+   * Returns how many more monkeys of each species and size the enclosures can take. The
+   * forecast is kept up to date as monkeys move and grow, so this does not look at any
+   * enclosure.
+   *
+   * @return a copy of the forecast
+   */
+  public CapacityForecast getCapacityForecast();
+
+  /**
+   * Returns the residents of every housing, with their housings, as one flat table. This is
+   * {@link #getAllMonkeysWithLocations()} without a map per resident, and it keeps residents that
+   * share a name.
+   *
+   * @return the table of residents
+   */
+  public ResidentTable getResidentTable();
+
   public void addCapacity(int numOfNewIsolationCages, int numOfNewEnclosures, int[] sizeOfEnclosures);
 
   //implementation in enclosure
   Map<String, Map<Sex, FavoriteFood>> getEnclosureSign(String enclosureId);
 
+  /**
+   * Returns the current sign version. The version goes up every time the residents of an
+   * enclosure change.
+   *
+   * @return sign version
+   */
+  public long getSignVersion();
+
+  /**
+   * Returns the signs of the enclosures whose residents changed after {@code sinceVersion}.
+   * Asking again with the returned version gives only the signs that changed in between.
+   * Enclosures whose residents never changed are empty and are not returned for version 0.
+   *
+   * @param sinceVersion sign version the caller's signs are current as of
+   * @return the changed signs and the version they are current as of
+   */
+  public EnclosureSignChanges getChangedEnclosureSigns(long sinceVersion);
+
+  /**
+   * Returns a page of the current monkeys in order of their ids. Monkeys are copies, so later
+   * changes do not show through. The cursor of a page stays valid while monkeys are added,
+   * changed or removed: the next page starts after the last monkey looked at.
+   *
+   * @param cursor   cursor returned with the previous page, or {@code null} for the first page
+   * @param pageSize the most monkeys on the page
+   * @param filter   monkeys to list, or {@code null} for all
+   * @return the page
+   * @throws IllegalArgumentException if {@code pageSize} is not positive or {@code cursor} is
+   *                                  not a cursor of this listing.
+   */
+  public Page<Primate> getMonkeysPage(String cursor, int pageSize,
+                                      Predicate<? super Primate> filter);
+
+  /**
+   * Returns a page of the housings in the order of {@link #getHousings()}. Housings are copies,
+   * so later changes do not show through. Housings are only ever added at the end, so a cursor
+   * stays valid while the sanctuary changes.
+   *
+   * @param cursor   cursor returned with the previous page, or {@code null} for the first page
+   * @param pageSize the most housings on the page
+   * @param filter   housings to list, or {@code null} for all
+   * @return the page
+   * @throws IllegalArgumentException if {@code pageSize} is not positive or {@code cursor} is
+   *                                  not a cursor of this listing.
+   */
+  public Page<Housing> getHousingsPage(String cursor, int pageSize,
+                                       Predicate<? super Housing> filter);
+
+  /**
+   * Returns a page of the alumni monkeys in the order they left the sanctuary. Alumni are only
+   * ever added at the end, so a cursor stays valid while the sanctuary changes.
+   *
+   * @param cursor   cursor returned with the previous page, or {@code null} for the first page
+   * @param pageSize the most alumni on the page
+   * @param filter   alumni to list, or {@code null} for all
+   * @return the page
+   * @throws IllegalArgumentException if {@code pageSize} is not positive or {@code cursor} is
+   *                                  not a cursor of this listing.
+   */
+  public Page<Primate> getAlumniMonkeysPage(String cursor, int pageSize,
+                                            Predicate<? super Primate> filter);
+
+  /**
+   * Returns a splittable traversal of the housings in the order of {@link #getHousings()}, for
+   * parallel streams. The sanctuary must not change during the traversal, so traverse a
+   * {@link #fork()} when it may.
+   *
+   * @return spliterator over the housings
+   */
+  public Spliterator<Housing> housingSpliterator();
+
+  /**
+   * Returns a splittable traversal of the housings that have residents, in the order of
+   * {@link #getHousings()}. The sanctuary must not change during the traversal.
+   *
+   * @return spliterator over the occupied housings
+   */
+  public Spliterator<Housing> occupiedHousingSpliterator();
+
+  /**
+   * Returns a splittable traversal of the monkeys living in the housings, housing by housing.
+   * The sanctuary must not change during the traversal.
+   *
+   * @return spliterator over the housed monkeys
+   */
+  public Spliterator<Primate> residentSpliterator();
+
+  /**
+   * Returns every current or alumni monkey named {@code name}, ignoring case, with where it
+   * lives.
+   *
+   * @param name the name to look up
+   * @return the matching monkeys
+   * @throws IllegalArgumentException if {@code name} is {@code null}.
+   */
+  public List<MonkeyLocation> findMonkeysByName(String name);
+
+  /**
+   * Returns up to {@code limit} current or alumni monkeys whose name starts with {@code prefix},
+   * ignoring case, in name order.
+   *
+   * @param prefix the start of the names to look up
+   * @param limit  the most monkeys to return
+   * @return the matching monkeys
+   * @throws IllegalArgumentException if {@code prefix} is {@code null} or {@code limit} is
+   *                                  negative.
+   */
+  public List<MonkeyLocation> findMonkeysByNamePrefix(String prefix, int limit);
+
+  /**
+   * Returns every value of {@code measurement} recorded for {@code monkey} between
+   * {@code fromMillis} and {@code toMillis}, inclusive. A value is recorded when the monkey is
+   * added and whenever the measurement is updated.
+   *
+   * @param monkey      the current or alumni monkey
+   * @param measurement the measurement to read
+   * @param fromMillis  start of the range in milliseconds since the epoch
+   * @param toMillis    end of the range in milliseconds since the epoch
+   * @return the recorded values, oldest first
+   * @throws IllegalArgumentException if an argument is {@code null} or the monkey was never in
+   *                                  the sanctuary.
+   */
+  public MeasurementSeries getMeasurementHistory(Primate monkey, Measurement measurement,
+                                                 long fromMillis, long toMillis);
+
+  /**
+   * Returns the count, minimum, maximum and mean of every value of {@code measurement} recorded
+   * for monkeys of {@code species} between {@code fromMillis} and {@code toMillis}, inclusive.
+   *
+   * @param species     the species
+   * @param measurement the measurement to aggregate
+   * @param fromMillis  start of the range in milliseconds since the epoch
+   * @param toMillis    end of the range in milliseconds since the epoch
+   * @return the statistics of the recorded values
+   * @throws IllegalArgumentException if an argument is {@code null}.
+   */
+  public MeasurementStatistics getSpeciesMeasurementStatistics(Species species,
+                                                               Measurement measurement,
+                                                               long fromMillis, long toMillis);
+
+  /**
+   * Returns a copy of the quantile sketch of {@code measurement} over the current monkeys of
+   * {@code species}. Sketches of different species or sanctuaries can be merged.
+   *
+   * @param species     the species
+   * @param measurement {@link Measurement#WEIGHT} or {@link Measurement#AGE}
+   * @return the sketch
+   * @throws IllegalArgumentException if no sketch is kept for {@code measurement}.
+   */
+  public QuantileSketch getSpeciesSketch(Species species, Measurement measurement);
+
+  /**
+   * Returns the estimated {@code quantile} of {@code measurement} over the current monkeys of
+   * {@code species}, for example the median weight for a quantile of 0.5.
+   *
+   * @param species     the species
+   * @param measurement {@link Measurement#WEIGHT} or {@link Measurement#AGE}
+   * @param quantile    the quantile between 0 and 1 inclusive
+   * @return the estimated value, or {@code NaN} if there are no monkeys of the species
+   * @throws IllegalArgumentException if no sketch is kept for {@code measurement} or the
+   *                                  quantile is outside 0 and 1.
+   */
+  public double getSpeciesQuantile(Species species, Measurement measurement, double quantile);
+
   public void updateMonkeyHealthStatus(HealthStatus updatedHealthStatus, Primate monkey);
 
+  /**
+   * Updates the health status of every monkey in {@code monkeys}. Monkeys that become UNHEALTHY
+   * while in an enclosure are moved to isolation cages in a single allocation pass. Monkeys for
+   * which no isolation cage is left are still removed from their enclosure and are returned
+   * instead of failing the rest of the batch.
+   *
+   * @param updatedHealthStatus the new health status
+   * @param monkeys the monkeys to update
+   * @return the monkeys that could not be moved to an isolation cage
+   * @throws IllegalArgumentException if the health status or any monkey is {@code null}, or a
+   *                                  monkey is not in the sanctuary. No monkey is then updated.
+   */
+  public List<Primate> updateMonkeysHealthStatus(HealthStatus updatedHealthStatus,
+                                                 List<Primate> monkeys);
+
   public void updateMonkeySize(MonkeySize updatedSize, Primate monkey);
 
   public void updateMonkeyWeight(double updatedWeight, Primate monkey);
@@ -53,4 +309,19 @@ public interface Sanctuary {
   public void updateMonkeyAge(int updatedAge, Primate monkey);
 
   public List<Primate> getAlumniMonkeys();
+
+  /**
+   * Returns a copy of this sanctuary that can be changed independently of it, for example to try
+   * out a capacity plan. Unchanged housings and monkeys are shared between the copies, and so
+   * are the indexes over them, so forking takes constant time however many monkeys there are.
+   *
+   * <p>Either sanctuary copies a shared housing or monkey before changing it. The monkeys
+   * returned by {@link #getMonkeys()}, {@link #getAlumniMonkeys()} and {@link #getMonkey(String)}
+   * are views that follow such copies and always show the sanctuary that returned them. Housings,
+   * the monkeys reached through them and pages show the sanctuary as it was when they were read;
+   * to follow such a monkey, look it up again with {@link #getMonkey(String)}.
+   *
+   * @return the forked sanctuary
+   */
+  public Sanctuary fork();
 }
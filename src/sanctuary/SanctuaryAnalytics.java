@@ -0,0 +1,172 @@
+package sanctuary;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.Species;
+
+/**
+ * Grouped aggregations over the housings and residents of a sanctuary, run as parallel streams
+ * over its spliterators. The aggregations see the sanctuary as it was when the analytics were
+ * created, because they run over a fork of it, so the sanctuary may change meanwhile.
+ * Aggregations accumulate into per-thread arrays or maps that are merged at the end, so threads
+ * do not contend while they run.
+ */
+public class SanctuaryAnalytics {
+
+  private final Sanctuary snapshot;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates analytics of {@code sanctuary} that run in the common fork/join pool.
+   *
+   * @param sanctuary the sanctuary
+   * @throws IllegalArgumentException if {@code sanctuary} is {@code null}.
+   */
+  public SanctuaryAnalytics(Sanctuary sanctuary) {
+    this(sanctuary, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates analytics of {@code sanctuary} that run in {@code pool}.
+   *
+   * @param sanctuary the sanctuary
+   * @param pool      pool whose threads run the aggregations
+   * @throws IllegalArgumentException if {@code sanctuary} or {@code pool} is {@code null}.
+   */
+  public SanctuaryAnalytics(Sanctuary sanctuary, ForkJoinPool pool) {
+    if (sanctuary == null || pool == null) {
+      throw new IllegalArgumentException("Sanctuary and pool cannot be null.");
+    }
+    this.snapshot = sanctuary.fork();
+    this.pool = pool;
+  }
+
+  /**
+   * Returns the number of housed monkeys of every species.
+   *
+   * @return monkeys by species
+   */
+  public Map<Species, Integer> getOccupancyBySpecies() {
+    long[] counts = this.run(() -> this.residents().collect(
+            () -> new long[Species.values().length],
+            (total, monkey) -> total[monkey.getSpecies().ordinal()]++,
+            SanctuaryAnalytics::add));
+    Map<Species, Integer> occupancy = new EnumMap<>(Species.class);
+    for (Species species : Species.values()) {
+      occupancy.put(species, (int) counts[species.ordinal()]);
+    }
+    return occupancy;
+  }
+
+  /**
+   * Returns the food needed by the residents of every occupied enclosure, by enclosure id.
+   *
+   * @return food demand by enclosure
+   */
+  public Map<String, Map<FavoriteFood, Integer>> getFoodDemandByEnclosure() {
+    return this.run(() -> this.occupiedHousings()
+            .filter(housing -> housing.getHousingType() == HousingType.ENCLOSURE)
+            .collect(Collectors.toMap(Housing::getId, housing -> {
+              Map<FavoriteFood, Integer> demand = new EnumMap<>(FavoriteFood.class);
+              housing.forEachResident(monkey -> demand.merge(monkey.getFavoriteFood(),
+                      monkey.getSize().getFoodRequired(), Integer::sum));
+              return demand;
+            }, (first, second) -> first, HashMap::new)));
+  }
+
+  /**
+   * Returns the share of healthy residents in every type of housing that has residents.
+   *
+   * @return healthy share between 0 and 1 by housing type
+   */
+  public Map<HousingType, Double> getHealthyRatioByHousingType() {
+    long[] counts = this.run(() -> this.occupiedHousings().collect(
+            () -> new long[2 * HousingType.values().length],
+            (total, housing) -> {
+              int type = housing.getHousingType().ordinal();
+              for (int i = 0; i < housing.getResidentCount(); i++) {
+                total[2 * type + 1]++;
+                if (housing.getResident(i).getHealthStatus() == HealthStatus.HEALTHY) {
+                  total[2 * type]++;
+                }
+              }
+            },
+            SanctuaryAnalytics::add));
+    Map<HousingType, Double> ratios = new EnumMap<>(HousingType.class);
+    for (HousingType type : HousingType.values()) {
+      if (counts[2 * type.ordinal() + 1] > 0) {
+        ratios.put(type, (double) counts[2 * type.ordinal()] / counts[2 * type.ordinal() + 1]);
+      }
+    }
+    return ratios;
+  }
+
+  /**
+   * Groups the housed monkeys by {@code classifier} and reduces every group with
+   * {@code downstream}.
+   *
+   * @param classifier key of a monkey's group
+   * @param downstream reduction of a group
+   * @param <K>        type of the group keys
+   * @param <R>        type of the group results
+   * @return result by group
+   */
+  public <K, R> Map<K, R> groupResidents(Function<? super Primate, ? extends K> classifier,
+                                         Collector<? super Primate, ?, R> downstream) {
+    return this.run(() -> this.residents().collect(
+            Collectors.groupingBy(classifier, downstream)));
+  }
+
+  /**
+   * Groups the occupied housings by {@code classifier} and reduces every group with
+   * {@code downstream}.
+   *
+   * @param classifier key of a housing's group
+   * @param downstream reduction of a group
+   * @param <K>        type of the group keys
+   * @param <R>        type of the group results
+   * @return result by group
+   */
+  public <K, R> Map<K, R> groupHousings(Function<? super Housing, ? extends K> classifier,
+                                        Collector<? super Housing, ?, R> downstream) {
+    return this.run(() -> this.occupiedHousings().collect(
+            Collectors.groupingBy(classifier, downstream)));
+  }
+
+  private Stream<Primate> residents() {
+    return StreamSupport.stream(this.snapshot.residentSpliterator(), true);
+  }
+
+  private Stream<Housing> occupiedHousings() {
+    return StreamSupport.stream(this.snapshot.occupiedHousingSpliterator(), true);
+  }
+
+  /**
+   * Runs {@code aggregation} in the pool of these analytics. A parallel stream started from a
+   * pool thread forks its tasks into that pool.
+   */
+  private <T> T run(Supplier<T> aggregation) {
+    if (this.pool == ForkJoinPool.commonPool()) {
+      return aggregation.get();
+    }
+    return this.pool.submit(aggregation::get).join();
+  }
+
+  private static void add(long[] total, long[] part) {
+    for (int i = 0; i < total.length; i++) {
+      total[i] += part[i];
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package sanctuary;
+
+import java.util.Arrays;
+
+import enums.ChangeType;
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+
+/**
+ * One change to the state of a {@link JungleFriendsSanctuary}. Applying the changes of a
+ * sanctuary in order to an empty sanctuary gives a sanctuary with the same housings, monkeys,
+ * alumni and placements. Only the fields of the change's {@link ChangeType} are set.
+ */
+public final class SanctuaryChange {
+
+  private final ChangeType type;
+  private final String monkeyId;
+  private HousingType housingType;
+  private int firstNumber;
+  private int count;
+  private int[] capacities;
+  private int position;
+  private String[] monkeyIds;
+  private int[] positions;
+  private String name;
+  private MonkeySize size;
+  private double weight;
+  private int age;
+  private Species species;
+  private Sex sex;
+  private FavoriteFood favoriteFood;
+  private HealthStatus healthStatus;
+
+  private SanctuaryChange(ChangeType type, String monkeyId) {
+    this.type = type;
+    this.monkeyId = monkeyId;
+  }
+
+  /**
+   * Housings were added, numbered from {@code firstNumber}.
+   *
+   * @param housingType type of the housings
+   * @param firstNumber number in the id of the first housing
+   * @param count       number of housings
+   * @param capacities  capacity of every enclosure, or {@code null} for isolation cages
+   * @return the change
+   */
+  public static SanctuaryChange housingsAdded(HousingType housingType, int firstNumber, int count,
+                                              int[] capacities) {
+    if (housingType == null || count < 0 || (housingType == HousingType.ENCLOSURE
+            && (capacities == null || capacities.length < count))) {
+      throw new IllegalArgumentException("Invalid housings. Type: " + housingType + ", Count: " +
+              count);
+    }
+    SanctuaryChange change = new SanctuaryChange(ChangeType.HOUSINGS_ADDED, null);
+    change.housingType = housingType;
+    change.firstNumber = firstNumber;
+    change.count = count;
+    change.capacities = housingType == HousingType.ENCLOSURE
+            ? Arrays.copyOf(capacities, count) : null;
+    return change;
+  }
+
+  public static SanctuaryChange monkeyAdded(String monkeyId, String name, MonkeySize size,
+                                            double weight, int age, Species species, Sex sex,
+                                            FavoriteFood favoriteFood,
+                                            HealthStatus healthStatus) {
+    SanctuaryChange change = new SanctuaryChange(ChangeType.MONKEY_ADDED, monkeyId);
+    change.name = name;
+    change.size = size;
+    change.weight = weight;
+    change.age = age;
+    change.species = species;
+    change.sex = sex;
+    change.favoriteFood = favoriteFood;
+    change.healthStatus = healthStatus;
+    return change;
+  }
+
+  static SanctuaryChange monkeyAdded(Primate monkey) {
+    return monkeyAdded(monkey.getId(), monkey.getName(), monkey.getSize(), monkey.getWeight(),
+            monkey.getAge(), monkey.getSpecies(), monkey.getSex(), monkey.getFavoriteFood(),
+            monkey.getHealthStatus());
+  }
+
+  /**
+   * A monkey was placed in the housing at {@code position} in {@link Sanctuary#getHousings()}.
+   *
+   * @param monkeyId id of the monkey
+   * @param position position of the housing
+   * @return the change
+   */
+  public static SanctuaryChange monkeyPlaced(String monkeyId, int position) {
+    SanctuaryChange change = new SanctuaryChange(ChangeType.MONKEY_PLACED, monkeyId);
+    change.position = position;
+    return change;
+  }
+
+  /**
+   * Monkeys were moved together, each to the housing at the position given for it in
+   * {@link Sanctuary#getHousings()}.
+   *
+   * @param monkeyIds ids of the monkeys
+   * @param positions position of the new housing of every monkey
+   * @return the change
+   */
+  public static SanctuaryChange monkeysMoved(String[] monkeyIds, int[] positions) {
+    if (monkeyIds == null || positions == null || monkeyIds.length != positions.length) {
+      throw new IllegalArgumentException("Every moved monkey needs one position. Monkeys: " +
+              (monkeyIds == null ? 0 : monkeyIds.length) + ", Positions: " +
+              (positions == null ? 0 : positions.length));
+    }
+    SanctuaryChange change = new SanctuaryChange(ChangeType.MONKEYS_MOVED, null);
+    change.monkeyIds = monkeyIds.clone();
+    change.positions = positions.clone();
+    return change;
+  }
+
+  public static SanctuaryChange monkeyUnplaced(String monkeyId) {
+    return new SanctuaryChange(ChangeType.MONKEY_UNPLACED, monkeyId);
+  }
+
+  public static SanctuaryChange monkeyRetired(String monkeyId) {
+    return new SanctuaryChange(ChangeType.MONKEY_RETIRED, monkeyId);
+  }
+
+  public static SanctuaryChange healthStatusUpdated(String monkeyId, HealthStatus healthStatus) {
+    SanctuaryChange change = new SanctuaryChange(ChangeType.HEALTH_STATUS_UPDATED, monkeyId);
+    change.healthStatus = healthStatus;
+    return change;
+  }
+
+  public static SanctuaryChange sizeUpdated(String monkeyId, MonkeySize size) {
+    SanctuaryChange change = new SanctuaryChange(ChangeType.SIZE_UPDATED, monkeyId);
+    change.size = size;
+    return change;
+  }
+
+  public static SanctuaryChange weightUpdated(String monkeyId, double weight) {
+    SanctuaryChange change = new SanctuaryChange(ChangeType.WEIGHT_UPDATED, monkeyId);
+    change.weight = weight;
+    return change;
+  }
+
+  public static SanctuaryChange ageUpdated(String monkeyId, int age) {
+    SanctuaryChange change = new SanctuaryChange(ChangeType.AGE_UPDATED, monkeyId);
+    change.age = age;
+    return change;
+  }
+
+  public ChangeType getType() {
+    return this.type;
+  }
+
+  public String getMonkeyId() {
+    return this.monkeyId;
+  }
+
+  public HousingType getHousingType() {
+    return this.housingType;
+  }
+
+  public int getFirstNumber() {
+    return this.firstNumber;
+  }
+
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the capacity of every added enclosure, or {@code null} for isolation cages.
+   *
+   * @return capacities of the enclosures
+   */
+  public int[] getCapacities() {
+    return this.capacities == null ? null : this.capacities.clone();
+  }
+
+  public int getPosition() {
+    return this.position;
+  }
+
+  /**
+   * Returns the ids of the monkeys moved together, or {@code null} for other changes.
+   *
+   * @return ids of the moved monkeys
+   */
+  public String[] getMonkeyIds() {
+    return this.monkeyIds == null ? null : this.monkeyIds.clone();
+  }
+
+  /**
+   * Returns the position of the new housing of every monkey moved together, or {@code null} for
+   * other changes.
+   *
+   * @return positions of the new housings
+   */
+  public int[] getPositions() {
+    return this.positions == null ? null : this.positions.clone();
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public MonkeySize getSize() {
+    return this.size;
+  }
+
+  public double getWeight() {
+    return this.weight;
+  }
+
+  public int getAge() {
+    return this.age;
+  }
+
+  public Species getSpecies() {
+    return this.species;
+  }
+
+  public Sex getSex() {
+    return this.sex;
+  }
+
+  public FavoriteFood getFavoriteFood() {
+    return this.favoriteFood;
+  }
+
+  public HealthStatus getHealthStatus() {
+    return this.healthStatus;
+  }
+
+  @Override
+  public String toString() {
+    if (this.monkeyIds != null) {
+      return this.type + " " + Arrays.toString(this.monkeyIds);
+    }
+    return this.type + (this.monkeyId == null ? "" : " " + this.monkeyId);
+  }
+}
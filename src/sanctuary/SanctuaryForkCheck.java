@@ -0,0 +1,245 @@
+package sanctuary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+
+/**
+ * Checks that a sanctuary and its forks change independently. Random changes are applied to a
+ * sanctuary and to forks of it, forks of forks included, and neither side may see the other's
+ * changes. The monkeys handed out before a fork must keep showing the sanctuary that handed them
+ * out after either side copies them. Throws {@link AssertionError} at the first difference.
+ */
+public final class SanctuaryForkCheck {
+
+  private static final int[] ENCLOSURE_SIZES = {5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+  private SanctuaryForkCheck() {
+  }
+
+  /**
+   * Runs the checks.
+   * Usage: {@code SanctuaryForkCheck [rounds] [seed]}
+   *
+   * @param args number of rounds of random changes and the seed they are drawn with
+   */
+  public static void main(String[] args) {
+    int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 28);
+    checkViews();
+    checkAlumni();
+    for (int round = 0; round < rounds; round++) {
+      checkIsolation(random);
+    }
+    System.out.println("Fork checks passed: " + rounds + " rounds of random changes.");
+  }
+
+  /**
+   * Returns a sanctuary with a dozen enclosures for the changes of
+   * {@link #changeRandomly(Sanctuary, Random)}.
+   *
+   * @param isolationCages the number of isolation cages
+   * @return the empty sanctuary
+   */
+  public static JungleFriendsSanctuary newSanctuary(int isolationCages) {
+    return new JungleFriendsSanctuary(isolationCages, ENCLOSURE_SIZES.length, ENCLOSURE_SIZES);
+  }
+
+  /**
+   * Describes everything a client can read from {@code sanctuary}, the sign of every enclosure
+   * included, so that two sanctuaries in the same state have equal descriptions. Measurement
+   * times and sign versions are left out, as they count what happened to a sanctuary rather than
+   * describe its state. The other checks compare sanctuaries with it too.
+   *
+   * @param sanctuary the sanctuary to describe
+   * @return the description
+   */
+  public static String describe(Sanctuary sanctuary) {
+    StringBuilder description = new StringBuilder();
+    for (Primate monkey : sanctuary.getMonkeys()) {
+      describe(description, monkey);
+      description.append(" in ").append(sanctuary.locateMonkey(monkey.getId()).getHousingId())
+              .append('\n');
+    }
+    for (Primate monkey : sanctuary.getAlumniMonkeys()) {
+      describe(description.append("alumni "), monkey);
+      description.append('\n');
+    }
+    for (Housing housing : sanctuary.getHousings()) {
+      description.append(housing.getId()).append(' ').append(housing.getHousingType())
+              .append(' ').append(housing.getSpecies());
+      for (int i = 0; i < housing.getResidentCount(); i++) {
+        description.append(' ').append(housing.getResident(i).getId());
+      }
+      if (housing.getHousingType() == HousingType.ENCLOSURE) {
+        description.append(' ').append(sanctuary.getEnclosureSign(housing.getId()));
+      }
+      description.append('\n');
+    }
+    return description.append(sanctuary.getNumOfFreeIsolationCages()).append('\n')
+            .append(sanctuary.getFavFoodShoppingList()).append('\n')
+            .append(sanctuary.getSpeciesWithLocations()).append('\n')
+            .append(sanctuary.findMonkeysByNamePrefix("", Integer.MAX_VALUE).size()).toString();
+  }
+
+  private static void describe(StringBuilder description, Primate monkey) {
+    description.append(monkey.getId()).append(' ').append(monkey.getName()).append(' ')
+            .append(monkey.getSize()).append(' ').append(monkey.getWeight()).append(' ')
+            .append(monkey.getAge()).append(' ').append(monkey.getSpecies()).append(' ')
+            .append(monkey.getSex()).append(' ').append(monkey.getFavoriteFood()).append(' ')
+            .append(monkey.getHealthStatus());
+  }
+
+  /**
+   * Makes one random change to {@code sanctuary}, or none if the change is refused.
+   *
+   * @param sanctuary the sanctuary to change
+   * @param random    the source of the change
+   */
+  public static void changeRandomly(Sanctuary sanctuary, Random random) {
+    List<Primate> monkeys = sanctuary.getMonkeys();
+    Primate monkey = monkeys.isEmpty() ? null : monkeys.get(random.nextInt(monkeys.size()));
+    try {
+      switch (random.nextInt(9)) {
+        case 0:
+        case 1:
+          sanctuary.addMonkey("Monkey" + random.nextInt(50),
+                  MonkeySize.values()[random.nextInt(MonkeySize.values().length)],
+                  1 + random.nextInt(30), 1 + random.nextInt(20),
+                  Species.values()[random.nextInt(3)], Sex.values()[random.nextInt(2)],
+                  FavoriteFood.values()[random.nextInt(FavoriteFood.values().length)],
+                  HealthStatus.HEALTHY, null);
+          break;
+        case 2:
+          if (monkey != null) {
+            sanctuary.moveMonkeyToEnclosure(monkey);
+          }
+          break;
+        case 3:
+          if (monkey != null) {
+            sanctuary.updateMonkeyWeight(1 + random.nextInt(50), monkey);
+          }
+          break;
+        case 4:
+          if (monkey != null) {
+            sanctuary.removeMonkey(monkey);
+          }
+          break;
+        case 5:
+          if (monkey != null) {
+            sanctuary.updateMonkeyHealthStatus(HealthStatus.values()[random.nextInt(2)], monkey);
+          }
+          break;
+        case 6:
+          List<Primate> alumni = sanctuary.getAlumniMonkeys();
+          if (!alumni.isEmpty()) {
+            sanctuary.updateMonkeyWeight(1 + random.nextInt(90),
+                    alumni.get(random.nextInt(alumni.size())));
+          }
+          break;
+        case 7:
+          if (monkey != null) {
+            sanctuary.updateMonkeyAge(monkey.getAge() + random.nextInt(3), monkey);
+          }
+          break;
+        default:
+          if (random.nextInt(10) == 0) {
+            sanctuary.addCapacity(random.nextInt(20), 1, new int[] {1 + random.nextInt(20)});
+          }
+          break;
+      }
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      // the sanctuary refused the change, which leaves it as it was
+    }
+  }
+
+  /**
+   * Changes a sanctuary and a chain of its forks in turn and checks that each side keeps its
+   * own state.
+   */
+  private static void checkIsolation(Random random) {
+    JungleFriendsSanctuary sanctuary = newSanctuary(300);
+    for (int i = 0; i < 800; i++) {
+      changeRandomly(sanctuary, random);
+    }
+    for (int generation = 0; generation < 5; generation++) {
+      String atFork = describe(sanctuary);
+      JungleFriendsSanctuary fork = sanctuary.fork();
+      check(describe(fork).equals(atFork), "a fork starts as a copy of its sanctuary");
+      for (int i = 0; i < 200; i++) {
+        changeRandomly(sanctuary, random);
+      }
+      check(describe(fork).equals(atFork), "changes to a sanctuary do not show in its fork");
+      String sanctuaryState = describe(sanctuary);
+      for (int i = 0; i < 200; i++) {
+        changeRandomly(fork, random);
+      }
+      check(describe(sanctuary).equals(sanctuaryState),
+              "changes to a fork do not show in its sanctuary");
+      if (generation % 2 == 0) {
+        sanctuary = fork;
+      }
+    }
+  }
+
+  /**
+   * Checks that monkeys handed out before a fork follow the copies either side makes.
+   */
+  private static void checkViews() {
+    JungleFriendsSanctuary sanctuary = newSanctuary(4);
+    String id = sanctuary.addMonkey("Coco", MonkeySize.SMALL, 10, 2, Species.TITI, Sex.FEMALE,
+            FavoriteFood.NUTS, HealthStatus.HEALTHY, null);
+    Primate fromGetMonkey = sanctuary.getMonkey(id);
+    Primate fromList = sanctuary.getMonkeys().get(0);
+    JungleFriendsSanctuary fork = sanctuary.fork();
+    fork.updateMonkeyWeight(20, fork.getMonkey(id));
+    check(fromGetMonkey.getWeight() == 10 && fromList.getWeight() == 10,
+            "a fork copies a monkey before changing it");
+    check(fork.getMonkey(id).getWeight() == 20, "a fork sees its own change");
+    sanctuary.updateMonkeyWeight(30, fromGetMonkey);
+    check(fromGetMonkey.getWeight() == 30 && fromList.getWeight() == 30,
+            "monkeys handed out follow the copy their sanctuary makes");
+    check(fork.getMonkey(id).getWeight() == 20, "a sanctuary's change does not show in its fork");
+    sanctuary.moveMonkeyToEnclosure(fromList);
+    check(sanctuary.locateMonkey(id).getHousingType() != fork.locateMonkey(id).getHousingType(),
+            "moving a monkey handed out before the fork moves it in its own sanctuary only");
+    Map<Primate, String> byMonkey = new HashMap<>();
+    byMonkey.put(fromGetMonkey, "before");
+    byMonkey.put(sanctuary.getMonkey(id), "after");
+    check(byMonkey.size() == 1, "views of the same monkey of a sanctuary are equal");
+    check(!fromGetMonkey.equals(fork.getMonkey(id)),
+            "views of the same monkey of different sanctuaries are not equal");
+  }
+
+  /**
+   * Checks that changing an alumni monkey in a fork leaves the alumni of its sanctuary alone.
+   */
+  private static void checkAlumni() {
+    JungleFriendsSanctuary sanctuary = newSanctuary(2);
+    String id = sanctuary.addMonkey("Bo", MonkeySize.LARGE, 12, 6, Species.SAKI, Sex.MALE,
+            FavoriteFood.EGGS, HealthStatus.HEALTHY, null);
+    sanctuary.removeMonkey(sanctuary.getMonkey(id));
+    JungleFriendsSanctuary fork = sanctuary.fork();
+    fork.updateMonkeyWeight(40, fork.getAlumniMonkeys().get(0));
+    List<Double> weights = new ArrayList<>();
+    weights.add(sanctuary.getAlumniMonkeys().get(0).getWeight());
+    weights.add(fork.getAlumniMonkeys().get(0).getWeight());
+    check(weights.get(0) == 12 && weights.get(1) == 40,
+            "alumni are copied before a fork changes them, weights: " + weights);
+  }
+
+  private static void check(boolean condition, String expectation) {
+    if (!condition) {
+      throw new AssertionError("Expected that " + expectation + ".");
+    }
+  }
+}
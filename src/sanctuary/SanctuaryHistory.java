@@ -0,0 +1,264 @@
+package sanctuary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the versions of a {@link JungleFriendsSanctuary} so that changes can be undone and redone
+ * and earlier versions can be queried. Every change to the sanctuary, or every operation run
+ * through {@link #edit(Consumer)}, makes a new version. Only the changes are kept, together with
+ * forks of earlier versions to replay them from, so memory grows with the number of changes and
+ * not with the number of versions. A fork takes constant time and shares everything it does not
+ * change, so a checkpoint is forked every few dozen changes as they are recorded, and each costs
+ * only what changed since the one before it. Undo, redo and queries of recent versions replay at
+ * most a few dozen changes.
+ *
+ * <p>Undo and redo replace the sanctuary being recorded, so callers must change the sanctuary
+ * returned by {@link #getSanctuary()} after them. Placement policies and measurement times are
+ * not part of the recorded changes and are taken from the checkpoint a version is replayed from.
+ */
+public final class SanctuaryHistory {
+
+  private static final int CHECKPOINT_INTERVAL = 64;
+  private static final int MAX_CHECKPOINTS = 256;
+
+  private final List<SanctuaryChange> changes;
+  private final List<Integer> versionEnds;
+  private final TreeMap<Integer, JungleFriendsSanctuary> checkpoints;
+  private JungleFriendsSanctuary sanctuary;
+  private Recorder recorder;
+  private int version;
+  private int editDepth;
+
+  /**
+   * Starts recording the versions of {@code sanctuary}. Its current state is version 0.
+   *
+   * @param sanctuary the sanctuary to record
+   * @throws IllegalArgumentException if {@code sanctuary} is {@code null}.
+   */
+  public SanctuaryHistory(JungleFriendsSanctuary sanctuary) {
+    if (sanctuary == null) {
+      throw new IllegalArgumentException("Sanctuary cannot be null.");
+    }
+    this.changes = new ArrayList<>();
+    this.versionEnds = new ArrayList<>();
+    this.versionEnds.add(0);
+    this.checkpoints = new TreeMap<>();
+    synchronized (sanctuary) {
+      this.checkpoints.put(0, sanctuary.fork());
+      this.attach(sanctuary);
+    }
+  }
+
+  /**
+   * Returns the sanctuary being recorded. It changes on every undo and redo.
+   *
+   * @return the sanctuary at the current version
+   */
+  public synchronized JungleFriendsSanctuary getSanctuary() {
+    return this.sanctuary;
+  }
+
+  public synchronized long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Returns the newest version that can be reached with {@link #redo()}.
+   *
+   * @return the newest version
+   */
+  public synchronized long getLatestVersion() {
+    return this.versionEnds.size() - 1;
+  }
+
+  public synchronized boolean canUndo() {
+    return this.version > 0;
+  }
+
+  public synchronized boolean canRedo() {
+    return this.version < this.versionEnds.size() - 1;
+  }
+
+  /**
+   * Runs {@code operation} on the sanctuary being recorded while holding its monitor, and
+   * records all the changes it makes as one version. Changes made before the operation throws
+   * are kept.
+   *
+   * @param operation the operation
+   * @throws IllegalArgumentException if {@code operation} is {@code null}.
+   */
+  public void edit(Consumer<? super JungleFriendsSanctuary> operation) {
+    if (operation == null) {
+      throw new IllegalArgumentException("Operation cannot be null.");
+    }
+    JungleFriendsSanctuary sanctuary = this.getSanctuary();
+    synchronized (sanctuary) {
+      synchronized (this) {
+        if (sanctuary != this.sanctuary) {
+          throw new IllegalStateException("Sanctuary was replaced by an undo or redo.");
+        }
+        this.editDepth++;
+      }
+      try {
+        operation.accept(sanctuary);
+      } finally {
+        synchronized (this) {
+          if (--this.editDepth == 0 && this.changes.size() > this.versionEnds.get(this.version)) {
+            this.endVersion();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Goes back one version.
+   *
+   * @return the sanctuary at the previous version, which is now being recorded
+   * @throws IllegalStateException if there is no version to go back to or an edit is running.
+   */
+  public synchronized JungleFriendsSanctuary undo() {
+    if (this.version == 0 || this.editDepth > 0) {
+      throw new IllegalStateException("Nothing to undo. Version: " + this.version);
+    }
+    JungleFriendsSanctuary previous = this.replay(this.versionEnds.get(this.version - 1));
+    this.version--;
+    this.attach(previous);
+    return previous;
+  }
+
+  /**
+   * Goes forward one version that was undone.
+   *
+   * @return the sanctuary at the next version, which is now being recorded
+   * @throws IllegalStateException if there is no undone version or an edit is running.
+   */
+  public synchronized JungleFriendsSanctuary redo() {
+    if (this.version == this.versionEnds.size() - 1 || this.editDepth > 0) {
+      throw new IllegalStateException("Nothing to redo. Version: " + this.version);
+    }
+    JungleFriendsSanctuary next = this.replay(this.versionEnds.get(this.version + 1));
+    this.version++;
+    this.attach(next);
+    return next;
+  }
+
+  /**
+   * Returns the sanctuary as it was at {@code version}. The result is a separate sanctuary that
+   * is not recorded, and changing it does not change this history.
+   *
+   * @param version a version between 0 and {@link #getLatestVersion()}
+   * @return the sanctuary at {@code version}
+   * @throws IllegalArgumentException if {@code version} is out of range.
+   */
+  public synchronized JungleFriendsSanctuary asOf(long version) {
+    if (version < 0 || version >= this.versionEnds.size()) {
+      throw new IllegalArgumentException("Version " + version + " does not exist. Latest version: "
+              + (this.versionEnds.size() - 1));
+    }
+    return this.replay(this.versionEnds.get((int) version));
+  }
+
+  /**
+   * Records {@code change} and returns the number of changes recorded if the sanctuary should be
+   * forked as a checkpoint now, or -1.
+   */
+  private synchronized int record(Recorder recorder, SanctuaryChange change) {
+    if (recorder != this.recorder) {
+      return -1;
+    }
+    if (this.version < this.versionEnds.size() - 1) {
+      int end = this.versionEnds.get(this.version);
+      this.changes.subList(end, this.changes.size()).clear();
+      this.versionEnds.subList(this.version + 1, this.versionEnds.size()).clear();
+      this.checkpoints.tailMap(end, false).clear();
+    }
+    this.changes.add(change);
+    if (this.editDepth == 0) {
+      this.endVersion();
+    }
+    int count = this.changes.size();
+    return count - this.checkpoints.floorKey(count) >= CHECKPOINT_INTERVAL ? count : -1;
+  }
+
+  /**
+   * Keeps {@code fork} as the checkpoint after {@code count} changes if no other change was
+   * recorded since it was due.
+   */
+  private synchronized void checkpoint(Recorder recorder, int count,
+                                       JungleFriendsSanctuary fork) {
+    if (recorder == this.recorder && this.changes.size() == count) {
+      this.keepCheckpoint(count, fork);
+    }
+  }
+
+  private void keepCheckpoint(int count, JungleFriendsSanctuary sanctuary) {
+    if (this.checkpoints.size() > MAX_CHECKPOINTS) {
+      this.checkpoints.remove(this.checkpoints.higherKey(0));
+    }
+    this.checkpoints.put(count, sanctuary);
+  }
+
+  private void endVersion() {
+    this.versionEnds.add(this.changes.size());
+    this.version++;
+  }
+
+  /**
+   * Builds the sanctuary after the first {@code count} changes from the nearest earlier
+   * checkpoint, keeping a checkpoint at every interval it passes.
+   */
+  private JungleFriendsSanctuary replay(int count) {
+    Map.Entry<Integer, JungleFriendsSanctuary> checkpoint = this.checkpoints.floorEntry(count);
+    JungleFriendsSanctuary sanctuary = checkpoint.getValue().fork();
+    int applied = checkpoint.getKey();
+    while (applied < count) {
+      int next = Math.min(count, (applied / CHECKPOINT_INTERVAL + 1) * CHECKPOINT_INTERVAL);
+      this.apply(sanctuary, applied, next);
+      applied = next;
+      if (applied - this.checkpoints.floorKey(applied) >= CHECKPOINT_INTERVAL) {
+        this.keepCheckpoint(applied, sanctuary.fork());
+      }
+    }
+    return sanctuary;
+  }
+
+  private void apply(JungleFriendsSanctuary sanctuary, int from, int to) {
+    for (int i = from; i < to; i++) {
+      sanctuary.applyChange(this.changes.get(i));
+    }
+  }
+
+  private void attach(JungleFriendsSanctuary sanctuary) {
+    this.recorder = new Recorder(sanctuary);
+    this.sanctuary = sanctuary;
+    sanctuary.addChangeListenerFromNow(this.recorder);
+  }
+
+  /**
+   * Listener of one recorded sanctuary. Sanctuaries that were replaced by an undo or redo keep
+   * their recorder, which then ignores their changes. Checkpoints are forked outside the monitor
+   * of the history, because forking takes the monitor of the sanctuary and edits take the two
+   * in the other order.
+   */
+  private final class Recorder implements Consumer<SanctuaryChange> {
+
+    private final JungleFriendsSanctuary sanctuary;
+
+    Recorder(JungleFriendsSanctuary sanctuary) {
+      this.sanctuary = sanctuary;
+    }
+
+    @Override
+    public void accept(SanctuaryChange change) {
+      int count = SanctuaryHistory.this.record(this, change);
+      if (count >= 0) {
+        SanctuaryHistory.this.checkpoint(this, count, this.sanctuary.fork());
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package sanctuary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks undo, redo and queries of earlier versions of a {@link SanctuaryHistory}. Versions are
+ * made of one random change or of more changes than lie between two checkpoints, and every
+ * version reached by {@link SanctuaryHistory#asOf(long)}, undo or redo must look as it did when
+ * it was made. Throws {@link AssertionError} at the first difference.
+ */
+public final class SanctuaryHistoryCheck {
+
+  private static final int LONG_EDIT_CHANGES = 150;
+
+  private SanctuaryHistoryCheck() {
+  }
+
+  /**
+   * Runs the checks.
+   * Usage: {@code SanctuaryHistoryCheck [versions] [seed]}
+   *
+   * @param args number of versions to make and the seed their changes are drawn with
+   */
+  public static void main(String[] args) {
+    int versionCount = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+    Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 43);
+    JungleFriendsSanctuary sanctuary = SanctuaryForkCheck.newSanctuary(300);
+    for (int i = 0; i < 400; i++) {
+      SanctuaryForkCheck.changeRandomly(sanctuary, random);
+    }
+    SanctuaryHistory history = new SanctuaryHistory(sanctuary);
+    List<String> versions = new ArrayList<>();
+    versions.add(SanctuaryForkCheck.describe(history.getSanctuary()));
+    record(history, versions, random, versionCount);
+    checkAsOf(history, versions);
+    while (history.canUndo()) {
+      history.undo();
+      checkCurrent(history, versions, "undo");
+    }
+    while (history.canRedo()) {
+      history.redo();
+      checkCurrent(history, versions, "redo");
+    }
+    for (int i = 0; i < versionCount / 3; i++) {
+      history.undo();
+    }
+    versions.subList((int) history.getVersion() + 1, versions.size()).clear();
+    record(history, versions, random, versionCount / 3);
+    check(history.getLatestVersion() == versions.size() - 1 && !history.canRedo(),
+            "a change after an undo drops the undone versions");
+    checkAsOf(history, versions);
+    while (history.canUndo()) {
+      history.undo();
+    }
+    checkCurrent(history, versions, "undo to the first version");
+    System.out.println("History checks passed: " + history.getLatestVersion() + " versions.");
+  }
+
+  /**
+   * Makes up to {@code count} versions, most of one random change and some of more changes than
+   * a checkpoint interval, and records how each looks.
+   */
+  private static void record(SanctuaryHistory history, List<String> versions, Random random,
+                             int count) {
+    for (int i = 0; i < count; i++) {
+      int changes = i % 50 == 49 ? LONG_EDIT_CHANGES : 1;
+      history.edit(sanctuary -> {
+        for (int change = 0; change < changes; change++) {
+          SanctuaryForkCheck.changeRandomly(sanctuary, random);
+        }
+      });
+      if (history.getVersion() == versions.size()) {
+        versions.add(SanctuaryForkCheck.describe(history.getSanctuary()));
+      }
+      check(history.getVersion() == versions.size() - 1, "an edit makes at most one version");
+    }
+  }
+
+  private static void checkAsOf(SanctuaryHistory history, List<String> versions) {
+    for (int version = 0; version < versions.size(); version++) {
+      check(SanctuaryForkCheck.describe(history.asOf(version)).equals(versions.get(version)),
+              "version " + version + " looks as it did when it was made");
+    }
+  }
+
+  private static void checkCurrent(SanctuaryHistory history, List<String> versions,
+                                   String step) {
+    long version = history.getVersion();
+    check(SanctuaryForkCheck.describe(history.getSanctuary()).equals(
+            versions.get((int) version)), step + " reaches version " + version + " as it was");
+  }
+
+  private static void check(boolean condition, String expectation) {
+    if (!condition) {
+      throw new AssertionError("Expected that " + expectation + ".");
+    }
+  }
+}
@@ -0,0 +1,499 @@
+package sanctuary;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted map kept as a B-tree whose nodes are shared between a map and its forks. A fork takes
+ * constant time: from then on neither map owns the nodes they share, and a change copies the
+ * nodes on the path to the entry it changes, at most a few dozen entries per level, while every
+ * other node stays shared. Nodes created after the fork belong to one map and are changed in
+ * place. Every node counts the entries below it, so the entry at a given rank is found in
+ * logarithmic time too. Nodes may be left less than half full by removals, and neighbours are
+ * merged once they fit in one node.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+final class SharedTreeMap<K, V> {
+
+  private static final int MAX_LENGTH = 32;
+  private static final int MIN_LENGTH = MAX_LENGTH / 4;
+
+  private final Comparator<? super K> order;
+  private Node root;
+  private int size;
+  private Object owner;
+  private V previous;
+
+  SharedTreeMap(Comparator<? super K> order) {
+    this.order = order;
+    this.owner = new Object();
+  }
+
+  private SharedTreeMap(SharedTreeMap<K, V> map) {
+    this.order = map.order;
+    this.root = map.root;
+    this.size = map.size;
+    this.owner = new Object();
+  }
+
+  /**
+   * Returns a map with the same entries that shares every node with this one. Both maps copy a
+   * shared node before changing it.
+   */
+  SharedTreeMap<K, V> fork() {
+    this.owner = new Object();
+    return new SharedTreeMap<>(this);
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(K key) {
+    Node node = this.root;
+    if (node == null) {
+      return null;
+    }
+    while (node.children != null) {
+      node = node.children[this.childIndex(node, key)];
+    }
+    int index = this.search(node, key);
+    return index < 0 ? null : (V) node.values[index];
+  }
+
+  boolean containsKey(K key) {
+    Node node = this.root;
+    if (node == null) {
+      return false;
+    }
+    while (node.children != null) {
+      node = node.children[this.childIndex(node, key)];
+    }
+    return this.search(node, key) >= 0;
+  }
+
+  /**
+   * Returns the value of the entry with {@code index} entries before it.
+   *
+   * @throws IndexOutOfBoundsException if there is no such entry.
+   */
+  @SuppressWarnings("unchecked")
+  V getAt(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    Node node = this.root;
+    while (node.children != null) {
+      int child = 0;
+      while (index >= node.children[child].size) {
+        index -= node.children[child].size;
+        child++;
+      }
+      node = node.children[child];
+    }
+    return (V) node.values[index];
+  }
+
+  /**
+   * Returns the greatest key, or {@code null} if the map is empty.
+   */
+  @SuppressWarnings("unchecked")
+  K lastKey() {
+    Node node = this.root;
+    if (node == null) {
+      return null;
+    }
+    while (node.children != null) {
+      node = node.children[node.length - 1];
+    }
+    return (K) node.keys[node.length - 1];
+  }
+
+  /**
+   * Maps {@code key} to {@code value} and returns the value it replaced, or {@code null}.
+   */
+  V put(K key, V value) {
+    if (this.root == null) {
+      this.root = new Node(this.owner, false);
+    }
+    this.root = this.writable(this.root);
+    this.previous = null;
+    int sizeBefore = this.root.size;
+    Node right = this.insert(this.root, key, value);
+    if (right != null) {
+      Node root = new Node(this.owner, true);
+      root.keys[0] = this.root.keys[0];
+      root.children[0] = this.root;
+      root.keys[1] = right.keys[0];
+      root.children[1] = right;
+      root.length = 2;
+      root.size = this.root.size + right.size;
+      this.root = root;
+    }
+    this.size += this.root.size - sizeBefore;
+    V previous = this.previous;
+    this.previous = null;
+    return previous;
+  }
+
+  /**
+   * Removes the entry of {@code key} and returns its value, or {@code null} if there is none.
+   */
+  V remove(K key) {
+    if (!this.containsKey(key)) {
+      return null;
+    }
+    this.root = this.writable(this.root);
+    V removed = this.delete(this.root, key);
+    this.size--;
+    while (this.root.children != null && this.root.length == 1) {
+      this.root = this.root.children[0];
+    }
+    if (this.root.length == 0) {
+      this.root = null;
+    }
+    return removed;
+  }
+
+  /**
+   * Returns the entries in key order, starting at {@code from}, or at the first entry if
+   * {@code from} is {@code null}. The map must not change while the entries are read.
+   */
+  Iterator<Map.Entry<K, V>> entries(K from, boolean inclusive) {
+    Cursor cursor = new Cursor(from, inclusive);
+    return new Iterator<Map.Entry<K, V>>() {
+      @Override
+      public boolean hasNext() {
+        return cursor.hasNext();
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public Map.Entry<K, V> next() {
+        Node leaf = cursor.advance();
+        int index = cursor.positions[cursor.depth] - 1;
+        return new AbstractMap.SimpleImmutableEntry<>((K) leaf.keys[index],
+                (V) leaf.values[index]);
+      }
+    };
+  }
+
+  /**
+   * Returns the values in key order, starting at {@code from} as for {@link #entries}.
+   */
+  Iterator<V> values(K from, boolean inclusive) {
+    Cursor cursor = new Cursor(from, inclusive);
+    return new Iterator<V>() {
+      @Override
+      public boolean hasNext() {
+        return cursor.hasNext();
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public V next() {
+        Node leaf = cursor.advance();
+        return (V) leaf.values[cursor.positions[cursor.depth] - 1];
+      }
+    };
+  }
+
+  Iterator<V> values() {
+    return this.values(null, true);
+  }
+
+  /**
+   * Adds the entry to the subtree of {@code node}, which this map owns, and returns the new
+   * right half if the node had to be split.
+   */
+  private Node insert(Node node, K key, V value) {
+    if (node.children == null) {
+      int index = this.search(node, key);
+      if (index >= 0) {
+        this.previous = this.value(node, index);
+        node.values[index] = value;
+        return null;
+      }
+      index = -index - 1;
+      System.arraycopy(node.keys, index, node.keys, index + 1, node.length - index);
+      System.arraycopy(node.values, index, node.values, index + 1, node.length - index);
+      node.keys[index] = key;
+      node.values[index] = value;
+      node.length++;
+      node.size++;
+      return node.length == MAX_LENGTH ? this.split(node) : null;
+    }
+    int index = this.childIndex(node, key);
+    Node child = this.writableChild(node, index);
+    int childSize = child.size;
+    Node right = this.insert(child, key, value);
+    node.size += child.size - childSize;
+    if (right == null) {
+      return null;
+    }
+    node.size += right.size;
+    System.arraycopy(node.keys, index + 1, node.keys, index + 2, node.length - index - 1);
+    System.arraycopy(node.children, index + 1, node.children, index + 2,
+            node.length - index - 1);
+    node.keys[index + 1] = right.keys[0];
+    node.children[index + 1] = right;
+    node.length++;
+    return node.length == MAX_LENGTH ? this.split(node) : null;
+  }
+
+  /**
+   * Moves the upper half of the full {@code node} to a new node and returns it.
+   */
+  private Node split(Node node) {
+    Node right = new Node(this.owner, node.children != null);
+    int half = node.length / 2;
+    right.length = node.length - half;
+    System.arraycopy(node.keys, half, right.keys, 0, right.length);
+    Arrays.fill(node.keys, half, node.length, null);
+    if (node.children == null) {
+      System.arraycopy(node.values, half, right.values, 0, right.length);
+      Arrays.fill(node.values, half, node.length, null);
+      right.size = right.length;
+    } else {
+      System.arraycopy(node.children, half, right.children, 0, right.length);
+      Arrays.fill(node.children, half, node.length, null);
+      for (int i = 0; i < right.length; i++) {
+        right.size += right.children[i].size;
+      }
+    }
+    node.length = half;
+    node.size -= right.size;
+    return right;
+  }
+
+  /**
+   * Removes the entry of {@code key}, which is in the subtree of {@code node}, and returns its
+   * value.
+   */
+  private V delete(Node node, K key) {
+    if (node.children == null) {
+      int index = this.search(node, key);
+      V removed = this.value(node, index);
+      this.removeAt(node, index);
+      node.size--;
+      return removed;
+    }
+    int index = this.childIndex(node, key);
+    Node child = this.writableChild(node, index);
+    V removed = this.delete(child, key);
+    node.size--;
+    if (child.length == 0) {
+      this.removeAt(node, index);
+    } else if (child.length < MIN_LENGTH && node.length > 1) {
+      int left = index > 0 ? index - 1 : index;
+      if (node.children[left].length + node.children[left + 1].length < MAX_LENGTH) {
+        this.merge(node, left);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Moves the entries of the child after {@code left} into the child at {@code left}.
+   */
+  private void merge(Node node, int left) {
+    Node target = this.writableChild(node, left);
+    Node source = node.children[left + 1];
+    System.arraycopy(source.keys, 0, target.keys, target.length, source.length);
+    if (target.children == null) {
+      System.arraycopy(source.values, 0, target.values, target.length, source.length);
+    } else {
+      System.arraycopy(source.children, 0, target.children, target.length, source.length);
+    }
+    target.length += source.length;
+    target.size += source.size;
+    this.removeAt(node, left + 1);
+  }
+
+  private void removeAt(Node node, int index) {
+    int moved = node.length - index - 1;
+    System.arraycopy(node.keys, index + 1, node.keys, index, moved);
+    node.keys[node.length - 1] = null;
+    if (node.children == null) {
+      System.arraycopy(node.values, index + 1, node.values, index, moved);
+      node.values[node.length - 1] = null;
+    } else {
+      System.arraycopy(node.children, index + 1, node.children, index, moved);
+      node.children[node.length - 1] = null;
+    }
+    node.length--;
+  }
+
+  private Node writable(Node node) {
+    return node.owner == this.owner ? node : new Node(node, this.owner);
+  }
+
+  private Node writableChild(Node node, int index) {
+    Node child = this.writable(node.children[index]);
+    node.children[index] = child;
+    return child;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V value(Node leaf, int index) {
+    return (V) leaf.values[index];
+  }
+
+  /**
+   * Returns the index of {@code key} in the leaf, or {@code -(insertion point) - 1}.
+   */
+  @SuppressWarnings("unchecked")
+  private int search(Node leaf, K key) {
+    int low = 0;
+    int high = leaf.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = this.order.compare((K) leaf.keys[middle], key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -low - 1;
+  }
+
+  /**
+   * Returns the child of the branch whose keys {@code key} falls among. The first key of a
+   * branch does not bound its first child, which takes every key below the second.
+   */
+  @SuppressWarnings("unchecked")
+  private int childIndex(Node branch, K key) {
+    int low = 1;
+    int high = branch.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (this.order.compare((K) branch.keys[middle], key) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * A node holding up to {@link #MAX_LENGTH} keys with their values, or with the children
+   * holding the keys from each one on. A node is changed in place only by the map that owns it.
+   */
+  private static final class Node {
+
+    private final Object owner;
+    private final Object[] keys;
+    private final Object[] values;
+    private final Node[] children;
+    private int length;
+    private int size;
+
+    Node(Object owner, boolean branch) {
+      this.owner = owner;
+      this.keys = new Object[MAX_LENGTH];
+      this.values = branch ? null : new Object[MAX_LENGTH];
+      this.children = branch ? new Node[MAX_LENGTH] : null;
+    }
+
+    Node(Node node, Object owner) {
+      this.owner = owner;
+      this.keys = node.keys.clone();
+      this.values = node.values == null ? null : node.values.clone();
+      this.children = node.children == null ? null : node.children.clone();
+      this.length = node.length;
+      this.size = node.size;
+    }
+  }
+
+  /**
+   * Position in the tree as the path of nodes from the root to a leaf and the index taken in
+   * each. The index in the leaf is that of the next entry.
+   */
+  private final class Cursor {
+
+    private final Node[] path;
+    private final int[] positions;
+    private int depth;
+
+    Cursor(K from, boolean inclusive) {
+      int height = 0;
+      for (Node node = SharedTreeMap.this.root; node != null;
+           node = node.children == null ? null : node.children[0]) {
+        height++;
+      }
+      this.path = new Node[height];
+      this.positions = new int[height];
+      Node node = SharedTreeMap.this.root;
+      for (int level = 0; node != null; level++) {
+        this.path[level] = node;
+        this.depth = level;
+        if (node.children != null) {
+          int index = from == null ? 0 : SharedTreeMap.this.childIndex(node, from);
+          this.positions[level] = index;
+          node = node.children[index];
+        } else {
+          int index = from == null ? 0 : SharedTreeMap.this.search(node, from);
+          if (index < 0) {
+            index = -index - 1;
+          } else if (from != null && !inclusive) {
+            index++;
+          }
+          this.positions[level] = index;
+          node = null;
+        }
+      }
+    }
+
+    boolean hasNext() {
+      if (this.path.length == 0) {
+        return false;
+      }
+      if (this.positions[this.depth] < this.path[this.depth].length) {
+        return true;
+      }
+      for (int level = this.depth - 1; level >= 0; level--) {
+        if (this.positions[level] + 1 < this.path[level].length) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Moves past the next entry and returns the leaf holding it.
+     */
+    Node advance() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (this.positions[this.depth] == this.path[this.depth].length) {
+        int level = this.depth - 1;
+        while (this.positions[level] + 1 == this.path[level].length) {
+          level--;
+        }
+        this.positions[level]++;
+        for (; level < this.depth; level++) {
+          this.path[level + 1] = this.path[level].children[this.positions[level]];
+          this.positions[level + 1] = 0;
+        }
+      }
+      this.positions[this.depth]++;
+      return this.path[this.depth];
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package sanctuary;
+
+/**
+ * Shares the strings that many monkeys and housings would otherwise each hold a copy of. Names
+ * are looked up in a fixed-size table where a name replaces whatever name was in its slot, so
+ * the names that keep coming back are shared while unique names cost nothing to keep. Housing
+ * ids are rendered once per number and reused by every sanctuary, fork and listing.
+ */
+final class StringPool {
+
+  private static final int NAME_SLOTS = 1 << 14;
+  private static final int MAX_POOLED_ID = 1 << 24;
+
+  private static final String[] NAMES = new String[NAME_SLOTS];
+  private static final IdTable ENCLOSURE_IDS = new IdTable("ENC");
+  private static final IdTable ISOLATION_IDS = new IdTable("ISO");
+
+  private StringPool() {
+  }
+
+  /**
+   * Returns the pooled string equal to {@code name}, pooling {@code name} if there is none.
+   * Every name has a pair of slots, and a new name pushes the older of the pair out, so two
+   * common names that share a pair are both kept. Strings are immutable, so threads racing on a
+   * slot at worst miss a chance to share.
+   */
+  static String name(String name) {
+    int slot = ((name.hashCode() * 0x9E3779B9)
+            >>> (Integer.SIZE - Integer.numberOfTrailingZeros(NAME_SLOTS))) & ~1;
+    String pooled = NAMES[slot];
+    if (name.equals(pooled)) {
+      return pooled;
+    }
+    String older = NAMES[slot + 1];
+    if (name.equals(older)) {
+      return older;
+    }
+    NAMES[slot + 1] = pooled;
+    NAMES[slot] = name;
+    return name;
+  }
+
+  static String enclosureId(int number) {
+    return ENCLOSURE_IDS.get(number);
+  }
+
+  static String isolationId(int number) {
+    return ISOLATION_IDS.get(number);
+  }
+
+  /**
+   * Ids with one prefix, indexed by number and rendered the first time they are asked for.
+   */
+  private static final class IdTable {
+
+    private final String prefix;
+    private volatile String[] ids;
+
+    IdTable(String prefix) {
+      this.prefix = prefix;
+      this.ids = new String[0];
+    }
+
+    String get(int number) {
+      String[] ids = this.ids;
+      if (number >= 0 && number < ids.length && ids[number] != null) {
+        return ids[number];
+      }
+      return this.render(number);
+    }
+
+    private synchronized String render(int number) {
+      if (number < 0 || number > MAX_POOLED_ID) {
+        return this.prefix + number;
+      }
+      String[] ids = this.ids;
+      if (number >= ids.length) {
+        String[] grown = new String[Math.max(number + 1, Math.max(ids.length * 2, 64))];
+        System.arraycopy(ids, 0, grown, 0, ids.length);
+        ids = grown;
+      }
+      if (ids[number] == null) {
+        ids[number] = this.prefix + number;
+      }
+      this.ids = ids;
+      return ids[number];
+    }
+  }
+}
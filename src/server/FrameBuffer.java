@@ -0,0 +1,116 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A growable buffer that frames are encoded into before they are written to a channel. A frame
+ * is its length, a request id, an operation or status byte and the payload.
+ */
+final class FrameBuffer {
+
+  private ByteBuffer buffer;
+  private int frameStart;
+
+  FrameBuffer(int capacity) {
+    this.buffer = ByteBuffer.allocate(capacity);
+    this.frameStart = -1;
+  }
+
+  void beginFrame(int requestId, byte code) {
+    this.frameStart = this.buffer.position();
+    this.ensure(SanctuaryProtocol.HEADER_LENGTH);
+    this.buffer.putInt(0).putInt(requestId).put(code);
+  }
+
+  void endFrame() {
+    this.buffer.putInt(this.frameStart, this.buffer.position() - this.frameStart - Integer.BYTES);
+    this.frameStart = -1;
+  }
+
+  /**
+   * Returns the length the frame begun last would have if it ended now, not counting the length
+   * itself.
+   */
+  int frameLength() {
+    return this.buffer.position() - this.frameStart - Integer.BYTES;
+  }
+
+  /**
+   * Drops the frame begun last, for example when its payload failed to encode.
+   */
+  void abortFrame() {
+    this.buffer.position(this.frameStart);
+    this.frameStart = -1;
+  }
+
+  FrameBuffer putByte(int value) {
+    this.ensure(Byte.BYTES);
+    this.buffer.put((byte) value);
+    return this;
+  }
+
+  FrameBuffer putBoolean(boolean value) {
+    return this.putByte(value ? 1 : 0);
+  }
+
+  FrameBuffer putInt(int value) {
+    this.ensure(Integer.BYTES);
+    this.buffer.putInt(value);
+    return this;
+  }
+
+  FrameBuffer putDouble(double value) {
+    this.ensure(Double.BYTES);
+    this.buffer.putDouble(value);
+    return this;
+  }
+
+  /**
+   * Puts {@code value} as its UTF-8 length in a short, -1 for {@code null}, and its bytes.
+   */
+  FrameBuffer putString(String value) {
+    if (value == null) {
+      this.ensure(Short.BYTES);
+      this.buffer.putShort((short) -1);
+      return this;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("String is too long to send. Length: " + bytes.length);
+    }
+    this.ensure(Short.BYTES + bytes.length);
+    this.buffer.putShort((short) bytes.length).put(bytes);
+    return this;
+  }
+
+  boolean isEmpty() {
+    return this.buffer.position() == 0;
+  }
+
+  /**
+   * Returns the encoded frames, ready to be written. {@link #compact()} must be called after
+   * writing.
+   */
+  ByteBuffer flip() {
+    this.buffer.flip();
+    return this.buffer;
+  }
+
+  /**
+   * Keeps the bytes not yet written after {@link #flip()} and makes room for more frames.
+   */
+  void compact() {
+    this.buffer.compact();
+  }
+
+  private void ensure(int bytes) {
+    if (this.buffer.remaining() < bytes) {
+      int capacity = Math.max(this.buffer.capacity() * 2, this.buffer.position() + bytes);
+      ByteBuffer grown = ByteBuffer.allocate(capacity);
+      this.buffer.flip();
+      grown.put(this.buffer);
+      this.buffer = grown;
+    }
+  }
+}
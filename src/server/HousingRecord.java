@@ -0,0 +1,47 @@
+package server;
+
+import java.util.Collections;
+import java.util.List;
+
+import enums.HousingType;
+import enums.Species;
+
+/**
+ * A housing as a {@link SanctuaryServer} listed it: its id, type, the species it houses and the
+ * ids of its residents. Later changes on the server do not show through.
+ */
+public class HousingRecord {
+
+  private final String id;
+  private final HousingType housingType;
+  private final Species species;
+  private final List<String> residentIds;
+
+  HousingRecord(String id, HousingType housingType, Species species, List<String> residentIds) {
+    this.id = id;
+    this.housingType = housingType;
+    this.species = species;
+    this.residentIds = Collections.unmodifiableList(residentIds);
+  }
+
+  public String getId() {
+    return this.id;
+  }
+
+  public HousingType getHousingType() {
+    return this.housingType;
+  }
+
+  /**
+   * Returns the species of the residents.
+   *
+   * @return the species, or {@code null} if the housing is empty
+   */
+  public Species getSpecies() {
+    return this.species;
+  }
+
+  public List<String> getResidentIds() {
+    return this.residentIds;
+  }
+}
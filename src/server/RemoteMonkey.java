@@ -0,0 +1,69 @@
+package server;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import federation.MonkeyRecord;
+import sanctuary.Primate;
+
+/**
+ * A monkey as a {@link SanctuaryServer} listed it. Later changes on the server do not show
+ * through.
+ */
+final class RemoteMonkey implements Primate {
+
+  private final String id;
+  private final MonkeyRecord monkey;
+
+  RemoteMonkey(String id, MonkeyRecord monkey) {
+    this.id = id;
+    this.monkey = monkey;
+  }
+
+  @Override
+  public String getId() {
+    return this.id;
+  }
+
+  @Override
+  public String getName() {
+    return this.monkey.getName();
+  }
+
+  @Override
+  public MonkeySize getSize() {
+    return this.monkey.getSize();
+  }
+
+  @Override
+  public double getWeight() {
+    return this.monkey.getWeight();
+  }
+
+  @Override
+  public int getAge() {
+    return this.monkey.getAge();
+  }
+
+  @Override
+  public Species getSpecies() {
+    return this.monkey.getSpecies();
+  }
+
+  @Override
+  public Sex getSex() {
+    return this.monkey.getSex();
+  }
+
+  @Override
+  public HealthStatus getHealthStatus() {
+    return this.monkey.getHealthStatus();
+  }
+
+  @Override
+  public FavoriteFood getFavoriteFood() {
+    return this.monkey.getFavoriteFood();
+  }
+}
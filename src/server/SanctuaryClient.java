@@ -0,0 +1,489 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import federation.MonkeyRecord;
+import sanctuary.Page;
+import sanctuary.Primate;
+
+/**
+ * Client of a {@link SanctuaryServer}. Every request returns at once with a future of its
+ * result, so many requests can be in flight on the one connection. Requests made while earlier
+ * ones are being sent are sent together in one write. A failure of a request on the server
+ * completes its future with the matching exception. The client can be used by many threads.
+ */
+public class SanctuaryClient implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final SocketChannel channel;
+  private final Map<Integer, Request<?>> inFlight;
+  private final Thread writer;
+  private final Thread reader;
+  private FrameBuffer pending;
+  private FrameBuffer sending;
+  private int nextRequestId;
+  private boolean closed;
+
+  /**
+   * Connects to the sanctuary server listening on {@code port} of the loopback interface.
+   *
+   * @param port the port of the sanctuary server
+   * @throws IOException if the connection cannot be made.
+   */
+  public SanctuaryClient(int port) throws IOException {
+    this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  /**
+   * Connects to the sanctuary server listening on {@code port} of {@code host}.
+   *
+   * @param host name or address of the host of the sanctuary server
+   * @param port the port of the sanctuary server
+   * @throws IOException if the host is unknown or the connection cannot be made.
+   */
+  public SanctuaryClient(String host, int port) throws IOException {
+    this(resolve(host, port));
+  }
+
+  private SanctuaryClient(InetSocketAddress server) throws IOException {
+    this.channel = SocketChannel.open(server);
+    this.channel.socket().setTcpNoDelay(true);
+    this.inFlight = new ConcurrentHashMap<>();
+    this.pending = new FrameBuffer(BUFFER_SIZE);
+    this.sending = new FrameBuffer(BUFFER_SIZE);
+    this.writer = new Thread(this::writeRequests, "sanctuary-client-writer");
+    this.writer.setDaemon(true);
+    this.reader = new Thread(this::readResponses, "sanctuary-client-reader");
+    this.reader.setDaemon(true);
+    this.writer.start();
+    this.reader.start();
+  }
+
+  /**
+   * Adds a monkey to the sanctuary.
+   *
+   * @param monkey   the monkey
+   * @param location id of the isolation cage for the monkey, or {@code null} for any free one
+   * @return future of the id of the new monkey
+   */
+  public CompletableFuture<String> addMonkey(MonkeyRecord monkey, String location) {
+    return this.send(SanctuaryProtocol.ADD_MONKEY, out -> {
+      SanctuaryProtocol.putMonkey(out, monkey);
+      out.putString(location);
+    }, SanctuaryProtocol::getString);
+  }
+
+  /**
+   * Reads the current attributes of a monkey.
+   *
+   * @param monkeyId id of the monkey
+   * @return future of the monkey, or of {@code null} if it is not in the sanctuary
+   */
+  public CompletableFuture<MonkeyRecord> getMonkey(String monkeyId) {
+    return this.send(SanctuaryProtocol.GET_MONKEY, out -> out.putString(monkeyId),
+        in -> SanctuaryProtocol.getBoolean(in) ? SanctuaryProtocol.getMonkey(in) : null);
+  }
+
+  /**
+   * Finds the housing of a monkey.
+   *
+   * @param monkeyId id of the monkey
+   * @return future of the id of its housing, or of {@code null} if the monkey is not housed
+   */
+  public CompletableFuture<String> locateMonkey(String monkeyId) {
+    return this.send(SanctuaryProtocol.LOCATE_MONKEY, out -> out.putString(monkeyId),
+            SanctuaryProtocol::getString);
+  }
+
+  public CompletableFuture<Void> moveMonkey(String housingId, String monkeyId) {
+    return this.send(SanctuaryProtocol.MOVE_MONKEY,
+        out -> out.putString(housingId).putString(monkeyId), in -> null);
+  }
+
+  public CompletableFuture<Void> moveMonkeyToEnclosure(String monkeyId) {
+    return this.send(SanctuaryProtocol.MOVE_MONKEY_TO_ENCLOSURE, out -> out.putString(monkeyId),
+        in -> null);
+  }
+
+  public CompletableFuture<Void> moveMonkeyToIsolation(String monkeyId) {
+    return this.send(SanctuaryProtocol.MOVE_MONKEY_TO_ISOLATION, out -> out.putString(monkeyId),
+        in -> null);
+  }
+
+  public CompletableFuture<Void> removeMonkey(String monkeyId) {
+    return this.send(SanctuaryProtocol.REMOVE_MONKEY, out -> out.putString(monkeyId),
+        in -> null);
+  }
+
+  public CompletableFuture<Void> updateMonkeyHealthStatus(String monkeyId,
+                                                          HealthStatus healthStatus) {
+    return this.send(SanctuaryProtocol.UPDATE_HEALTH_STATUS,
+        out -> out.putString(monkeyId).putByte(healthStatus.ordinal()), in -> null);
+  }
+
+  public CompletableFuture<Void> updateMonkeySize(String monkeyId, MonkeySize size) {
+    return this.send(SanctuaryProtocol.UPDATE_SIZE,
+        out -> out.putString(monkeyId).putByte(size.ordinal()), in -> null);
+  }
+
+  public CompletableFuture<Void> updateMonkeyWeight(String monkeyId, double weight) {
+    return this.send(SanctuaryProtocol.UPDATE_WEIGHT,
+        out -> out.putString(monkeyId).putDouble(weight), in -> null);
+  }
+
+  public CompletableFuture<Void> updateMonkeyAge(String monkeyId, int age) {
+    return this.send(SanctuaryProtocol.UPDATE_AGE,
+        out -> out.putString(monkeyId).putInt(age), in -> null);
+  }
+
+  public CompletableFuture<Map<FavoriteFood, Integer>> getFavFoodShoppingList() {
+    return this.send(SanctuaryProtocol.FAV_FOOD_SHOPPING_LIST, out -> { }, in -> {
+      Map<FavoriteFood, Integer> shoppingList = new EnumMap<>(FavoriteFood.class);
+      for (int i = in.getInt(); i > 0; i--) {
+        shoppingList.put(SanctuaryProtocol.getEnum(in, SanctuaryProtocol.FOODS), in.getInt());
+      }
+      return shoppingList;
+    });
+  }
+
+  public CompletableFuture<Map<Species, List<String>>> getSpeciesWithLocations() {
+    return this.send(SanctuaryProtocol.SPECIES_WITH_LOCATIONS, out -> { }, in -> {
+      Map<Species, List<String>> speciesWithLocations = new TreeMap<>();
+      for (int i = in.getInt(); i > 0; i--) {
+        Species species = SanctuaryProtocol.getEnum(in, SanctuaryProtocol.SPECIES);
+        List<String> locations = new ArrayList<>();
+        for (int j = in.getInt(); j > 0; j--) {
+          locations.add(SanctuaryProtocol.getString(in));
+        }
+        speciesWithLocations.put(species, locations);
+      }
+      return speciesWithLocations;
+    });
+  }
+
+  public CompletableFuture<Map<String, Map<Sex, FavoriteFood>>> getEnclosureSign(
+          String enclosureId) {
+    return this.send(SanctuaryProtocol.ENCLOSURE_SIGN, out -> out.putString(enclosureId), in -> {
+      Map<String, Map<Sex, FavoriteFood>> sign = new TreeMap<>();
+      for (int i = in.getInt(); i > 0; i--) {
+        String name = SanctuaryProtocol.getString(in);
+        Map<Sex, FavoriteFood> details = new EnumMap<>(Sex.class);
+        details.put(SanctuaryProtocol.getEnum(in, SanctuaryProtocol.SEXES),
+                SanctuaryProtocol.getEnum(in, SanctuaryProtocol.FOODS));
+        sign.put(name, details);
+      }
+      return sign;
+    });
+  }
+
+  public CompletableFuture<Void> addCapacity(int numOfNewIsolationCages, int[] sizeOfEnclosures) {
+    return this.send(SanctuaryProtocol.ADD_CAPACITY, out -> {
+      out.putInt(numOfNewIsolationCages).putInt(sizeOfEnclosures.length);
+      for (int size : sizeOfEnclosures) {
+        out.putInt(size);
+      }
+    }, in -> null);
+  }
+
+  /**
+   * Reads a page of the current monkeys in order of their ids, as
+   * {@link sanctuary.Sanctuary#getMonkeysPage} does.
+   *
+   * @param cursor   cursor returned with the previous page, or {@code null} for the first page
+   * @param pageSize the most monkeys on the page
+   * @return future of the page
+   */
+  public CompletableFuture<Page<Primate>> getMonkeysPage(String cursor, int pageSize) {
+    return this.send(SanctuaryProtocol.MONKEYS_PAGE,
+        out -> out.putString(cursor).putInt(pageSize), SanctuaryClient::getMonkeys);
+  }
+
+  /**
+   * Reads a page of the alumni monkeys in the order they left the sanctuary, as
+   * {@link sanctuary.Sanctuary#getAlumniMonkeysPage} does.
+   *
+   * @param cursor   cursor returned with the previous page, or {@code null} for the first page
+   * @param pageSize the most alumni on the page
+   * @return future of the page
+   */
+  public CompletableFuture<Page<Primate>> getAlumniMonkeysPage(String cursor, int pageSize) {
+    return this.send(SanctuaryProtocol.ALUMNI_MONKEYS_PAGE,
+        out -> out.putString(cursor).putInt(pageSize), SanctuaryClient::getMonkeys);
+  }
+
+  /**
+   * Reads a page of the housings, as {@link sanctuary.Sanctuary#getHousingsPage} does.
+   *
+   * @param cursor   cursor returned with the previous page, or {@code null} for the first page
+   * @param pageSize the most housings on the page
+   * @return future of the page
+   */
+  public CompletableFuture<Page<HousingRecord>> getHousingsPage(String cursor, int pageSize) {
+    return this.send(SanctuaryProtocol.HOUSINGS_PAGE,
+        out -> out.putString(cursor).putInt(pageSize), in -> {
+          List<HousingRecord> housings = new ArrayList<>();
+          for (int i = in.getInt(); i > 0; i--) {
+            housings.add(SanctuaryProtocol.getHousing(in));
+          }
+          return new Page<>(housings, SanctuaryProtocol.getString(in));
+        });
+  }
+
+  public CompletableFuture<List<String>> getLocationsForSpecies(Species species) {
+    return this.send(SanctuaryProtocol.LOCATIONS_FOR_SPECIES,
+        out -> out.putByte(species.ordinal()), in -> {
+          List<String> locations = new ArrayList<>();
+          for (int i = in.getInt(); i > 0; i--) {
+            locations.add(SanctuaryProtocol.getString(in));
+          }
+          return locations;
+        });
+  }
+
+  public CompletableFuture<Map<String, Map<HousingType, String>>> getAllMonkeysWithLocations() {
+    return this.send(SanctuaryProtocol.ALL_MONKEYS_WITH_LOCATIONS, out -> { }, in -> {
+      Map<String, Map<HousingType, String>> monkeysWithLocations = new TreeMap<>();
+      for (int i = in.getInt(); i > 0; i--) {
+        String name = SanctuaryProtocol.getString(in);
+        HousingType housingType = SanctuaryProtocol.getEnum(in, SanctuaryProtocol.HOUSING_TYPES);
+        monkeysWithLocations.put(name,
+                Collections.singletonMap(housingType, SanctuaryProtocol.getString(in)));
+      }
+      return monkeysWithLocations;
+    });
+  }
+
+  public CompletableFuture<Integer> getTotalNumOfIsolationCages() {
+    return this.send(SanctuaryProtocol.TOTAL_ISOLATION_CAGES, out -> { }, ByteBuffer::getInt);
+  }
+
+  public CompletableFuture<Integer> getTotalNumOfEnclosures() {
+    return this.send(SanctuaryProtocol.TOTAL_ENCLOSURES, out -> { }, ByteBuffer::getInt);
+  }
+
+  public CompletableFuture<Integer> getNumOfFreeIsolationCages() {
+    return this.send(SanctuaryProtocol.FREE_ISOLATION_CAGES, out -> { }, ByteBuffer::getInt);
+  }
+
+  /**
+   * Returns the number of requests sent whose responses have not arrived yet.
+   *
+   * @return requests in flight
+   */
+  public int getInFlightCount() {
+    return this.inFlight.size();
+  }
+
+  /**
+   * Closes the connection. Requests still in flight fail.
+   */
+  @Override
+  public void close() throws IOException {
+    this.shutDown(new IOException("Sanctuary client is closed."));
+  }
+
+  /**
+   * Stops taking requests, closes the connection and fails the requests in flight. Requests are
+   * refused under the same lock that {@link #send} takes, so none is queued after the requests
+   * in flight have been failed.
+   */
+  private void shutDown(IOException cause) throws IOException {
+    synchronized (this) {
+      this.closed = true;
+      this.notifyAll();
+    }
+    try {
+      this.channel.close();
+    } finally {
+      this.failInFlight(cause);
+    }
+  }
+
+  /**
+   * Shuts the client down after the connection has failed in the reader or writer thread.
+   */
+  private void connectionFailed(IOException cause) {
+    try {
+      this.shutDown(cause);
+    } catch (IOException e) {
+      // the connection has failed already
+    }
+  }
+
+  private static Page<Primate> getMonkeys(ByteBuffer in) {
+    List<Primate> monkeys = new ArrayList<>();
+    for (int i = in.getInt(); i > 0; i--) {
+      monkeys.add(SanctuaryProtocol.getListedMonkey(in));
+    }
+    return new Page<>(monkeys, SanctuaryProtocol.getString(in));
+  }
+
+  private static InetSocketAddress resolve(String host, int port) throws IOException {
+    if (host == null) {
+      throw new IllegalArgumentException("Host cannot be null.");
+    }
+    InetSocketAddress server = new InetSocketAddress(host, port);
+    if (server.isUnresolved()) {
+      throw new UnknownHostException("Unknown sanctuary server host " + host);
+    }
+    return server;
+  }
+
+  /**
+   * Queues a request for the writer thread, waking it if it is waiting for requests.
+   */
+  private <T> CompletableFuture<T> send(byte operation, Consumer<FrameBuffer> arguments,
+                                        Function<ByteBuffer, T> result) {
+    Request<T> request = new Request<>(result);
+    synchronized (this) {
+      if (this.closed) {
+        request.future.completeExceptionally(new IOException("Sanctuary client is closed."));
+        return request.future;
+      }
+      int requestId = this.nextRequestId++;
+      this.pending.beginFrame(requestId, operation);
+      try {
+        arguments.accept(this.pending);
+      } catch (RuntimeException e) {
+        this.pending.abortFrame();
+        throw e;
+      }
+      this.pending.endFrame();
+      this.inFlight.put(requestId, request);
+      this.notifyAll();
+    }
+    return request.future;
+  }
+
+  /**
+   * Writes every request queued since the last write in one go, swapping buffers so that new
+   * requests can be queued while the write is in progress.
+   */
+  private void writeRequests() {
+    try {
+      while (true) {
+        FrameBuffer requests;
+        synchronized (this) {
+          while (this.pending.isEmpty() && !this.closed) {
+            this.wait();
+          }
+          if (this.closed) {
+            return;
+          }
+          requests = this.pending;
+          this.pending = this.sending;
+          this.sending = requests;
+        }
+        ByteBuffer bytes = requests.flip();
+        while (bytes.hasRemaining()) {
+          this.channel.write(bytes);
+        }
+        requests.compact();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      this.connectionFailed(e);
+    }
+  }
+
+  private void readResponses() {
+    ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    try {
+      while (this.channel.read(in) >= 0) {
+        in.flip();
+        int length;
+        while ((length = SanctuaryProtocol.completeFrameLength(in)) >= 0) {
+          int end = in.position() + length;
+          in.position(in.position() + Integer.BYTES);
+          ByteBuffer frame = in.duplicate();
+          frame.limit(end);
+          this.complete(frame);
+          in.position(end);
+        }
+        in.compact();
+        if (in.position() == in.capacity()) {
+          in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+        }
+      }
+      this.connectionFailed(new IOException("Connection closed by sanctuary server."));
+    } catch (IOException e) {
+      this.connectionFailed(e);
+    }
+  }
+
+  private void complete(ByteBuffer frame) {
+    Request<?> request = this.inFlight.remove(frame.getInt());
+    byte status = frame.get();
+    if (request == null) {
+      return;
+    }
+    if (status == SanctuaryProtocol.OK) {
+      request.complete(frame);
+    } else if (status == SanctuaryProtocol.ILLEGAL_ARGUMENT) {
+      request.future.completeExceptionally(new IllegalArgumentException(
+              SanctuaryProtocol.getString(frame)));
+    } else if (status == SanctuaryProtocol.ILLEGAL_STATE) {
+      request.future.completeExceptionally(new IllegalStateException(
+              SanctuaryProtocol.getString(frame)));
+    } else {
+      request.future.completeExceptionally(new IllegalStateException("Sanctuary failed: " +
+              SanctuaryProtocol.getString(frame)));
+    }
+  }
+
+  private void failInFlight(IOException cause) {
+    for (Integer requestId : this.inFlight.keySet()) {
+      Request<?> request = this.inFlight.remove(requestId);
+      if (request != null) {
+        request.future.completeExceptionally(new UncheckedIOException(cause));
+      }
+    }
+  }
+
+  /**
+   * A request in flight with the future of its result and how to read the result.
+   */
+  private static class Request<T> {
+
+    private final CompletableFuture<T> future;
+    private final Function<ByteBuffer, T> result;
+
+    Request(Function<ByteBuffer, T> result) {
+      this.future = new CompletableFuture<>();
+      this.result = result;
+    }
+
+    void complete(ByteBuffer frame) {
+      try {
+        this.future.complete(this.result.apply(frame));
+      } catch (RuntimeException e) {
+        this.future.completeExceptionally(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import federation.MonkeyRecord;
+import sanctuary.JungleFriendsSanctuary;
+import sanctuary.QuantileSketch;
+
+/**
+ * Measures the sustained request rate of a {@link SanctuaryServer} on this machine. Every
+ * connection runs on its own thread and keeps up to a pipeline depth of requests in flight, most
+ * of them reads of monkeys and the rest weight updates, housing lookups, moves and shopping
+ * lists. The rate and the latency quantiles are printed every second and at the end.
+ */
+public final class SanctuaryLoadTest {
+
+  private static final double SKETCH_ACCURACY = 0.01;
+
+  private SanctuaryLoadTest() {
+  }
+
+  /**
+   * Runs the load test against a new server in this JVM.
+   * Usage: {@code SanctuaryLoadTest [connections] [pipelineDepth] [seconds] [monkeys]}
+   *
+   * @param args number of connections, requests in flight per connection, length of the run in
+   *             seconds and number of monkeys in the sanctuary
+   * @throws IOException if the server cannot be started or reached.
+   * @throws InterruptedException if interrupted while running.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int pipelineDepth = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int monkeyCount = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+    int[] sizeOfEnclosures = new int[monkeyCount / 10];
+    Arrays.fill(sizeOfEnclosures, 20);
+    JungleFriendsSanctuary sanctuary = new JungleFriendsSanctuary(monkeyCount,
+            sizeOfEnclosures.length, sizeOfEnclosures);
+    try (SanctuaryServer server = new SanctuaryServer(sanctuary, 0)) {
+      List<String> monkeyIds = addMonkeys(server.getPort(), monkeyCount);
+      QuantileSketch latencies = new QuantileSketch(SKETCH_ACCURACY, 1,
+              TimeUnit.SECONDS.toNanos(10));
+      AtomicLong completed = new AtomicLong();
+      AtomicLong failed = new AtomicLong();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+      List<Thread> threads = new ArrayList<>();
+      List<SanctuaryClient> clients = new ArrayList<>();
+      for (int i = 0; i < connections; i++) {
+        SanctuaryClient client = new SanctuaryClient(server.getPort());
+        clients.add(client);
+        Random random = new Random(i);
+        Thread thread = new Thread(() -> drive(client, random, monkeyIds, pipelineDepth,
+                deadline, latencies, completed, failed), "load-" + i);
+        threads.add(thread);
+        thread.start();
+      }
+      long start = System.nanoTime();
+      long lastCompleted = 0;
+      while (System.nanoTime() < deadline) {
+        Thread.sleep(1000);
+        long total = completed.get();
+        System.out.println("requests/s=" + (total - lastCompleted) + " p50us=" +
+                quantileMicros(latencies, 0.5) + " p99us=" + quantileMicros(latencies, 0.99));
+        lastCompleted = total;
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      double elapsed = (System.nanoTime() - start) / 1e9;
+      System.out.printf("connections=%d depth=%d requests=%d failed=%d requests/s=%.0f "
+                      + "p50us=%d p99us=%d p999us=%d batches=%d%n", connections, pipelineDepth,
+              completed.get(), failed.get(), completed.get() / elapsed,
+              quantileMicros(latencies, 0.5), quantileMicros(latencies, 0.99),
+              quantileMicros(latencies, 0.999), server.getBatchCount());
+      for (SanctuaryClient client : clients) {
+        client.close();
+      }
+    }
+  }
+
+  private static List<String> addMonkeys(int port, int monkeyCount) throws IOException {
+    List<CompletableFuture<String>> added = new ArrayList<>();
+    Random random = new Random(41);
+    try (SanctuaryClient client = new SanctuaryClient(port)) {
+      for (int i = 0; i < monkeyCount; i++) {
+        added.add(client.addMonkey(new MonkeyRecord("Monkey" + i, MonkeySize.SMALL,
+                1 + random.nextInt(20), 1 + random.nextInt(30),
+                Species.values()[random.nextInt(Species.values().length)],
+                Sex.values()[random.nextInt(2)],
+                FavoriteFood.values()[random.nextInt(FavoriteFood.values().length)],
+                HealthStatus.HEALTHY), null));
+      }
+      List<String> monkeyIds = new ArrayList<>();
+      for (CompletableFuture<String> monkeyId : added) {
+        monkeyIds.add(monkeyId.join());
+      }
+      return monkeyIds;
+    }
+  }
+
+  private static void drive(SanctuaryClient client, Random random, List<String> monkeyIds,
+                            int pipelineDepth, long deadline, QuantileSketch latencies,
+                            AtomicLong completed, AtomicLong failed) {
+    Semaphore window = new Semaphore(pipelineDepth);
+    try {
+      while (System.nanoTime() < deadline) {
+        window.acquire();
+        String monkeyId = monkeyIds.get(random.nextInt(monkeyIds.size()));
+        int operation = random.nextInt(100);
+        long sent = System.nanoTime();
+        CompletableFuture<?> response;
+        if (operation < 70) {
+          response = client.getMonkey(monkeyId);
+        } else if (operation < 85) {
+          response = client.updateMonkeyWeight(monkeyId, 1 + random.nextInt(20));
+        } else if (operation < 95) {
+          response = client.locateMonkey(monkeyId);
+        } else if (operation < 99) {
+          response = client.moveMonkeyToEnclosure(monkeyId);
+        } else {
+          response = client.getFavFoodShoppingList();
+        }
+        response.whenComplete((result, error) -> {
+          long latency = System.nanoTime() - sent;
+          synchronized (latencies) {
+            latencies.add(Math.max(latency, 1));
+          }
+          if (error != null && !(error instanceof IllegalStateException)) {
+            failed.incrementAndGet();
+          }
+          completed.incrementAndGet();
+          window.release();
+        });
+      }
+      window.acquire(pipelineDepth);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static long quantileMicros(QuantileSketch latencies, double quantile) {
+    synchronized (latencies) {
+      return latencies.getCount() == 0 ? 0
+              : (long) (latencies.getQuantile(quantile) / 1000);
+    }
+  }
+}
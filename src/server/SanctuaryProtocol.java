@@ -0,0 +1,167 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import federation.MonkeyRecord;
+import sanctuary.Housing;
+import sanctuary.Primate;
+
+/**
+ * Wire format shared by {@link SanctuaryServer} and {@link SanctuaryClient}. Requests and
+ * responses are frames: the length of the rest of the frame, the id of the request, an operation
+ * byte for a request or a status byte for a response, and the arguments or result. A client can
+ * send many requests before reading any response, and the server answers the requests of a
+ * connection in order, writing the responses to everything it has read at once.
+ */
+final class SanctuaryProtocol {
+
+  static final int HEADER_LENGTH = Integer.BYTES + Integer.BYTES + Byte.BYTES;
+  static final int MAX_FRAME_LENGTH = 1 << 20;
+
+  static final byte ADD_MONKEY = 1;
+  static final byte GET_MONKEY = 2;
+  static final byte LOCATE_MONKEY = 3;
+  static final byte MOVE_MONKEY = 4;
+  static final byte MOVE_MONKEY_TO_ENCLOSURE = 5;
+  static final byte MOVE_MONKEY_TO_ISOLATION = 6;
+  static final byte REMOVE_MONKEY = 7;
+  static final byte UPDATE_HEALTH_STATUS = 8;
+  static final byte UPDATE_SIZE = 9;
+  static final byte UPDATE_WEIGHT = 10;
+  static final byte UPDATE_AGE = 11;
+  static final byte FAV_FOOD_SHOPPING_LIST = 12;
+  static final byte SPECIES_WITH_LOCATIONS = 13;
+  static final byte ENCLOSURE_SIGN = 14;
+  static final byte ADD_CAPACITY = 15;
+  static final byte MONKEYS_PAGE = 16;
+  static final byte ALUMNI_MONKEYS_PAGE = 17;
+  static final byte HOUSINGS_PAGE = 18;
+  static final byte LOCATIONS_FOR_SPECIES = 19;
+  static final byte ALL_MONKEYS_WITH_LOCATIONS = 20;
+  static final byte TOTAL_ISOLATION_CAGES = 21;
+  static final byte TOTAL_ENCLOSURES = 22;
+  static final byte FREE_ISOLATION_CAGES = 23;
+
+  static final MonkeySize[] SIZES = MonkeySize.values();
+  static final Species[] SPECIES = Species.values();
+  static final Sex[] SEXES = Sex.values();
+  static final FavoriteFood[] FOODS = FavoriteFood.values();
+  static final HealthStatus[] HEALTH_STATUSES = HealthStatus.values();
+  static final HousingType[] HOUSING_TYPES = HousingType.values();
+
+  static final byte OK = 0;
+  static final byte ILLEGAL_ARGUMENT = 1;
+  static final byte ILLEGAL_STATE = 2;
+  static final byte FAILURE = 3;
+
+  private SanctuaryProtocol() {
+  }
+
+  /**
+   * Returns the length of the frame starting at the position of {@code in}, or -1 if the whole
+   * frame has not arrived yet.
+   *
+   * @throws IOException if the frame is malformed.
+   */
+  static int completeFrameLength(ByteBuffer in) throws IOException {
+    if (in.remaining() < Integer.BYTES) {
+      return -1;
+    }
+    int length = in.getInt(in.position());
+    if (length < HEADER_LENGTH - Integer.BYTES || length > MAX_FRAME_LENGTH) {
+      throw new IOException("Invalid frame length " + length);
+    }
+    return in.remaining() < Integer.BYTES + length ? -1 : Integer.BYTES + length;
+  }
+
+  static String getString(ByteBuffer in) {
+    int length = in.getShort();
+    if (length < 0) {
+      return null;
+    }
+    String value = new String(in.array(), in.arrayOffset() + in.position(), length,
+            StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+
+  static boolean getBoolean(ByteBuffer in) {
+    return in.get() != 0;
+  }
+
+  static <E extends Enum<E>> E getEnum(ByteBuffer in, E[] values) {
+    int ordinal = in.get();
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new IllegalArgumentException("Invalid " + values.getClass().getComponentType()
+              .getSimpleName() + " " + ordinal);
+    }
+    return values[ordinal];
+  }
+
+  static void putMonkey(FrameBuffer out, MonkeyRecord monkey) {
+    out.putString(monkey.getName());
+    out.putByte(monkey.getSize().ordinal());
+    out.putDouble(monkey.getWeight());
+    out.putInt(monkey.getAge());
+    out.putByte(monkey.getSpecies().ordinal());
+    out.putByte(monkey.getSex().ordinal());
+    out.putByte(monkey.getFavoriteFood().ordinal());
+    out.putByte(monkey.getHealthStatus().ordinal());
+  }
+
+  static MonkeyRecord getMonkey(ByteBuffer in) {
+    return new MonkeyRecord(getString(in), getEnum(in, SIZES), in.getDouble(), in.getInt(),
+            getEnum(in, SPECIES), getEnum(in, SEXES), getEnum(in, FOODS),
+            getEnum(in, HEALTH_STATUSES));
+  }
+
+  /**
+   * Puts a listed monkey as its id followed by its attributes.
+   */
+  static void putListedMonkey(FrameBuffer out, Primate monkey) {
+    out.putString(monkey.getId());
+    putMonkey(out, new MonkeyRecord(monkey));
+  }
+
+  static Primate getListedMonkey(ByteBuffer in) {
+    return new RemoteMonkey(getString(in), getMonkey(in));
+  }
+
+  /**
+   * Puts a listed housing as its id, type, species or -1 if it is empty, and resident ids.
+   */
+  static void putHousing(FrameBuffer out, Housing housing) {
+    out.putString(housing.getId()).putByte(housing.getHousingType().ordinal())
+            .putByte(housing.getSpecies() == null ? -1 : housing.getSpecies().ordinal())
+            .putInt(housing.getResidentCount());
+    for (int i = 0; i < housing.getResidentCount(); i++) {
+      out.putString(housing.getResident(i).getId());
+    }
+  }
+
+  static HousingRecord getHousing(ByteBuffer in) {
+    String id = getString(in);
+    HousingType type = getEnum(in, HOUSING_TYPES);
+    Species species = null;
+    if (in.get(in.position()) < 0) {
+      in.get();
+    } else {
+      species = getEnum(in, SPECIES);
+    }
+    List<String> residentIds = new ArrayList<>();
+    for (int i = in.getInt(); i > 0; i--) {
+      residentIds.add(getString(in));
+    }
+    return new HousingRecord(id, type, species, residentIds);
+  }
+}
@@ -0,0 +1,474 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enums.FavoriteFood;
+import enums.HousingType;
+import enums.Sex;
+import enums.Species;
+import federation.MonkeyRecord;
+import sanctuary.Housing;
+import sanctuary.JungleFriendsSanctuary;
+import sanctuary.MonkeyLocation;
+import sanctuary.Page;
+import sanctuary.Primate;
+import sanctuary.Sanctuary;
+
+/**
+ * Serves one shared {@link Sanctuary} to many clients over sockets, on the loopback interface
+ * unless another address is given. All connections are handled by one selector thread. Every
+ * request read from a connection is answered in order, and the responses to all requests that
+ * arrived together are written at once, so a client that pipelines requests gets its responses
+ * in batches. A connection is not read from again until its responses have been written.
+ *
+ * <p>The monkeys, alumni and housings are served as pages, since a whole listing need not fit in
+ * one frame. A response that does not fit fails with {@link IllegalStateException}.
+ */
+public class SanctuaryServer implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Sanctuary sanctuary;
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final Thread loop;
+  private final AtomicLong requestCount;
+  private final AtomicLong batchCount;
+
+  /**
+   * Starts serving {@code sanctuary} on {@code port} of the loopback interface. Requests change
+   * the sanctuary while holding its monitor, so other threads changing it must hold it too.
+   *
+   * @param sanctuary the sanctuary to serve
+   * @param port      the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound.
+   */
+  public SanctuaryServer(Sanctuary sanctuary, int port) throws IOException {
+    this(sanctuary, InetAddress.getLoopbackAddress(), port);
+  }
+
+  /**
+   * Starts serving {@code sanctuary} on {@code port} of {@code bindAddress}, so that keepers'
+   * devices and other systems can reach it over the network.
+   *
+   * @param sanctuary   the sanctuary to serve
+   * @param bindAddress the local address to listen on, or the wildcard address for all of them
+   * @param port        the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound.
+   */
+  public SanctuaryServer(Sanctuary sanctuary, InetAddress bindAddress, int port)
+          throws IOException {
+    if (sanctuary == null || bindAddress == null) {
+      throw new IllegalArgumentException("Sanctuary and bind address cannot be null.");
+    }
+    this.sanctuary = sanctuary;
+    this.requestCount = new AtomicLong();
+    this.batchCount = new AtomicLong();
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    this.serverChannel.bind(new InetSocketAddress(bindAddress, port));
+    this.serverChannel.configureBlocking(false);
+    this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+    this.loop = new Thread(this::serve, "sanctuary-server-" + this.getPort());
+    this.loop.setDaemon(true);
+    this.loop.start();
+  }
+
+  public int getPort() {
+    return this.serverChannel.socket().getLocalPort();
+  }
+
+  public long getRequestCount() {
+    return this.requestCount.get();
+  }
+
+  /**
+   * Returns the number of writes of responses. Pipelined requests are answered in fewer
+   * batches than there are requests.
+   *
+   * @return batches of responses written
+   */
+  public long getBatchCount() {
+    return this.batchCount.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.serverChannel.close();
+    this.selector.wakeup();
+  }
+
+  private void serve() {
+    try {
+      while (this.serverChannel.isOpen()) {
+        this.selector.select();
+        Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (!key.isValid()) {
+              continue;
+            }
+            if (key.isAcceptable()) {
+              this.accept();
+            } else {
+              Connection connection = (Connection) key.attachment();
+              if (key.isReadable()) {
+                connection.read();
+              }
+              if (key.isValid() && key.isWritable()) {
+                connection.write();
+              }
+            }
+          } catch (IOException e) {
+            key.cancel();
+            key.channel().close();
+          } catch (RuntimeException | Error e) {
+            System.err.println("Sanctuary server dropped a connection: " + e);
+            key.cancel();
+            key.channel().close();
+          }
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Sanctuary server stopped: " + e);
+    } finally {
+      for (SelectionKey key : this.selector.keys()) {
+        try {
+          key.channel().close();
+        } catch (IOException e) {
+          // closing anyway
+        }
+      }
+      try {
+        this.selector.close();
+      } catch (IOException e) {
+        // closing anyway
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = this.serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+    key.attach(new Connection(channel, key));
+  }
+
+  /**
+   * Handles one request whose frame starts at the position of {@code in}, and encodes the
+   * response into {@code out}.
+   */
+  private void handle(ByteBuffer in, FrameBuffer out) {
+    int requestId = in.getInt();
+    byte operation = in.get();
+    out.beginFrame(requestId, SanctuaryProtocol.OK);
+    try {
+      synchronized (this.sanctuary) {
+        this.dispatch(operation, in, out);
+      }
+      if (out.frameLength() > SanctuaryProtocol.MAX_FRAME_LENGTH) {
+        throw new IllegalStateException("Response of " + out.frameLength() + " bytes is too " +
+                "large to send. Ask for the listing in pages.");
+      }
+      out.endFrame();
+    } catch (IllegalArgumentException | BufferUnderflowException e) {
+      this.fail(out, requestId, SanctuaryProtocol.ILLEGAL_ARGUMENT,
+              String.valueOf(e.getMessage()));
+    } catch (IllegalStateException e) {
+      this.fail(out, requestId, SanctuaryProtocol.ILLEGAL_STATE, String.valueOf(e.getMessage()));
+    } catch (RuntimeException e) {
+      this.fail(out, requestId, SanctuaryProtocol.FAILURE, e.toString());
+    }
+    this.requestCount.incrementAndGet();
+  }
+
+  private void fail(FrameBuffer out, int requestId, byte status, String message) {
+    out.abortFrame();
+    out.beginFrame(requestId, status);
+    out.putString(message.length() > 1024 ? message.substring(0, 1024) : message);
+    out.endFrame();
+  }
+
+  private void dispatch(byte operation, ByteBuffer in, FrameBuffer out) {
+    switch (operation) {
+      case SanctuaryProtocol.ADD_MONKEY: {
+        MonkeyRecord monkey = SanctuaryProtocol.getMonkey(in);
+        String location = SanctuaryProtocol.getString(in);
+        out.putString(this.sanctuary.addMonkey(monkey.getName(), monkey.getSize(),
+                (float) monkey.getWeight(), monkey.getAge(), monkey.getSpecies(), monkey.getSex(),
+                monkey.getFavoriteFood(), monkey.getHealthStatus(), location));
+        break;
+      }
+      case SanctuaryProtocol.GET_MONKEY: {
+        Primate monkey = this.sanctuary.getMonkey(SanctuaryProtocol.getString(in));
+        out.putBoolean(monkey != null);
+        if (monkey != null) {
+          SanctuaryProtocol.putMonkey(out, new MonkeyRecord(monkey));
+        }
+        break;
+      }
+      case SanctuaryProtocol.LOCATE_MONKEY: {
+        MonkeyLocation location = this.sanctuary.locateMonkey(SanctuaryProtocol.getString(in));
+        out.putString(location == null ? null : location.getHousingId());
+        break;
+      }
+      case SanctuaryProtocol.MOVE_MONKEY: {
+        String housingId = SanctuaryProtocol.getString(in);
+        this.sanctuary.moveMonkey(housingId, this.findMonkey(in));
+        break;
+      }
+      case SanctuaryProtocol.MOVE_MONKEY_TO_ENCLOSURE:
+        this.sanctuary.moveMonkeyToEnclosure(this.findMonkey(in));
+        break;
+      case SanctuaryProtocol.MOVE_MONKEY_TO_ISOLATION:
+        this.sanctuary.moveMonkeyToIsolation(this.findMonkey(in));
+        break;
+      case SanctuaryProtocol.REMOVE_MONKEY:
+        this.sanctuary.removeMonkey(this.findMonkey(in));
+        break;
+      case SanctuaryProtocol.UPDATE_HEALTH_STATUS: {
+        Primate monkey = this.findMonkey(in);
+        this.sanctuary.updateMonkeyHealthStatus(SanctuaryProtocol.getEnum(in,
+                SanctuaryProtocol.HEALTH_STATUSES), monkey);
+        break;
+      }
+      case SanctuaryProtocol.UPDATE_SIZE: {
+        Primate monkey = this.findMonkey(in);
+        this.sanctuary.updateMonkeySize(SanctuaryProtocol.getEnum(in, SanctuaryProtocol.SIZES),
+                monkey);
+        break;
+      }
+      case SanctuaryProtocol.UPDATE_WEIGHT: {
+        Primate monkey = this.findMonkey(in);
+        this.sanctuary.updateMonkeyWeight(in.getDouble(), monkey);
+        break;
+      }
+      case SanctuaryProtocol.UPDATE_AGE: {
+        Primate monkey = this.findMonkey(in);
+        this.sanctuary.updateMonkeyAge(in.getInt(), monkey);
+        break;
+      }
+      case SanctuaryProtocol.FAV_FOOD_SHOPPING_LIST: {
+        Map<FavoriteFood, Integer> shoppingList = this.sanctuary.getFavFoodShoppingList();
+        out.putInt(shoppingList.size());
+        for (Map.Entry<FavoriteFood, Integer> food : shoppingList.entrySet()) {
+          out.putByte(food.getKey().ordinal()).putInt(food.getValue());
+        }
+        break;
+      }
+      case SanctuaryProtocol.SPECIES_WITH_LOCATIONS: {
+        Map<Species, List<String>> speciesWithLocations =
+                this.sanctuary.getSpeciesWithLocations();
+        out.putInt(speciesWithLocations.size());
+        for (Map.Entry<Species, List<String>> species : speciesWithLocations.entrySet()) {
+          out.putByte(species.getKey().ordinal()).putInt(species.getValue().size());
+          for (String location : species.getValue()) {
+            out.putString(location);
+          }
+        }
+        break;
+      }
+      case SanctuaryProtocol.ENCLOSURE_SIGN: {
+        Map<String, Map<Sex, FavoriteFood>> sign =
+                this.sanctuary.getEnclosureSign(SanctuaryProtocol.getString(in));
+        out.putInt(sign.size());
+        for (Map.Entry<String, Map<Sex, FavoriteFood>> resident : sign.entrySet()) {
+          Map.Entry<Sex, FavoriteFood> details = resident.getValue().entrySet().iterator().next();
+          out.putString(resident.getKey()).putByte(details.getKey().ordinal())
+                  .putByte(details.getValue().ordinal());
+        }
+        break;
+      }
+      case SanctuaryProtocol.ADD_CAPACITY: {
+        int isolationCages = in.getInt();
+        int enclosureCount = in.getInt();
+        if (enclosureCount < 0 || enclosureCount > in.remaining() / Integer.BYTES) {
+          throw new IllegalArgumentException("Request gives " + in.remaining() / Integer.BYTES +
+                  " enclosure sizes but an enclosure count of " + enclosureCount);
+        }
+        int[] sizeOfEnclosures = new int[enclosureCount];
+        for (int i = 0; i < sizeOfEnclosures.length; i++) {
+          sizeOfEnclosures[i] = in.getInt();
+        }
+        this.sanctuary.addCapacity(isolationCages, sizeOfEnclosures.length, sizeOfEnclosures);
+        break;
+      }
+      case SanctuaryProtocol.MONKEYS_PAGE: {
+        String cursor = SanctuaryProtocol.getString(in);
+        this.putMonkeys(out, this.sanctuary.getMonkeysPage(cursor, in.getInt(), null));
+        break;
+      }
+      case SanctuaryProtocol.ALUMNI_MONKEYS_PAGE: {
+        String cursor = SanctuaryProtocol.getString(in);
+        this.putMonkeys(out, this.sanctuary.getAlumniMonkeysPage(cursor, in.getInt(), null));
+        break;
+      }
+      case SanctuaryProtocol.HOUSINGS_PAGE: {
+        String cursor = SanctuaryProtocol.getString(in);
+        Page<Housing> page = this.sanctuary.getHousingsPage(cursor, in.getInt(), null);
+        out.putInt(page.getItems().size());
+        for (Housing housing : page.getItems()) {
+          SanctuaryProtocol.putHousing(out, housing);
+        }
+        out.putString(page.getNextCursor());
+        break;
+      }
+      case SanctuaryProtocol.LOCATIONS_FOR_SPECIES: {
+        List<String> locations = this.sanctuary.getLocationsForSpecies(
+                SanctuaryProtocol.getEnum(in, SanctuaryProtocol.SPECIES));
+        out.putInt(locations.size());
+        for (String location : locations) {
+          out.putString(location);
+        }
+        break;
+      }
+      case SanctuaryProtocol.ALL_MONKEYS_WITH_LOCATIONS: {
+        Map<String, Map<HousingType, String>> monkeysWithLocations =
+                this.sanctuary.getAllMonkeysWithLocations();
+        out.putInt(monkeysWithLocations.size());
+        for (Map.Entry<String, Map<HousingType, String>> monkey :
+                monkeysWithLocations.entrySet()) {
+          Map.Entry<HousingType, String> location =
+                  monkey.getValue().entrySet().iterator().next();
+          out.putString(monkey.getKey()).putByte(location.getKey().ordinal())
+                  .putString(location.getValue());
+        }
+        break;
+      }
+      case SanctuaryProtocol.TOTAL_ISOLATION_CAGES:
+        out.putInt(this.sanctuary.getTotalNumOfIsolationCages());
+        break;
+      case SanctuaryProtocol.TOTAL_ENCLOSURES:
+        out.putInt(this.sanctuary.getTotalNumOfEnclosures());
+        break;
+      case SanctuaryProtocol.FREE_ISOLATION_CAGES:
+        out.putInt(this.sanctuary.getNumOfFreeIsolationCages());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown sanctuary operation " + operation);
+    }
+  }
+
+  private void putMonkeys(FrameBuffer out, Page<Primate> page) {
+    out.putInt(page.getItems().size());
+    for (Primate monkey : page.getItems()) {
+      SanctuaryProtocol.putListedMonkey(out, monkey);
+    }
+    out.putString(page.getNextCursor());
+  }
+
+  private Primate findMonkey(ByteBuffer in) {
+    String monkeyId = SanctuaryProtocol.getString(in);
+    Primate monkey = this.sanctuary.getMonkey(monkeyId);
+    if (monkey == null) {
+      throw new IllegalArgumentException("Monkey " + monkeyId + " does not exist in sanctuary.");
+    }
+    return monkey;
+  }
+
+  /**
+   * One client connection with the requests read but not yet handled and the responses not yet
+   * written.
+   */
+  private class Connection {
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private ByteBuffer in;
+    private final FrameBuffer out;
+
+    Connection(SocketChannel channel, SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+      this.in = ByteBuffer.allocate(BUFFER_SIZE);
+      this.out = new FrameBuffer(BUFFER_SIZE);
+    }
+
+    void read() throws IOException {
+      if (this.channel.read(this.in) < 0) {
+        throw new IOException("Connection closed by client");
+      }
+      this.in.flip();
+      int length;
+      while ((length = SanctuaryProtocol.completeFrameLength(this.in)) >= 0) {
+        int end = this.in.position() + length;
+        this.in.position(this.in.position() + Integer.BYTES);
+        ByteBuffer frame = this.in.duplicate();
+        frame.limit(end);
+        SanctuaryServer.this.handle(frame, this.out);
+        this.in.position(end);
+      }
+      this.in.compact();
+      if (this.in.position() == this.in.capacity()) {
+        this.in = ByteBuffer.allocate(this.in.capacity() * 2).put(this.in.flip());
+      }
+      this.write();
+    }
+
+    /**
+     * Writes as much of the pending responses as the socket takes, and waits for the socket to
+     * be writable instead of reading more while some are left.
+     */
+    void write() throws IOException {
+      if (this.out.isEmpty()) {
+        return;
+      }
+      ByteBuffer responses = this.out.flip();
+      this.channel.write(responses);
+      boolean drained = !responses.hasRemaining();
+      this.out.compact();
+      SanctuaryServer.this.batchCount.incrementAndGet();
+      this.key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+    }
+  }
+
+  /**
+   * Serves a new sanctuary in its own JVM, on the loopback interface unless a bind address is
+   * given.
+   * Usage: {@code SanctuaryServer [-bind <address>] <port> <isolationCages> [enclosureSize ...]}
+   *
+   * @param args bind address, port, number of isolation cages and the size of every enclosure
+   * @throws IOException if the port cannot be bound.
+   * @throws InterruptedException if interrupted while serving.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    InetAddress bindAddress = InetAddress.getLoopbackAddress();
+    if (args.length > 1 && args[0].equals("-bind")) {
+      bindAddress = InetAddress.getByName(args[1]);
+      args = Arrays.copyOfRange(args, 2, args.length);
+    }
+    if (args.length < 2) {
+      System.err.println("Usage: SanctuaryServer [-bind <address>] <port> <isolationCages> " +
+              "[enclosureSize ...]");
+      return;
+    }
+    int[] sizeOfEnclosures = Arrays.stream(args).skip(2).mapToInt(Integer::parseInt).toArray();
+    JungleFriendsSanctuary sanctuary = new JungleFriendsSanctuary(Integer.parseInt(args[1]),
+            sizeOfEnclosures.length, sizeOfEnclosures);
+    SanctuaryServer server = new SanctuaryServer(sanctuary, bindAddress,
+            Integer.parseInt(args[0]));
+    System.out.println("Sanctuary listening on " + bindAddress.getHostAddress() + " port " +
+            server.getPort());
+    server.loop.join();
+  }
+}
@@ -0,0 +1,316 @@
+package service;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.IntakeStage;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import sanctuary.MonkeyLocation;
+import sanctuary.Primate;
+import sanctuary.QuantileSketch;
+import sanctuary.Sanctuary;
+
+/**
+ * Takes in arriving monkeys in stages: a waiting queue, then isolation, then an enclosure.
+ * Arrivals are always accepted into the waiting queue, so intake staff never have to retry when
+ * the isolation cages are full. Every round first moves up to a batch of quarantined monkeys
+ * that are healthy into enclosures, which frees isolation cages, and then moves up to a batch of
+ * waiting monkeys into isolation. Rounds run on demand through {@link #advance()} or on a
+ * schedule through {@link #start(long, TimeUnit)}.
+ */
+public class IntakePipeline implements Closeable {
+
+  private static final double SKETCH_ACCURACY = 0.01;
+
+  private final Sanctuary sanctuary;
+  private final int batchSize;
+  private final Clock clock;
+  private final Deque<Arrival> waiting;
+  private final Deque<Arrival> quarantined;
+  private final QuantileSketch waitingTimes;
+  private final QuantileSketch quarantineTimes;
+  private long arrivalCount;
+  private long enclosedCount;
+  private long rejectedCount;
+  private long leftCount;
+  private long failedRoundCount;
+  private RuntimeException lastFailure;
+  private ScheduledExecutorService scheduler;
+
+  public IntakePipeline(Sanctuary sanctuary, int batchSize) {
+    this(sanctuary, batchSize, Clock.systemUTC());
+  }
+
+  /**
+   * Constructs a pipeline into {@code sanctuary}. Rounds change the sanctuary while holding its
+   * monitor, so other threads changing it must hold the monitor too.
+   *
+   * @param sanctuary the sanctuary to take monkeys into
+   * @param batchSize the most monkeys moved forward by each stage in one round
+   * @param clock     clock used to measure waiting times
+   * @throws IllegalArgumentException if {@code sanctuary} or {@code clock} is {@code null} or
+   *                                  {@code batchSize} is not positive.
+   */
+  public IntakePipeline(Sanctuary sanctuary, int batchSize, Clock clock) {
+    if (sanctuary == null || clock == null) {
+      throw new IllegalArgumentException("Sanctuary and clock cannot be null.");
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive. Batch size: " + batchSize);
+    }
+    this.sanctuary = sanctuary;
+    this.batchSize = batchSize;
+    this.clock = clock;
+    this.waiting = new ArrayDeque<>();
+    this.quarantined = new ArrayDeque<>();
+    this.waitingTimes = new QuantileSketch(SKETCH_ACCURACY, 1, TimeUnit.DAYS.toMillis(365));
+    this.quarantineTimes = new QuantileSketch(SKETCH_ACCURACY, 1, TimeUnit.DAYS.toMillis(365));
+  }
+
+  /**
+   * Queues an arriving monkey for isolation. The monkey's details are checked when it moves into
+   * isolation, and a monkey the sanctuary refuses is marked as rejected on its ticket.
+   *
+   * @return ticket following the monkey through the pipeline
+   */
+  public synchronized IntakeTicket admit(String name, MonkeySize size, float weight, int age,
+                                         Species species, Sex sex, FavoriteFood favoriteFood,
+                                         HealthStatus healthStatus) {
+    Arrival arrival = new Arrival(new IntakeTicket(++this.arrivalCount, this.clock.millis()),
+            name, size, weight, age, species, sex, favoriteFood, healthStatus);
+    this.waiting.add(arrival);
+    return arrival.ticket;
+  }
+
+  /**
+   * Runs one round of the pipeline.
+   *
+   * @return the number of monkeys that moved to the next stage
+   */
+  public synchronized int advance() {
+    synchronized (this.sanctuary) {
+      return this.advanceQuarantined() + this.advanceWaiting();
+    }
+  }
+
+  /**
+   * Runs a round every {@code period} on a background thread until the pipeline is closed. A
+   * round that fails is counted and the next one runs as scheduled.
+   *
+   * @param period time between rounds
+   * @param unit   unit of {@code period}
+   * @throws IllegalStateException if the pipeline is already running.
+   */
+  public synchronized void start(long period, TimeUnit unit) {
+    if (this.scheduler != null) {
+      throw new IllegalStateException("Intake pipeline is already running.");
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "intake-pipeline");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        this.advance();
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          this.failedRoundCount++;
+          this.lastFailure = e;
+        }
+      }
+    }, period, period, unit);
+  }
+
+  /**
+   * Stops the scheduled rounds. Monkeys still waiting stay queued.
+   */
+  @Override
+  public synchronized void close() {
+    if (this.scheduler != null) {
+      this.scheduler.shutdownNow();
+      this.scheduler = null;
+    }
+  }
+
+  public synchronized int getWaitingCount() {
+    return this.waiting.size();
+  }
+
+  public synchronized int getQuarantinedCount() {
+    return this.quarantined.size();
+  }
+
+  public synchronized long getArrivalCount() {
+    return this.arrivalCount;
+  }
+
+  public synchronized long getEnclosedCount() {
+    return this.enclosedCount;
+  }
+
+  public synchronized long getRejectedCount() {
+    return this.rejectedCount;
+  }
+
+  /**
+   * Returns the number of quarantined monkeys that left the pipeline some other way, for example
+   * by being moved or removed by staff.
+   *
+   * @return monkeys that left the pipeline
+   */
+  public synchronized long getLeftCount() {
+    return this.leftCount;
+  }
+
+  /**
+   * Returns the number of scheduled rounds that failed with an exception.
+   *
+   * @return failed rounds
+   */
+  public synchronized long getFailedRoundCount() {
+    return this.failedRoundCount;
+  }
+
+  /**
+   * Returns the exception the last failed scheduled round threw.
+   *
+   * @return the failure, or {@code null} if no round has failed
+   */
+  public synchronized RuntimeException getLastFailure() {
+    return this.lastFailure;
+  }
+
+  /**
+   * Returns how long the monkey at the head of the waiting queue has waited.
+   *
+   * @return waiting time in milliseconds, or 0 if no monkey is waiting
+   */
+  public synchronized long getOldestWaitMillis() {
+    Arrival oldest = this.waiting.peek();
+    return oldest == null ? 0 : this.clock.millis() - oldest.ticket.getArrivedMillis();
+  }
+
+  /**
+   * Returns the estimated {@code quantile} of the time monkeys waited for an isolation cage.
+   *
+   * @param quantile the quantile between 0 and 1 inclusive
+   * @return waiting time in milliseconds, or {@code NaN} if no monkey has entered isolation
+   */
+  public synchronized double getWaitingTimeQuantile(double quantile) {
+    return this.waitingTimes.getQuantile(quantile);
+  }
+
+  /**
+   * Returns the estimated {@code quantile} of the time monkeys spent in isolation before moving
+   * into an enclosure.
+   *
+   * @param quantile the quantile between 0 and 1 inclusive
+   * @return time in isolation in milliseconds, or {@code NaN} if no monkey has been enclosed
+   */
+  public synchronized double getQuarantineTimeQuantile(double quantile) {
+    return this.quarantineTimes.getQuantile(quantile);
+  }
+
+  /**
+   * Moves healthy quarantined monkeys into enclosures, looking at up to a batch of them. Monkeys
+   * that are not ready go to the back of the queue so they do not hold up the others.
+   */
+  private int advanceQuarantined() {
+    int moved = 0;
+    for (int looked = 0; looked < this.batchSize && !this.quarantined.isEmpty(); looked++) {
+      Arrival arrival = this.quarantined.poll();
+      MonkeyLocation location = this.sanctuary.locateMonkey(arrival.ticket.getMonkeyId());
+      if (location == null || location.getHousingType() != HousingType.ISOLATION) {
+        arrival.ticket.advance(IntakeStage.LEFT);
+        this.leftCount++;
+        continue;
+      }
+      Primate monkey = this.sanctuary.getMonkey(arrival.ticket.getMonkeyId());
+      if (monkey.getHealthStatus() != HealthStatus.HEALTHY) {
+        this.quarantined.add(arrival);
+        continue;
+      }
+      try {
+        this.sanctuary.moveMonkeyToEnclosure(monkey);
+      } catch (IllegalStateException e) {
+        this.quarantined.addFirst(arrival);
+        break;
+      }
+      arrival.ticket.advance(IntakeStage.ENCLOSED);
+      this.quarantineTimes.add(this.clock.millis() - arrival.quarantinedMillis);
+      this.enclosedCount++;
+      moved++;
+    }
+    return moved;
+  }
+
+  /**
+   * Moves up to a batch of waiting monkeys into free isolation cages, in order of arrival.
+   */
+  private int advanceWaiting() {
+    int moved = 0;
+    while (moved < this.batchSize && !this.waiting.isEmpty()) {
+      Arrival arrival = this.waiting.peek();
+      String monkeyId;
+      try {
+        monkeyId = this.sanctuary.addMonkey(arrival.name, arrival.size, arrival.weight, arrival.age,
+                arrival.species, arrival.sex, arrival.favoriteFood, arrival.healthStatus, null);
+      } catch (IllegalStateException e) {
+        break;
+      } catch (IllegalArgumentException e) {
+        this.waiting.poll();
+        arrival.ticket.reject(e.getMessage());
+        this.rejectedCount++;
+        continue;
+      }
+      this.waiting.poll();
+      arrival.ticket.quarantine(monkeyId);
+      arrival.quarantinedMillis = this.clock.millis();
+      this.waitingTimes.add(arrival.quarantinedMillis - arrival.ticket.getArrivedMillis());
+      this.quarantined.add(arrival);
+      moved++;
+    }
+    return moved;
+  }
+
+  /**
+   * A monkey in the pipeline and the details it arrived with.
+   */
+  private static class Arrival {
+
+    private final IntakeTicket ticket;
+    private final String name;
+    private final MonkeySize size;
+    private final float weight;
+    private final int age;
+    private final Species species;
+    private final Sex sex;
+    private final FavoriteFood favoriteFood;
+    private final HealthStatus healthStatus;
+    private long quarantinedMillis;
+
+    Arrival(IntakeTicket ticket, String name, MonkeySize size, float weight, int age,
+            Species species, Sex sex, FavoriteFood favoriteFood, HealthStatus healthStatus) {
+      this.ticket = ticket;
+      this.name = name;
+      this.size = size;
+      this.weight = weight;
+      this.age = age;
+      this.species = species;
+      this.sex = sex;
+      this.favoriteFood = favoriteFood;
+      this.healthStatus = healthStatus;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import enums.IntakeStage;
+
+/**
+ * Tracks one arrival through an {@link IntakePipeline}.
+ */
+public class IntakeTicket {
+
+  private final long number;
+  private final long arrivedMillis;
+  private volatile IntakeStage stage;
+  private volatile String monkeyId;
+  private volatile String rejection;
+
+  IntakeTicket(long number, long arrivedMillis) {
+    this.number = number;
+    this.arrivedMillis = arrivedMillis;
+    this.stage = IntakeStage.WAITING;
+  }
+
+  /**
+   * Returns the position of the arrival in the order of arrivals, starting at 1.
+   *
+   * @return arrival number
+   */
+  public long getNumber() {
+    return this.number;
+  }
+
+  public long getArrivedMillis() {
+    return this.arrivedMillis;
+  }
+
+  public IntakeStage getStage() {
+    return this.stage;
+  }
+
+  /**
+   * Returns the id the monkey was given when it entered isolation, or {@code null} while it is
+   * waiting or if it was rejected.
+   *
+   * @return monkey id
+   */
+  public String getMonkeyId() {
+    return this.monkeyId;
+  }
+
+  /**
+   * Returns why the sanctuary refused the monkey, or {@code null} if it was not rejected.
+   *
+   * @return reason for the rejection
+   */
+  public String getRejection() {
+    return this.rejection;
+  }
+
+  void quarantine(String monkeyId) {
+    this.monkeyId = monkeyId;
+    this.stage = IntakeStage.QUARANTINED;
+  }
+
+  void reject(String rejection) {
+    this.rejection = rejection;
+    this.stage = IntakeStage.REJECTED;
+  }
+
+  void advance(IntakeStage stage) {
+    this.stage = stage;
+  }
+
+  @Override
+  public String toString() {
+    return "Arrival " + this.number + (this.monkeyId == null ? "" : "(" + this.monkeyId + ")") +
+            "=" + this.stage;
+  }
+}
@@ -0,0 +1,304 @@
+package service;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import enums.HealthStatus;
+import enums.HousingType;
+import enums.Measurement;
+import sanctuary.Enclosure;
+import sanctuary.Housing;
+import sanctuary.MeasurementSeries;
+import sanctuary.MonkeyLocation;
+import sanctuary.Page;
+import sanctuary.Primate;
+import sanctuary.Sanctuary;
+
+/**
+ * Keeps a sanctuary up to date in small slices of work so that no nightly job has to make a call
+ * per monkey. Each pass over the sanctuary ages every monkey on the anniversaries of the last
+ * time staff set its age, or of the day it was added if they never did, moves isolated monkeys
+ * that are healthy into enclosures, and finds the enclosures holding more than their capacity. A
+ * slice stops when its time budget is spent or a pass is finished, and the next one carries on
+ * where it stopped. The sanctuary's monitor is only held for one monkey or housing at a time, so
+ * other threads changing the sanctuary wait for at most one step.
+ */
+public class SanctuaryMaintenance implements Closeable {
+
+  private static final long YEAR_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+  private final Sanctuary sanctuary;
+  private final int batchSize;
+  private final long sliceNanos;
+  private final Clock clock;
+  private final Deque<Primate> pendingMonkeys;
+  private final Deque<Housing> pendingHousings;
+  private final Set<String> overCapacityEnclosures;
+  private String monkeyCursor;
+  private String housingCursor;
+  private boolean monkeysDone;
+  private long passCount;
+  private long agedCount;
+  private long enclosedCount;
+  private long lastSliceNanos;
+  private long maxSliceNanos;
+  private long failedSliceCount;
+  private RuntimeException lastFailure;
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Constructs the maintenance of {@code sanctuary}. Other threads changing the sanctuary must
+   * hold its monitor, and {@code clock} must be the clock the sanctuary timestamps its
+   * measurements with.
+   *
+   * @param sanctuary the sanctuary to maintain
+   * @param batchSize the most monkeys or housings read from the sanctuary at once
+   * @param sliceTime time budget of one slice
+   * @param unit      unit of {@code sliceTime}
+   * @param clock     clock used to find birthdays
+   * @throws IllegalArgumentException if {@code sanctuary}, {@code unit} or {@code clock} is
+   *                                  {@code null}, or {@code batchSize} or {@code sliceTime} is
+   *                                  not positive.
+   */
+  public SanctuaryMaintenance(Sanctuary sanctuary, int batchSize, long sliceTime, TimeUnit unit,
+                              Clock clock) {
+    if (sanctuary == null || unit == null || clock == null) {
+      throw new IllegalArgumentException("Sanctuary, unit and clock cannot be null.");
+    }
+    if (batchSize <= 0 || sliceTime <= 0) {
+      throw new IllegalArgumentException("Batch size and slice time must be positive. Batch size: "
+              + batchSize + ", Slice time: " + sliceTime);
+    }
+    this.sanctuary = sanctuary;
+    this.batchSize = batchSize;
+    this.sliceNanos = unit.toNanos(sliceTime);
+    this.clock = clock;
+    this.pendingMonkeys = new ArrayDeque<>();
+    this.pendingHousings = new ArrayDeque<>();
+    this.overCapacityEnclosures = new TreeSet<>();
+  }
+
+  /**
+   * Runs one slice of maintenance. At least one monkey or housing is looked at, and no more are
+   * started once the slice's time budget is spent or a pass over the sanctuary is finished.
+   *
+   * @return the number of monkeys and housings looked at
+   */
+  public synchronized int runSlice() {
+    long start = System.nanoTime();
+    int steps = 0;
+    boolean passFinished;
+    do {
+      passFinished = this.step();
+      steps++;
+    } while (!passFinished && System.nanoTime() - start < this.sliceNanos);
+    this.lastSliceNanos = System.nanoTime() - start;
+    this.maxSliceNanos = Math.max(this.maxSliceNanos, this.lastSliceNanos);
+    return steps;
+  }
+
+  /**
+   * Runs a slice every {@code period} on a background thread until the maintenance is closed. A
+   * slice that fails is counted and the next one carries on as scheduled.
+   *
+   * @param period time between slices
+   * @param unit   unit of {@code period}
+   * @throws IllegalStateException if the maintenance is already running.
+   */
+  public synchronized void start(long period, TimeUnit unit) {
+    if (this.scheduler != null) {
+      throw new IllegalStateException("Sanctuary maintenance is already running.");
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "sanctuary-maintenance");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        this.runSlice();
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          this.failedSliceCount++;
+          this.lastFailure = e;
+        }
+      }
+    }, period, period, unit);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (this.scheduler != null) {
+      this.scheduler.shutdownNow();
+      this.scheduler = null;
+    }
+  }
+
+  /**
+   * Returns the ids of the enclosures that held more monkeys than their capacity when they were
+   * last looked at. An enclosure with a single resident is never over capacity.
+   *
+   * @return ids of the enclosures in order
+   */
+  public synchronized List<String> getOverCapacityEnclosures() {
+    return Collections.unmodifiableList(new ArrayList<>(this.overCapacityEnclosures));
+  }
+
+  /**
+   * Returns the number of passes over every monkey and housing finished so far.
+   *
+   * @return finished passes
+   */
+  public synchronized long getPassCount() {
+    return this.passCount;
+  }
+
+  public synchronized long getAgedCount() {
+    return this.agedCount;
+  }
+
+  public synchronized long getEnclosedCount() {
+    return this.enclosedCount;
+  }
+
+  public synchronized long getLastSliceNanos() {
+    return this.lastSliceNanos;
+  }
+
+  public synchronized long getMaxSliceNanos() {
+    return this.maxSliceNanos;
+  }
+
+  /**
+   * Returns the number of scheduled slices that failed with an exception.
+   *
+   * @return failed slices
+   */
+  public synchronized long getFailedSliceCount() {
+    return this.failedSliceCount;
+  }
+
+  /**
+   * Returns the exception the last failed scheduled slice threw.
+   *
+   * @return the failure, or {@code null} if no slice has failed
+   */
+  public synchronized RuntimeException getLastFailure() {
+    return this.lastFailure;
+  }
+
+  /**
+   * Looks at the next monkey, or at the next housing once every monkey of the pass has been
+   * looked at, reading the next batch from the sanctuary when the last one is used up.
+   *
+   * @return whether this step finished the pass
+   */
+  private boolean step() {
+    if (!this.monkeysDone) {
+      if (this.pendingMonkeys.isEmpty()) {
+        Page<Primate> page = this.sanctuary.getMonkeysPage(this.monkeyCursor, this.batchSize,
+                null);
+        this.pendingMonkeys.addAll(page.getItems());
+        this.monkeyCursor = page.getNextCursor();
+        if (this.pendingMonkeys.isEmpty()) {
+          this.monkeysDone = true;
+          return false;
+        }
+      }
+      this.maintainMonkey(this.pendingMonkeys.poll());
+      if (this.pendingMonkeys.isEmpty() && this.monkeyCursor == null) {
+        this.monkeysDone = true;
+      }
+      return false;
+    }
+    if (this.pendingHousings.isEmpty()) {
+      Page<Housing> page = this.sanctuary.getHousingsPage(this.housingCursor, this.batchSize,
+          housing -> housing.getHousingType() == HousingType.ENCLOSURE);
+      this.pendingHousings.addAll(page.getItems());
+      this.housingCursor = page.getNextCursor();
+    }
+    Housing housing = this.pendingHousings.poll();
+    if (housing != null) {
+      this.checkCapacity((Enclosure) housing);
+    }
+    if (this.pendingHousings.isEmpty() && this.housingCursor == null) {
+      this.monkeysDone = false;
+      this.passCount++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Ages {@code monkey} to its age when added plus the whole years since, and moves it into an
+   * enclosure if it is healthy and in isolation.
+   */
+  private void maintainMonkey(Primate monkey) {
+    synchronized (this.sanctuary) {
+      Primate current = this.sanctuary.getMonkey(monkey.getId());
+      if (current == null) {
+        return;
+      }
+      long now = this.clock.millis();
+      MeasurementSeries ages = this.sanctuary.getMeasurementHistory(current, Measurement.AGE,
+              Long.MIN_VALUE, now);
+      if (ages.getSize() > 0) {
+        int birthday = lastSetAge(ages);
+        long age = (long) ages.getValue(birthday) + (now - ages.getTime(birthday)) / YEAR_MILLIS;
+        if (age > current.getAge() && age <= Integer.MAX_VALUE) {
+          this.sanctuary.updateMonkeyAge((int) age, current);
+          this.agedCount++;
+        }
+      }
+      MonkeyLocation location = this.sanctuary.locateMonkey(current.getId());
+      if (location != null && location.getHousingType() == HousingType.ISOLATION
+              && current.getHealthStatus() == HealthStatus.HEALTHY) {
+        try {
+          this.sanctuary.moveMonkeyToEnclosure(current);
+          this.enclosedCount++;
+        } catch (IllegalStateException e) {
+          // No enclosure can take the monkey yet, so it is looked at again next pass.
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the last age in {@code ages} given when the monkey was added or by an
+   * update from staff. Ages this maintenance set are the ones the previous given age predicts at
+   * their time, so they are skipped and a monkey keeps the birthday staff gave it.
+   */
+  private static int lastSetAge(MeasurementSeries ages) {
+    int last = 0;
+    for (int i = 1; i < ages.getSize(); i++) {
+      long predicted = (long) ages.getValue(last)
+              + (ages.getTime(i) - ages.getTime(last)) / YEAR_MILLIS;
+      if ((long) ages.getValue(i) != predicted) {
+        last = i;
+      }
+    }
+    return last;
+  }
+
+  private void checkCapacity(Enclosure enclosure) {
+    int usedCapacity = 0;
+    for (int i = 0; i < enclosure.getResidentCount(); i++) {
+      usedCapacity += enclosure.getResident(i).getSize().getSpace();
+    }
+    if (enclosure.getResidentCount() > 1 && usedCapacity > enclosure.getCapacity()) {
+      this.overCapacityEnclosures.add(enclosure.getId());
+    } else {
+      this.overCapacityEnclosures.remove(enclosure.getId());
+    }
+  }
+}
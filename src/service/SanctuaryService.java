@@ -0,0 +1,248 @@
+package service;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import sanctuary.Sanctuary;
+
+/**
+ * Asynchronous front end for a {@link Sanctuary} shared by many clients. Changes are submitted as
+ * commands to a bounded queue and applied in batches by a single writer thread, so the sanctuary
+ * itself is never locked by clients. After every batch the writer publishes a forked snapshot of
+ * the sanctuary, and reads are answered from the latest snapshot on their own threads. A fork
+ * shares the structure of the sanctuary, so publishing takes constant time and the writer only
+ * copies the parts the next batch changes. A read that starts after a command's future completes
+ * sees that command's effect.
+ */
+public class SanctuaryService implements Closeable {
+
+  private final Sanctuary sanctuary;
+  private final BlockingQueue<Command<?>> commands;
+  private final int maxBatchSize;
+  private final Thread writer;
+  private final ExecutorService readers;
+  private final ReadWriteLock shutdownLock;
+  private volatile Sanctuary snapshot;
+  private volatile boolean closed;
+
+  /**
+   * Starts a service in front of {@code sanctuary}. The sanctuary must not be used directly while
+   * the service runs.
+   *
+   * @param sanctuary     the sanctuary to serve
+   * @param queueCapacity the most commands waiting to be applied before submitters block
+   * @param maxBatchSize  the most commands applied before a new snapshot is published
+   * @throws IllegalArgumentException if the sanctuary is {@code null} or a size is not positive.
+   */
+  public SanctuaryService(Sanctuary sanctuary, int queueCapacity, int maxBatchSize) {
+    if (sanctuary == null) {
+      throw new IllegalArgumentException("Sanctuary cannot be null.");
+    }
+    if (queueCapacity <= 0 || maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Queue capacity and batch size must be positive.");
+    }
+    this.sanctuary = sanctuary;
+    this.commands = new ArrayBlockingQueue<>(queueCapacity);
+    this.maxBatchSize = maxBatchSize;
+    this.shutdownLock = new ReentrantReadWriteLock();
+    this.snapshot = sanctuary.fork();
+    this.readers = newReaderExecutor();
+    this.writer = new Thread(this::applyCommands, "sanctuary-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Queues {@code command} to be applied to the sanctuary, waiting while the queue is full.
+   *
+   * @param command the change to apply, which may return a result
+   * @param <T>     the type of the result
+   * @return a future completed with the result once the change is visible to reads
+   */
+  public <T> CompletableFuture<T> submit(Function<Sanctuary, T> command) {
+    Command<T> queued = new Command<>(command);
+    this.shutdownLock.readLock().lock();
+    try {
+      if (this.closed) {
+        queued.result.completeExceptionally(new RejectedExecutionException("Service is closed."));
+      } else {
+        this.commands.put(queued);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      queued.result.completeExceptionally(e);
+    } finally {
+      this.shutdownLock.readLock().unlock();
+    }
+    return queued.result;
+  }
+
+  /**
+   * Queues {@code command} to be applied to the sanctuary, giving up if the queue stays full for
+   * {@code timeout}.
+   *
+   * @param command the change to apply, which may return a result
+   * @param timeout how long to wait for room in the queue
+   * @param unit    the unit of {@code timeout}
+   * @param <T>     the type of the result
+   * @return a future completed with the result, or failed with
+   *         {@link RejectedExecutionException} if the queue stayed full
+   */
+  public <T> CompletableFuture<T> submit(Function<Sanctuary, T> command, long timeout,
+                                         TimeUnit unit) {
+    Command<T> queued = new Command<>(command);
+    this.shutdownLock.readLock().lock();
+    try {
+      if (this.closed || !this.commands.offer(queued, timeout, unit)) {
+        queued.result.completeExceptionally(new RejectedExecutionException(this.closed
+                ? "Service is closed." : "Command queue is full."));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      queued.result.completeExceptionally(e);
+    } finally {
+      this.shutdownLock.readLock().unlock();
+    }
+    return queued.result;
+  }
+
+  /**
+   * Queues a change without a result.
+   *
+   * @param command the change to apply
+   * @return a future completed once the change is visible to reads
+   */
+  public CompletableFuture<Void> execute(Consumer<Sanctuary> command) {
+    return this.submit(sanctuary -> {
+      command.accept(sanctuary);
+      return null;
+    });
+  }
+
+  /**
+   * Answers {@code query} from the latest published snapshot. The query must not change the
+   * sanctuary it is given.
+   *
+   * @param query the read to run
+   * @param <T>   the type of the result
+   * @return a future completed with the result
+   */
+  public <T> CompletableFuture<T> read(Function<Sanctuary, T> query) {
+    Sanctuary current = this.snapshot;
+    return CompletableFuture.supplyAsync(() -> query.apply(current), this.readers);
+  }
+
+  public int getQueueDepth() {
+    return this.commands.size();
+  }
+
+  /**
+   * Stops accepting commands, applies the ones already queued and stops the writer. Submitters
+   * hold the shutdown lock while they queue a command, so every command queued before the
+   * service is marked closed is applied, and every later one is refused.
+   */
+  @Override
+  public void close() {
+    this.shutdownLock.writeLock().lock();
+    try {
+      this.closed = true;
+    } finally {
+      this.shutdownLock.writeLock().unlock();
+    }
+    this.writer.interrupt();
+    try {
+      this.writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.readers.shutdown();
+  }
+
+  private void applyCommands() {
+    List<Command<?>> batch = new ArrayList<>(this.maxBatchSize);
+    while (!this.closed || !this.commands.isEmpty()) {
+      try {
+        if (this.commands.isEmpty()) {
+          batch.add(this.commands.take());
+        }
+      } catch (InterruptedException e) {
+        continue;
+      }
+      this.commands.drainTo(batch, this.maxBatchSize - batch.size());
+      for (Command<?> command : batch) {
+        command.apply(this.sanctuary);
+      }
+      this.snapshot = this.sanctuary.fork();
+      for (Command<?> command : batch) {
+        command.complete();
+      }
+      batch.clear();
+    }
+    this.commands.drainTo(batch);
+    for (Command<?> command : batch) {
+      command.result.completeExceptionally(new RejectedExecutionException("Service is closed."));
+    }
+  }
+
+  /**
+   * Returns an executor that runs every read on a new virtual thread when the runtime has them,
+   * or on a pool of platform threads otherwise.
+   */
+  private static ExecutorService newReaderExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+              .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sanctuary-reader");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * A queued change and the future of its result. Anything the change throws, errors included,
+   * fails the future instead of the writer thread.
+   */
+  private static class Command<T> {
+
+    private final Function<Sanctuary, T> change;
+    private final CompletableFuture<T> result;
+    private T value;
+    private Throwable failure;
+
+    Command(Function<Sanctuary, T> change) {
+      this.change = change;
+      this.result = new CompletableFuture<>();
+    }
+
+    void apply(Sanctuary sanctuary) {
+      try {
+        this.value = this.change.apply(sanctuary);
+      } catch (Throwable e) {
+        this.failure = e;
+      }
+    }
+
+    void complete() {
+      if (this.failure != null) {
+        this.result.completeExceptionally(this.failure);
+      } else {
+        this.result.complete(this.value);
+      }
+    }
+  }
+}
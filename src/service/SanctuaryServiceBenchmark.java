@@ -0,0 +1,92 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enums.FavoriteFood;
+import enums.HealthStatus;
+import enums.Measurement;
+import enums.MonkeySize;
+import enums.Sex;
+import enums.Species;
+import sanctuary.JungleFriendsSanctuary;
+import sanctuary.QuantileSketch;
+
+/**
+ * Measures the throughput and latency of a {@link SanctuaryService} under many concurrent
+ * clients. Every client submits a mix of new monkeys, weight updates and reads.
+ * Usage: {@code SanctuaryServiceBenchmark [clients] [requestsPerClient] [queueCapacity]
+ * [maxBatchSize]}
+ */
+public class SanctuaryServiceBenchmark {
+
+  public static void main(String[] args) throws InterruptedException {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int queueCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+    int maxBatchSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+    JungleFriendsSanctuary sanctuary = new JungleFriendsSanctuary(clients * requestsPerClient,
+            0, new int[0]);
+    QuantileSketch writeLatencies = new QuantileSketch(0.01, 1, 1e8);
+    QuantileSketch readLatencies = new QuantileSketch(0.01, 1, 1e8);
+    AtomicLong failures = new AtomicLong();
+
+    try (SanctuaryService service = new SanctuaryService(sanctuary, queueCapacity,
+            maxBatchSize)) {
+      List<Thread> threads = new ArrayList<>();
+      long start = System.nanoTime();
+      for (int c = 0; c < clients; c++) {
+        int client = c;
+        Thread thread = new Thread(() -> {
+          List<CompletableFuture<?>> pending = new ArrayList<>();
+          for (int i = 0; i < requestsPerClient; i++) {
+            long submitted = System.nanoTime();
+            CompletableFuture<?> request;
+            if (i % 4 == 3) {
+              request = service.read(read -> read.getSpeciesQuantile(Species.TITI,
+                      Measurement.WEIGHT, 0.5));
+              request.whenComplete((result, e) -> record(readLatencies, submitted, e, failures));
+            } else {
+              String name = "Monkey" + client + "_" + i;
+              float weight = 10 + i % 20;
+              int age = 1 + i % 30;
+              request = service.execute(write -> write.addMonkey(name, MonkeySize.SMALL,
+                      weight, age, Species.TITI, Sex.FEMALE, FavoriteFood.FRUITS,
+                      HealthStatus.HEALTHY, null));
+              request.whenComplete((result, e) -> record(writeLatencies, submitted, e, failures));
+            }
+            pending.add(request);
+          }
+          CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).exceptionally(e ->
+                  null).join();
+        }, "benchmark-client-" + client);
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      long requests = (long) clients * requestsPerClient;
+      System.out.printf("clients=%d requests=%d seconds=%.3f throughput=%.0f req/s failures=%d%n",
+              clients, requests, seconds, requests / seconds, failures.get());
+      System.out.println("write latency (us): " + writeLatencies);
+      System.out.println("read latency (us): " + readLatencies);
+    }
+  }
+
+  private static void record(QuantileSketch latencies, long submitted, Throwable failure,
+                             AtomicLong failures) {
+    if (failure != null) {
+      failures.incrementAndGet();
+      return;
+    }
+    double micros = Math.max(1, (System.nanoTime() - submitted) / 1000.0);
+    synchronized (latencies) {
+      latencies.add(micros);
+    }
+  }
+}